@@ -0,0 +1,87 @@
+import java.util.Random;
+
+import model.filter.Component;
+import model.filter.FilterKernels;
+import model.filter.LightType;
+
+/**
+ * Measures the throughput of the scalar and vector filter kernels over rows of random packed
+ * ARGB pixels. Run it with {@code --add-modules jdk.incubator.vector} and the classes compiled
+ * from {@code src-vector} on the class path to include the vector kernels.
+ */
+public class FilterBenchmark {
+  private static final int WIDTH = 4096;
+  private static final int ROWS = 256;
+  private static final int ROUNDS = 20;
+
+  /**
+   * Runs the benchmark and prints the throughput of each kernel in millions of pixels per
+   * second.
+   *
+   * @param args are not used
+   */
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    int[][] rows = new int[ROWS][WIDTH];
+    int[][] background = new int[ROWS][WIDTH];
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = 0; j < WIDTH; j++) {
+        rows[i][j] = random.nextInt() | 0xFF000000;
+        background[i][j] = random.nextInt();
+      }
+    }
+    FilterKernels[] kernels = new FilterKernels[] {FilterKernels.scalar(), FilterKernels.vector()};
+    String[] names = new String[] {"scalar", "vector"};
+    for (int n = 0; n < kernels.length; n++) {
+      if (kernels[n] == null) {
+        System.out.println(names[n] + ": not available");
+        continue;
+      }
+      FilterKernels k = kernels[n];
+      for (LightType type : LightType.values()) {
+        report(names[n], "brighten-" + type.toString().toLowerCase(), rows, (row, i) ->
+                k.adjustBrightness(row, 0, WIDTH, type, 1));
+      }
+      report(names[n], "red-component", rows, (row, i) ->
+              k.keepComponent(row, 0, WIDTH, Component.RED));
+      report(names[n], "difference", rows, (row, i) ->
+              k.difference(row, background[i], 0, WIDTH));
+    }
+  }
+
+  /**
+   * This interface represents a kernel run over one row.
+   */
+  private interface RowRun {
+    /**
+     * Runs the kernel over the given row.
+     *
+     * @param row of pixels
+     * @param index of the row
+     */
+    void run(int[] row, int index);
+  }
+
+  /**
+   * Runs the given kernel over copies of the rows, after a warm up, and prints its throughput.
+   *
+   * @param engine is the name of the kernels
+   * @param filter is the name of the filter
+   * @param rows of pixels
+   * @param run is the kernel run over one row
+   */
+  private static void report(String engine, String filter, int[][] rows, RowRun run) {
+    int[] row = new int[WIDTH];
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < ROWS; i++) {
+        System.arraycopy(rows[i], 0, row, 0, WIDTH);
+        run.run(row, i);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    double pixelsPerSecond = (double) ROWS * WIDTH / (best / 1e9);
+    System.out.printf("%s %s: %.1f Mpixels/s%n", engine, filter, pixelsPerSecond / 1e6);
+  }
+}
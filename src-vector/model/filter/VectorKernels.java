@@ -0,0 +1,131 @@
+package model.filter;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class implements the {@code FilterKernels} interface with SIMD instructions through the
+ * {@code jdk.incubator.vector} module. Each vector of pixels is computed with integer math that
+ * gives the same pixels as the {@code ScalarKernels}, which are used for the pixels after the
+ * last full vector.
+ * Note: This class is compiled separately from the rest of the model, with
+ * {@code --add-modules jdk.incubator.vector}, and is loaded by {@code Kernels} when available.
+ */
+class VectorKernels implements FilterKernels {
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final int ALPHA = 0xFF000000;
+
+  private final FilterKernels scalar;
+
+  /**
+   * This is the constructor for the {@code VectorKernels} class, which creates new
+   * {@code VectorKernels} that use the scalar kernels for the pixels after the last full vector.
+   */
+  VectorKernels() {
+    this.scalar = new ScalarKernels();
+  }
+
+  @Override
+  public void adjustBrightness(int[] argb, int offset, int length, LightType type,
+                               int direction) {
+    int end = offset + length;
+    int k = offset;
+    for (; k + SPECIES.length() <= end; k += SPECIES.length()) {
+      IntVector pixels = IntVector.fromArray(SPECIES, argb, k);
+      VectorMask<Integer> opaque = pixels.lanewise(VectorOperators.LSHR, 24)
+              .compare(VectorOperators.NE, 0);
+      if (!opaque.anyTrue()) {
+        continue;
+      }
+      IntVector red = pixels.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+      IntVector green = pixels.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+      IntVector blue = pixels.and(0xFF);
+      IntVector b;
+      switch (type) {
+        case VALUE:
+          b = red.max(green).max(blue);
+          break;
+        case INTENSITY:
+          // (r + g + b) / 3, since 43691 / 2^17 is just above 1 / 3
+          b = red.add(green).add(blue).mul(43691).lanewise(VectorOperators.LSHR, 17);
+          break;
+        case LUMA:
+          b = this.luma(red, green, blue);
+          if (b == null) {
+            this.scalar.adjustBrightness(argb, k, SPECIES.length(), type, direction);
+            continue;
+          }
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+      if (direction < 0) {
+        b = b.neg();
+      }
+      red = red.add(b).max(0).min(255);
+      green = green.add(b).max(0).min(255);
+      blue = blue.add(b).max(0).min(255);
+      IntVector result = pixels.and(ALPHA).or(red.lanewise(VectorOperators.LSHL, 16))
+              .or(green.lanewise(VectorOperators.LSHL, 8)).or(blue);
+      pixels.blend(result, opaque).intoArray(argb, k);
+    }
+    this.scalar.adjustBrightness(argb, k, end - k, type, direction);
+  }
+
+  /**
+   * Computes the luma of each lane in fixed point, like {@code AbstractBrightness.luma}.
+   *
+   * @param red components of the pixels
+   * @param green components of the pixels
+   * @param blue components of the pixels
+   * @return the luma of each lane, or null if the scaled sum of a lane is a multiple of 10000,
+   *         where the luma must be computed by the scalar kernels
+   */
+  private IntVector luma(IntVector red, IntVector green, IntVector blue) {
+    IntVector scaled = red.mul(2126).add(green.mul(7152)).add(blue.mul(722));
+    // (scaled / 16) * 26844 / 2^24 is within one of scaled / 10000, and fits in 32 unsigned bits
+    IntVector luma = scaled.lanewise(VectorOperators.LSHR, 4).mul(26844)
+            .lanewise(VectorOperators.LSHR, 24);
+    IntVector remainder = scaled.sub(luma.mul(10000));
+    luma = luma.add(1, remainder.compare(VectorOperators.GE, 10000))
+            .sub(1, remainder.compare(VectorOperators.LT, 0));
+    if (scaled.sub(luma.mul(10000)).compare(VectorOperators.EQ, 0).anyTrue()) {
+      return null;
+    }
+    return luma;
+  }
+
+  @Override
+  public void keepComponent(int[] argb, int offset, int length, Component component) {
+    int mask = ComponentFilter.getMask(component);
+    int end = offset + length;
+    int k = offset;
+    for (; k + SPECIES.length() <= end; k += SPECIES.length()) {
+      IntVector pixels = IntVector.fromArray(SPECIES, argb, k);
+      VectorMask<Integer> opaque = pixels.lanewise(VectorOperators.LSHR, 24)
+              .compare(VectorOperators.NE, 0);
+      pixels.blend(pixels.and(mask).or(ALPHA), opaque).intoArray(argb, k);
+    }
+    this.scalar.keepComponent(argb, k, end - k, component);
+  }
+
+  @Override
+  public void difference(int[] argb, int[] background, int offset, int length) {
+    int end = offset + length;
+    int k = offset;
+    for (; k + SPECIES.length() <= end; k += SPECIES.length()) {
+      IntVector pixels = IntVector.fromArray(SPECIES, argb, k);
+      IntVector prev = IntVector.fromArray(SPECIES, background, k);
+      IntVector result = pixels.and(ALPHA);
+      for (int shift = 0; shift <= 16; shift += 8) {
+        IntVector channel = pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+        IntVector prevChannel = prev.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+        result = result.or(channel.sub(prevChannel).abs().lanewise(VectorOperators.LSHL, shift));
+      }
+      result.intoArray(argb, k);
+    }
+    this.scalar.difference(argb, background, k, end - k);
+  }
+}
@@ -1,27 +1,31 @@
 package controller;
 
+import java.awt.EventQueue;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
-import javax.imageio.ImageIO;
-
+import model.CollageFile;
 import model.ICanvas;
 import model.IImage;
 import model.ILayer;
-import model.IPixel;
+import model.ImageUtil;
+import model.PackedImage;
 
 
 import model.filter.IFilter;
+import view.FramePainter;
 import view.IView;
 
 /**
  * Implementation of {@code CollageController} interface,
  * which controls the interaction between the collage model and the GUI view.
+ * Note: The edits of the project are applied and rendered in the background, so the model is
+ * only used on this thread after waiting for them, such as with {@code getModel}.
  */
 public class CollageControllerGUIImpl implements Features {
   private ICanvas model;
@@ -30,6 +34,9 @@ public class CollageControllerGUIImpl implements Features {
   private int width;
   private int projectMaxValue;
   private boolean projectStarted;
+  private final SaveQueue saves;
+  private final RenderWorker renderer;
+  private final List<String> layerNames;
 
   /**
    * This is the constructor for the {@code CollageControllerGUIImpl} class.
@@ -45,6 +52,9 @@ public class CollageControllerGUIImpl implements Features {
     this.model = model;
     this.view = null;
     this.projectStarted = false;
+    this.saves = new SaveQueue(true);
+    this.renderer = new RenderWorker();
+    this.layerNames = new ArrayList<>();
   }
 
   @Override
@@ -62,8 +72,10 @@ public class CollageControllerGUIImpl implements Features {
     this.height = height;
     this.width = width;
     this.projectMaxValue = maxValue;
-    this.model = this.model.setModel(height, width, name);
+    this.model = this.getModel().setModel(height, width, name);
+    this.saves.reset(null);
     view.setFrame(height, width, name, maxValue, true);
+    this.renderer.reset(this.model, view, maxValue);
 
     view.setTextFieldText(view.getNewProjectNameTF(), "");
     view.setTextFieldText(view.getNewProjectHeightTF(), "");
@@ -78,13 +90,15 @@ public class CollageControllerGUIImpl implements Features {
       view.renderGUIMessage("Create a new or load a collage project first.", "Command Error", 0);
       return;
     }
-    for (ILayer layer : this.getModel().getLayers()) {
-      if (layer.getName().equals(name)) {
-        view.renderGUIMessage("Layer '" + name + "' already exists.", "Input Error", 0);
-        return;
-      }
+    // the names are kept here, so the layers are known without waiting for the model
+    if (this.layerNames.contains(name)) {
+      view.renderGUIMessage("Layer '" + name + "' already exists.", "Input Error", 0);
+      return;
     }
-    this.model.addLayerToCanvas(height, width, name);
+    this.layerNames.add(name);
+    int layerHeight = this.height;
+    int layerWidth = this.width;
+    this.renderer.submit(null, model -> model.addLayerToCanvas(layerHeight, layerWidth, name));
     view.setTextFieldText(view.getAddLayerNameTF(), "");
     view.addComboBoxItem(view.getAddImageToLayerNameCB(), name);
     view.addComboBoxItem(view.getSetFilterLayerNameCB(), name);
@@ -96,7 +110,7 @@ public class CollageControllerGUIImpl implements Features {
       view.renderGUIMessage("Create a new or load a collage project first.", "Command Error", 0);
       return;
     }
-    if (this.model.getLayers().size() == 0) {
+    if (this.layerNames.isEmpty()) {
       view.renderGUIMessage("No layers exist on current collage project.", "Command Error", 0);
       return;
     }
@@ -112,7 +126,7 @@ public class CollageControllerGUIImpl implements Features {
       return;
     }
     newImage.updateWithMaxValue();
-    this.model.addImageToLayer(layerName, newImage, row, col);
+    this.renderer.submit(null, model -> model.addImageToLayer(layerName, newImage, row, col));
     view.setTextFieldText(view.getAddImageToLayerRowTF(), "");
     view.setTextFieldText(view.getAddImageToLayerColTF(), "");
   }
@@ -123,45 +137,56 @@ public class CollageControllerGUIImpl implements Features {
       view.renderGUIMessage("Create a new or load a collage project first.", "Command Error", 0);
       return;
     }
-    IFilter filterOption;
-    try {
-      filterOption = this.getModel().getFilterFromString(Objects.requireNonNull(filterName),
-              layerName);
-    } catch (RuntimeException ex) {
-      view.renderMessage(ex.getMessage());
-      filterOption = getModel().getFilterFromString("normal", null);
+    // a filter set on the layer right after another one, before it is applied, replaces it
+    this.renderer.submit("filter " + layerName, model -> {
+      IFilter filterOption;
+      try {
+        filterOption = model.getFilterFromString(Objects.requireNonNull(filterName), layerName);
+      } catch (RuntimeException ex) {
+        String message = ex.getMessage();
+        EventQueue.invokeLater(() -> view.renderGUIMessage(message, "Command Error", 0));
+        filterOption = model.getFilterFromString("normal", null);
+      }
+      model.addFilter(filterOption, layerName);
+    });
+  }
+
+  @Override
+  public void renderTilesCommand(int level, Rectangle visible, List<Point> tiles) {
+    if (projectStarted) {
+      this.renderer.request(level, visible, tiles);
     }
-    this.model.addFilter(filterOption, layerName);
   }
 
   @Override
   public void saveImageCommand(String filename) {
+    if (!projectStarted) {
+      view.renderGUIMessage("Create a new or load a collage project first.", "Command Error", 0);
+      return;
+    }
     String ext = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-    try {
+    int maxValue = this.projectMaxValue;
+    // the image is copied once the edits before it are applied, and written in the background
+    // while the project is edited
+    this.renderer.submit(null, model -> {
+      SaveQueue.Write<Void> write;
       if (ext.equals("ppm")) {
-        FileWriter writer;
-        writer = new FileWriter(filename);
-        writer.write("P3\n" + width + " " + height + "\n" + projectMaxValue + "\n");
-        double factor = 255.0 / projectMaxValue;
-        for (int i = 0; i < height; i++) {
-          for (int j = 0; j < width; j++) {
-            IPixel pixel = this.model.getImage().getPixel(i, j);
-            int red = (int) Math.round((double) pixel.getRed() / factor);
-            int green = (int) Math.round((double) pixel.getGreen() / factor);
-            int blue = (int) Math.round((double) pixel.getBlue() / factor);
-            writer.write(red + " " + green + " " + blue + " ");
-          }
-          writer.write("\n");
-        }
-        writer.close();
+        IImage image = new PackedImage(model.getImage());
+        write = progress -> {
+          ImageUtil.writePPM(image, maxValue, filename);
+          return null;
+        };
       } else {
-        BufferedImage img = view.getBuffImage();
-        File file = new File(filename);
-        ImageIO.write(img, filename.substring(filename.lastIndexOf(".") + 1), file);
+        // the image is saved as it is displayed
+        BufferedImage copy = new FramePainter(maxValue).paint(model.getImage());
+        write = progress -> {
+          ImageUtil.writeImage(copy, filename.substring(filename.lastIndexOf(".") + 1), filename);
+          return null;
+        };
       }
-    } catch (IOException e) {
-      view.renderGUIMessage("Unable to save image.", "Command Error", 0);
-    }
+      this.saves.submit("Saving " + filename, write, view, e -> EventQueue.invokeLater(() ->
+              view.renderGUIMessage("Unable to save image.", "Command Error", 0)));
+    });
   }
 
   @Override
@@ -170,29 +195,12 @@ public class CollageControllerGUIImpl implements Features {
       view.renderGUIMessage("Create a new or load a collage project first.", "Command Error", 0);
       return;
     }
-    try {
-      FileWriter writer = new FileWriter(filename);
-      writer.flush();
-      writer.write(this.getModel().getProjectName() + "\n" + this.width + " " + this.height + "\n"
-                   + this.projectMaxValue + "\n");
-      double factor = 255.0 / this.projectMaxValue;
-      for (ILayer layer : this.getModel().getLayers()) {
-        writer.write(layer.getName() + " " + layer.getFilter().toString() + "\n");
-        for (int i = 0; i < height; i++) {
-          for (int j = 0; j < width; j++) {
-            IPixel pixel = layer.getPreviousPixels()[i][j];
-            int red = (int) Math.round((double) pixel.getRed() / factor);
-            int green = (int) Math.round((double) pixel.getGreen() / factor);
-            int blue = (int) Math.round((double) pixel.getBlue() / factor);
-            int alpha = (int) Math.round((double) pixel.getAlpha() / factor);
-            writer.write(red + " " + green + " " + blue + " " + alpha + "\n");
-          }
-        }
-      }
-      writer.close();
-    } catch (IOException e) {
-      throw new IOException("Error: Unable to write to: " + filename);
-    }
+    // the project is written in the background from a snapshot, taken once the edits before it
+    // are applied, so it can keep being edited
+    int maxValue = this.projectMaxValue;
+    this.renderer.submit(null, model -> this.saves.saveProject(model, maxValue, filename, view,
+        e -> EventQueue.invokeLater(() ->
+            view.renderGUIMessage("Error: Unable to write to: " + filename, "I/O Error", 0))));
   }
 
   @Override
@@ -201,13 +209,12 @@ public class CollageControllerGUIImpl implements Features {
       view.renderGUIMessage("Collage project has already been created/loaded", "Command Error", 0);
       return;
     }
-    BufferedReader reader = new BufferedReader(new FileReader(filename));
-    String name1 = reader.readLine();
-    String[] size = reader.readLine().split("\\s+");
-    int width = Integer.parseInt(size[0]);
-    int height = Integer.parseInt(size[1]);
-    this.model = this.model.setModel(height, width, name1);
-    this.projectMaxValue = Integer.parseInt(reader.readLine());
+    CollageFile project = CollageFile.read(filename);
+    String name1 = project.getName();
+    int width = project.getWidth();
+    int height = project.getHeight();
+    this.model = this.getModel().setModel(height, width, name1);
+    this.projectMaxValue = project.getMaxValue();
     if (width < 0 || height < 0) {
       view.renderGUIMessage("Cannot load project due to invalid size", "Load Error", 0);
     } else if (this.projectMaxValue > 255 || this.projectMaxValue < 1) {
@@ -217,48 +224,49 @@ public class CollageControllerGUIImpl implements Features {
       view.setFrame(height, width, name1, this.projectMaxValue, true);
       this.height = height;
       this.width = width;
-      IPixel[][] pixels1 = new IPixel[height][width];
-      String line = reader.readLine();
-      while (line != null) {
-        String[] names = line.split("\\s+");
-        IFilter filter;
-        try {
-          filter = this.getModel().getFilterFromString(names[1], names[0]);
-        } catch (RuntimeException e) {
-          view.renderMessage(e.getMessage());
-          filter = this.getModel().getFilterFromString("normal", null);
-        }
-        for (int i = 0; i < height; i++) {
-          for (int j = 0; j < width; j++) {
-            line = reader.readLine();
-            String[] colors = line.split("\\s+");
-            int red = Integer.parseInt(colors[0]);
-            int green = Integer.parseInt(colors[1]);
-            int blue = Integer.parseInt(colors[2]);
-            int alpha = Integer.parseInt(colors[3]);
-            IPixel pixel = this.model.createPixel(red, green, blue, alpha, filter);
-            pixels1[i][j] = pixel;
-          }
-        }
-        this.model.addLayerToCanvas(height, width, names[0]);
-        ILayer layer = this.model.getLayers().get(this.model.getLayers().size() - 1);
-        IImage newImage = this.model.createImage(pixels1, this.projectMaxValue);
-        newImage.updateWithMaxValue();
-        layer.addImageToLayer(newImage, 0, 0);
-        layer.applyFilter(filter);
-        this.model.updatePixels();
+      // only the layer table is read here, the images of the layers are read when they are
+      // first composited
+      List<CollageFile.Layer> saved = project.readLayers();
+      for (CollageFile.Layer layer : saved) {
         view.addComboBoxItem(view.getAddImageToLayerNameCB(), layer.getName());
         view.addComboBoxItem(view.getSetFilterLayerNameCB(), layer.getName());
-        line = reader.readLine();
+        this.layerNames.add(layer.getName());
       }
-      reader.close();
-      view.updateView();
+      this.saves.reset(project);
+      this.renderer.reset(this.model, view, this.projectMaxValue);
+      // the layers are built and composited in the background, so the window is not held up
+      // while the images of the visible layers are loaded
+      this.renderer.submit(null, model -> {
+        ArrayList<ILayer> layers = new ArrayList<>();
+        for (CollageFile.Layer layer : saved) {
+          IFilter filter;
+          try {
+            filter = model.getFilterFromString(layer.getFilter(), layer.getName());
+          } catch (RuntimeException e) {
+            String message = e.getMessage();
+            EventQueue.invokeLater(() -> view.renderGUIMessage(message, "Load Error", 0));
+            filter = model.getFilterFromString("normal", null);
+          }
+          ILayer built = model.createLayer(height, width, layer.getName(), layer.getImages(),
+                  layer.getPositions());
+          built.applyFilter(filter);
+          layers.add(built);
+        }
+        // blending filters are bound and the canvas is composited once, after the last layer
+        model.addLayersToCanvas(layers);
+        // the layers are tracked so that saving over the file only writes the layers that
+        // change
+        project.track(layers);
+      });
       projectStarted = true;
     }
   }
 
   @Override
   public void quitCommand() {
+    // edits and saves that are still pending are finished before the view is closed
+    this.renderer.flush();
+    this.saves.await();
     view.exit();
   }
 
@@ -269,6 +277,8 @@ public class CollageControllerGUIImpl implements Features {
 
   @Override
   public ICanvas getModel() {
+    // the edits that are still pending are applied first
+    this.renderer.flush();
     return this.model;
   }
 }
\ No newline at end of file
@@ -1,24 +1,20 @@
 package controller;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.Scanner;
 
-import javax.imageio.ImageIO;
-
+import model.CollageFile;
 import model.ColorPixel;
 import model.ICanvas;
 import model.IImage;
 import model.ILayer;
-import model.IPixel;
+import model.ImageUtil;
+import model.PackedPixel;
 import model.filter.IFilter;
 import view.IView;
 
@@ -36,6 +32,7 @@ public class CollageControllerImpl implements CollageController, Features {
   private boolean endGame;
   private boolean ignoreOtherCommands;
   private int projectMaxValue;
+  private final SaveQueue saves;
 
   /**
    * This is the constructor for the {@code CollageControllerImpl} class. If any of these arguments
@@ -58,6 +55,9 @@ public class CollageControllerImpl implements CollageController, Features {
     this.projectCreated = false;
     this.endGame = false;
     this.ignoreOtherCommands = false;
+    // the commands of a script rely on the files saved by earlier commands, so saves are
+    // written right away from a snapshot of the project rather than in the background
+    this.saves = new SaveQueue(false);
   }
 
   @Override
@@ -278,6 +278,7 @@ public class CollageControllerImpl implements CollageController, Features {
   public void newProjectCommand(String name, int height, int width, int maxValue)
           throws IOException {
     this.model = this.model.setModel(height, width, name);
+    this.saves.reset(null);
     view.setFrame(height, width, name, maxValue, false);
     this.projectCreated = true;
     this.height = height;
@@ -339,47 +340,42 @@ public class CollageControllerImpl implements CollageController, Features {
     } else {
       try {
         if (ext.equals("ppm")) {
-          FileWriter writer;
-          writer = new FileWriter(filename);
-          writer.write("P3\n" + width + " " + height + "\n" + projectMaxValue + "\n");
-          double factor = 255.0 / projectMaxValue;
-          for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-              IPixel pixel = this.model.getImage().getPixel(i, j);
-              int red = (int) Math.round((double) pixel.getRed() / factor);
-              int green = (int) Math.round((double) pixel.getGreen() / factor);
-              int blue = (int) Math.round((double) pixel.getBlue() / factor);
-              writer.write(red + " " + green + " " + blue + " ");
-            }
-            writer.write("\n");
-          }
-          writer.close();
+          SaveQueue.join(this.saves.submit("Saving " + filename, progress -> {
+            ImageUtil.writePPM(this.model.getImage(), this.projectMaxValue, filename);
+            return null;
+          }, view, e -> { }));
         } else {
           BufferedImage img = new BufferedImage(this.width, this.height,
                   BufferedImage.TYPE_INT_RGB);
           this.model.updatePixels();
           double factor = 255.0 / this.projectMaxValue;
+          IImage canvas = this.model.getImage();
+          int[] row = new int[canvas.getWidth()];
           for (int y = 0; y < this.height; y++) {
+            canvas.readRow(y, row);
             for (int x = 0; x < this.width; x++) {
               int argb = 0;
-              IPixel pixel = this.model.getImage().getPixel(y, x);
-              int alpha = (int) Math.round((double) pixel.getAlpha() / factor);
+              int pixel = row[x];
+              int alpha = (int) Math.round((double) PackedPixel.alpha(pixel) / factor);
               argb |= ((int) (((double) alpha / this.projectMaxValue) * 255) << 24);
 
-              int red = (int) Math.round((double) pixel.getRed() / factor);
+              int red = (int) Math.round((double) PackedPixel.red(pixel) / factor);
               argb |= ((int) (((double) red / this.projectMaxValue) * 255) << 16);
 
-              int green = (int) Math.round((double) pixel.getGreen() / factor);
+              int green = (int) Math.round((double) PackedPixel.green(pixel) / factor);
               argb |= ((int) (((double) green / this.projectMaxValue) * 255) << 8);
 
-              int blue = (int) Math.round((double) pixel.getBlue() / factor);
+              int blue = (int) Math.round((double) PackedPixel.blue(pixel) / factor);
               argb |= (int) (((double) blue / this.projectMaxValue) * 255);
 
               img.setRGB(x, y, argb);
             }
           }
-          File file = new File(filename);
-          ImageIO.write(img, filename.substring(filename.lastIndexOf(".") + 1), file);
+          SaveQueue.join(this.saves.submit("Saving " + filename, progress -> {
+            ImageUtil.writeImage(img, filename.substring(filename.lastIndexOf(".") + 1),
+                    filename);
+            return null;
+          }, view, e -> { }));
         }
       } catch (IOException e) {
         view.renderGUIMessage("Unable to save image.", "Command Error", 0);
@@ -390,25 +386,8 @@ public class CollageControllerImpl implements CollageController, Features {
   @Override
   public void saveProjectCommand(String filename) throws IOException {
     try {
-      FileWriter writer = new FileWriter(filename);
-      writer.flush();
-      writer.write(this.model.getProjectName() + "\n" + this.width + " " +
-                   this.height + "\n" + this.projectMaxValue + "\n");
-      double factor = 255.0 / this.projectMaxValue;
-      for (ILayer layer : this.model.getLayers()) {
-        writer.write(layer.getName() + " " + layer.getFilter().toString() + "\n");
-        for (int i = 0; i < height; i++) {
-          for (int j = 0; j < width; j++) {
-            IPixel pixel = layer.getPreviousPixels()[i][j];
-            int red = (int) Math.round((double) pixel.getRed() / factor);
-            int green = (int) Math.round((double) pixel.getGreen() / factor);
-            int blue = (int) Math.round((double) pixel.getBlue() / factor);
-            int alpha = (int) Math.round((double) pixel.getAlpha() / factor);
-            writer.write(red + " " + green + " " + blue + " " + alpha + "\n");
-          }
-        }
-      }
-      writer.close();
+      SaveQueue.join(this.saves.saveProject(this.model, this.projectMaxValue, filename, view,
+          e -> { }));
     } catch (IOException e) {
       view.renderMessage("Error: Unable to write to: " + filename);
       ignoreOtherCommands = true;
@@ -417,12 +396,11 @@ public class CollageControllerImpl implements CollageController, Features {
 
   @Override
   public void loadProjectCommand(String filename) throws IOException {
-    BufferedReader reader = new BufferedReader(new FileReader(filename));
-    String name1 = reader.readLine();
-    String[] size = reader.readLine().split("\\s+");
-    int width = Integer.parseInt(size[0]);
-    int height = Integer.parseInt(size[1]);
-    this.projectMaxValue = Integer.parseInt(reader.readLine());
+    CollageFile project = CollageFile.read(filename);
+    String name1 = project.getName();
+    int width = project.getWidth();
+    int height = project.getHeight();
+    this.projectMaxValue = project.getMaxValue();
     if (width < 0 || height < 0) {
       view.renderMessage("Error: Cannot load project due to invalid size");
       this.ignoreOtherCommands = true;
@@ -431,44 +409,27 @@ public class CollageControllerImpl implements CollageController, Features {
       this.ignoreOtherCommands = true;
     } else {
       this.model = this.model.setModel(height, width, name1);
-      IPixel[][] pixels1 = new IPixel[height][width];
       ArrayList<ILayer> layers = new ArrayList<>();
-      String line = reader.readLine();
-      while (line != null) {
-        String[] names = line.split("\\s+");
+      for (CollageFile.Layer saved : project.readLayers()) {
         IFilter filter;
         try {
-          filter = this.model.getFilterFromString(names[1], names[0]);
+          filter = this.model.getFilterFromString(saved.getFilter(), saved.getName());
         } catch (RuntimeException e) {
           view.renderMessage(e.getMessage());
           filter = this.getModel().getFilterFromString("normal", null);
         }
-        line = reader.readLine();
-        for (int i = 0; i < height; i++) {
-          for (int j = 0; j < width; j++) {
-            String[] colors = line.split("\\s+");
-            int red = Integer.parseInt(colors[0]);
-            int green = Integer.parseInt(colors[1]);
-            int blue = Integer.parseInt(colors[2]);
-            int alpha = Integer.parseInt(colors[3]);
-            IPixel pixel = this.model.createPixel(red, green, blue, alpha, filter);
-            pixels1[i][j] = pixel;
-            line = reader.readLine();
-          }
-        }
-        this.model.addLayerToCanvas(height, width, names[0]);
-        ILayer layer = this.model.getLayers().get(this.model.getLayers().size() - 1);
-        IImage newImage = this.model.createImage(pixels1, this.projectMaxValue);
-        newImage.updateWithMaxValue();
-        layer.addImageToLayer(newImage, 0, 0);
-        layers.add(layer);
+        ILayer layer = this.model.createLayer(height, width, saved.getName(), saved.getImages(),
+                saved.getPositions());
         layer.applyFilter(filter);
+        layers.add(layer);
       }
-      reader.close();
-
+      // blending filters are bound and the canvas is composited once, after the last layer
+      this.model.addLayersToCanvas(layers);
+      // the layers are tracked so that saving over the file only writes the layers that change
+      project.track(layers);
+      this.saves.reset(project);
       this.height = height;
       this.width = width;
-      this.model = this.model.setModel(height, width, pixels1, layers);
       view.setFrame(height, width, name1, this.projectMaxValue, false);
       this.projectCreated = true;
       view.renderMessage("'" + name1 + "' collage project loaded successfully!");
@@ -1,6 +1,9 @@
 package controller;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.List;
 
 import model.ICanvas;
 import view.IView;
@@ -120,6 +123,21 @@ public interface Features {
    */
   void helpMenuCommand() throws IOException;
 
+  /**
+   * This method is used to ask for the tiles of the collage project that the view is missing at
+   * a zoom level, which are handed to the view with {@code IView.renderTiles} once they are
+   * rendered. The tiles that are visible are also rendered again whenever the project changes.
+   * Note: A newer request replaces the older one. The default implementation does nothing.
+   *
+   * @param level is the zoom level of the tiles
+   * @param visible are the tiles that are visible, where x is the first column and y is the
+   *                first row of the tiles
+   * @param tiles are the tiles that are missing, by column and row
+   */
+  default void renderTilesCommand(int level, Rectangle visible, List<Point> tiles) {
+    // do nothing
+  }
+
   /**
    * This method returns the current collage project model.
    *
@@ -0,0 +1,274 @@
+package controller;
+
+import java.awt.EventQueue;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import model.ICanvas;
+import model.IImage;
+import view.FramePainter;
+import view.IView;
+
+/**
+ * This class applies the edits of a collage project on a background thread, in the order they
+ * are made, and then renders a frame of the project for the view, so that the view stays
+ * responsive while the project is composited. Every edit that is queued while the thread is busy
+ * is applied before the next frame is rendered, so a burst of edits leads to a single frame, and
+ * a frame that is being rendered is given up as soon as a newer edit is queued.
+ * A frame is made up of the tiles the view asked for and the visible tiles that changed, at the
+ * zoom level of the view, which are handed to the view together on its own thread.
+ * Note: The model is only changed on the background thread, so it must not be used elsewhere
+ * without waiting for the queued edits with {@code flush} first.
+ */
+class RenderWorker {
+  private final ExecutorService executor;
+  private final Deque<Edit> edits;
+  private volatile boolean pending;
+  private boolean running;
+  private boolean requested;
+  private int level;
+  private Rectangle visible;
+  private List<Point> missing;
+  private ICanvas model;
+  private IView view;
+  private FramePainter painter;
+  // the regions of the canvas that changed since the last frame, used on the background thread
+  private List<Rectangle> carried;
+
+  /**
+   * This represents an edit that is waiting to be applied, which may be replaced by a newer
+   * edit with the same key.
+   */
+  private static class Edit {
+    private final String key;
+    private final Consumer<ICanvas> change;
+
+    private Edit(String key, Consumer<ICanvas> change) {
+      this.key = key;
+      this.change = change;
+    }
+  }
+
+  /**
+   * This is the constructor for the {@code RenderWorker} class, which creates a new
+   * {@code RenderWorker} with its own background thread. It renders nothing until it is reset
+   * with a project.
+   */
+  RenderWorker() {
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "collage-render");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.edits = new ArrayDeque<>();
+    this.visible = new Rectangle();
+    this.missing = new ArrayList<>();
+    this.carried = new ArrayList<>();
+  }
+
+  /**
+   * This method is used to start rendering a new or loaded project, whose view has just been
+   * set up. A frame is then rendered to show its project structure.
+   * Note: The edits of the previous project must have been flushed first.
+   *
+   * @param model is the model of the project
+   * @param view is the view the frames are handed to
+   * @param maxValue is the maximum value of the project
+   */
+  void reset(ICanvas model, IView view, int maxValue) {
+    synchronized (this) {
+      this.model = model;
+      this.view = view;
+      this.painter = new FramePainter(maxValue);
+      this.carried = new ArrayList<>();
+    }
+    this.submit(null, canvas -> {
+      // nothing to change, the frame shows the project structure
+    });
+  }
+
+  /**
+   * This method is used to queue an edit of the project, to be applied on the background thread
+   * after every edit queued before it. If the last edit that is still waiting has the same key,
+   * the new edit replaces it, such as a filter that is set on a layer right after another one.
+   *
+   * @param key is the key of the edit, or null if it never replaces another edit
+   * @param change is the edit, given the model of the project
+   */
+  void submit(String key, Consumer<ICanvas> change) {
+    synchronized (this) {
+      Edit last = this.edits.peekLast();
+      if (key != null && last != null && key.equals(last.key)) {
+        this.edits.pollLast();
+      }
+      this.edits.addLast(new Edit(key, change));
+      this.pending = true;
+      if (this.running) {
+        return;
+      }
+      this.running = true;
+    }
+    this.executor.execute(this::drain);
+  }
+
+  /**
+   * This method is used to ask for the tiles the view is missing at a zoom level, which replace
+   * the tiles asked for before, to be rendered on the background thread after the queued edits.
+   * The tiles that are visible are also rendered again whenever they change.
+   * Note: Unlike an edit, this does not cancel the frame that is being rendered. Tiles that are
+   * asked for before the worker is reset with a project are ignored.
+   *
+   * @param level is the zoom level of the tiles
+   * @param visible are the tiles that are visible, where x is the first column and y is the
+   *                first row of the tiles
+   * @param tiles are the tiles that are missing, by column and row
+   */
+  void request(int level, Rectangle visible, List<Point> tiles) {
+    synchronized (this) {
+      if (this.model == null) {
+        return;
+      }
+      this.level = level;
+      this.visible = new Rectangle(visible);
+      this.missing = new ArrayList<>(tiles);
+      this.requested = true;
+      if (this.running) {
+        return;
+      }
+      this.running = true;
+    }
+    this.executor.execute(this::drain);
+  }
+
+  /**
+   * This method is used to wait until every queued edit has been applied and rendered, so that
+   * the model can be used on the calling thread.
+   */
+  synchronized void flush() {
+    boolean interrupted = false;
+    while (this.running) {
+      try {
+        this.wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * This method is used to apply the queued edits and render a frame of them, again and again
+   * until no edit is left, on the background thread.
+   */
+  private void drain() {
+    while (true) {
+      List<Edit> batch;
+      synchronized (this) {
+        if (this.edits.isEmpty() && !this.requested) {
+          this.running = false;
+          this.notifyAll();
+          return;
+        }
+        batch = new ArrayList<>(this.edits);
+        this.edits.clear();
+        this.pending = false;
+        this.requested = false;
+      }
+      for (Edit edit : batch) {
+        try {
+          edit.change.accept(this.model);
+        } catch (RuntimeException e) {
+          this.report(e);
+        }
+      }
+      try {
+        this.render();
+      } catch (RuntimeException e) {
+        this.report(e);
+      }
+    }
+  }
+
+  /**
+   * This method is used to show the error of an edit or a frame in the view, on its own thread.
+   *
+   * @param error is the error to be shown
+   */
+  private void report(RuntimeException error) {
+    IView target = this.view;
+    String message = String.valueOf(error.getMessage());
+    EventQueue.invokeLater(() -> target.renderGUIMessage(message, "Command Error", 0));
+  }
+
+  /**
+   * This method is used to render a frame of the tiles the view is missing and the visible tiles
+   * that changed since the last frame, and hand it to the view, unless a newer edit is queued
+   * before it is done, in which case the changed regions and missing tiles are kept for the next
+   * frame.
+   */
+  private void render() {
+    this.model.updatePixels();
+    this.carried.addAll(this.model.takeDirtyRegions());
+    String structure = this.model.getProjectStructure();
+    int level;
+    Rectangle visible;
+    List<Point> asked;
+    synchronized (this) {
+      level = this.level;
+      visible = this.visible;
+      asked = this.missing;
+    }
+    IImage canvas = this.model.getImage();
+    Set<Point> wanted = new LinkedHashSet<>(asked);
+    for (Rectangle region : this.carried) {
+      Rectangle range = FramePainter.tilesOf(region, level).intersection(visible);
+      for (int row = range.y; row < range.y + range.height; row++) {
+        for (int column = range.x; column < range.x + range.width; column++) {
+          wanted.add(new Point(column, row));
+        }
+      }
+    }
+    // zoomed out tiles are painted from the preview of the canvas closest to their zoom level,
+    // which numbers its tiles the same way at the zoom level that is left
+    int reduce = Math.min(Math.max(-level, 0), 3);
+    IImage source = reduce == 0 ? canvas : this.model.getPreview(reduce);
+    Map<Point, BufferedImage> tiles = new HashMap<>();
+    for (Point tile : wanted) {
+      if (FramePainter.tileRegion(level, tile.x, tile.y, canvas.getWidth(), canvas.getHeight())
+              .isEmpty()) {
+        continue;
+      }
+      BufferedImage image = this.painter.paintTile(source, level + reduce, tile.x, tile.y,
+          () -> this.pending);
+      if (image == null) {
+        // the tiles are rendered again, with the newer edits, in the next frame
+        return;
+      }
+      tiles.put(tile, image);
+    }
+    synchronized (this) {
+      if (this.missing == asked) {
+        this.missing = new ArrayList<>();
+      }
+    }
+    // the tiles and the regions they replace are handed over together
+    List<Rectangle> changed = this.carried;
+    this.carried = new ArrayList<>();
+    IView target = this.view;
+    EventQueue.invokeLater(() -> target.renderTiles(level, tiles, changed, structure));
+  }
+}
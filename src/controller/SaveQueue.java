@@ -0,0 +1,182 @@
+package controller;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import model.CollageFile;
+import model.ICanvas;
+import view.IView;
+
+/**
+ * This class writes the saved projects and images of a collage project one at a time, in the
+ * order they were started, either on a background thread so that the project can keep being
+ * edited while it is written, or right away on the thread that starts them. Each write is
+ * given a snapshot of what it writes, taken when it is started, and its progress is reported
+ * to the view.
+ * Note: Every file is written to a temporary file that then replaces it, so a write that is
+ * stopped part way never leaves a partly written file behind.
+ */
+class SaveQueue {
+  private final ExecutorService executor;
+  private Future<CollageFile> project;
+  private Future<?> last;
+
+  /**
+   * This represents a write of a file, which reports the percentage of it that is done.
+   *
+   * @param <T> is the type of the result of the write
+   */
+  interface Write<T> {
+    /**
+     * This method is used to write the file.
+     *
+     * @param progress is given the percentage of the file that has been written
+     * @return the result of the write
+     * @throws IOException if there is an I/O error when writing the file
+     */
+    T write(IntConsumer progress) throws IOException;
+  }
+
+  /**
+   * This is the constructor for the {@code SaveQueue} class, which creates a new
+   * {@code SaveQueue} that writes on a background thread or on the thread that starts each
+   * write.
+   *
+   * @param background is true to write on a background thread, false to write on the thread
+   *                   that starts each write, which then waits for it
+   */
+  SaveQueue(boolean background) {
+    this.executor = background ? Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "collage-save");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  /**
+   * This method is used to record the file the project was loaded from, or to forget the last
+   * saved file when a new project is started, so that the next save of the project knows which
+   * file it was last loaded from or saved to.
+   *
+   * @param loaded is the file the project was loaded from, or null for a new project
+   */
+  void reset(CollageFile loaded) {
+    this.project = loaded == null ? null : CompletableFuture.completedFuture(loaded);
+  }
+
+  /**
+   * This method is used to save a snapshot of the given project to a .collage file, taken now,
+   * so the project can be changed while it is written.
+   *
+   * @param canvas is the collage project to be saved
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param view is the view the progress of the save is reported to
+   * @param failure is given the error of the save if it fails, on the thread that writes it
+   * @return the pending save, whose result is the written file
+   */
+  Future<CollageFile> saveProject(ICanvas canvas, int maxValue, String filename, IView view,
+                                  Consumer<IOException> failure) {
+    // a save that is written right away is done before the project can change again
+    ICanvas snapshot = this.executor == null ? canvas : canvas.snapshot();
+    Future<CollageFile> previous = this.project;
+    this.project = this.submit("Saving " + filename, progress -> CollageFile.write(snapshot,
+            maxValue, filename, done(previous), progress), view, failure);
+    return this.project;
+  }
+
+  /**
+   * This method is used to start a write, such as the export of a snapshot of the project image,
+   * after every write that was started before it.
+   *
+   * @param task is a short description of the write
+   * @param write is the write to be done
+   * @param view is the view the progress of the write is reported to
+   * @param failure is given the error of the write if it fails, on the thread that writes it
+   * @param <T> is the type of the result of the write
+   * @return the pending write
+   */
+  <T> Future<T> submit(String task, Write<T> write, IView view, Consumer<IOException> failure) {
+    FutureTask<T> future = new FutureTask<>(() -> {
+      view.renderProgress(task, 0);
+      try {
+        return write.write(percent -> view.renderProgress(task, Math.min(percent, 99)));
+      } catch (IOException e) {
+        failure.accept(e);
+        throw e;
+      } catch (RuntimeException e) {
+        IOException error = new IOException(e.getMessage(), e);
+        failure.accept(error);
+        throw error;
+      } finally {
+        view.renderProgress(task, 100);
+      }
+    });
+    this.last = future;
+    if (this.executor == null) {
+      future.run();
+    } else {
+      this.executor.execute(future);
+    }
+    return future;
+  }
+
+  /**
+   * This method is used to wait for every write that has been started to be done, such as before
+   * the program exits. Writes that failed have already been reported.
+   */
+  void await() {
+    done(this.last);
+  }
+
+  /**
+   * This method is used to wait for the given write to be done and to return its result.
+   *
+   * @param write is the pending write
+   * @param <T> is the type of the result of the write
+   * @return the result of the write, or null if there is no write or it failed
+   */
+  private static <T> T done(Future<T> write) {
+    if (write == null) {
+      return null;
+    }
+    try {
+      return write.get();
+    } catch (ExecutionException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * This method is used to wait for the given write to be done and to return its result, or to
+   * throw the error it failed with.
+   *
+   * @param write is the pending write
+   * @param <T> is the type of the result of the write
+   * @return the result of the write
+   * @throws IOException if the write failed with an I/O error or was interrupted
+   */
+  static <T> T join(Future<T> write) throws IOException {
+    try {
+      return write.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing.", e);
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+/**
+ * This class reads the tokens and lines of a plain text file, such as a PPM image or a collage
+ * project, straight from the bytes of the file, through a single reusable buffer. Tokens are
+ * separated by any amount of whitespace, and a '#' starts a comment that runs to the end of its
+ * line, anywhere between tokens. The raster of a binary (P6) PPM file is read as raw bytes after
+ * its header.
+ * Note: Errors report the byte offset in the file where reading failed. The reader may be
+ * limited to a part of the file, and may hash every byte it reads from the file.
+ */
+class AsciiReader implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final String filename;
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private int position;
+  private int limit;
+  private long consumed;
+  private long remaining;
+  private MessageDigest digest;
+
+  /**
+   * This is the constructor for the {@code AsciiReader} class, which opens the file with the
+   * given name for reading.
+   *
+   * @param filename is the path of the file
+   * @throws FileNotFoundException if the file does not exist
+   */
+  AsciiReader(String filename) throws FileNotFoundException {
+    FileInputStream in;
+    try {
+      in = new FileInputStream(filename);
+    } catch (FileNotFoundException e) {
+      throw new FileNotFoundException("File '" + filename + "' not found.");
+    }
+    this.filename = filename;
+    this.channel = in.getChannel();
+    this.bytes = new byte[BUFFER_SIZE];
+    this.buffer = ByteBuffer.wrap(this.bytes);
+    this.remaining = Long.MAX_VALUE;
+  }
+
+  /**
+   * This is the constructor for the {@code AsciiReader} class, which opens the file with the
+   * given name for reading from the given offset.
+   *
+   * @param filename is the path of the file
+   * @param offset of the first byte to be read
+   * @throws IOException if the file does not exist or there is an I/O error
+   */
+  AsciiReader(String filename, long offset) throws IOException {
+    this(filename);
+    this.channel.position(offset);
+    this.consumed = offset;
+  }
+
+  /**
+   * This is the constructor for the {@code AsciiReader} class, which opens the file with the
+   * given name for reading the given number of bytes from the given offset, and updates the
+   * given digest with each byte as it is read from the file.
+   *
+   * @param filename is the path of the file
+   * @param offset of the first byte to be read
+   * @param length is the number of bytes that may be read, or {@code Long.MAX_VALUE} to read
+   *               up to the end of the file
+   * @param digest is updated with the bytes read from the file
+   * @throws IOException if the file does not exist or there is an I/O error
+   */
+  AsciiReader(String filename, long offset, long length, MessageDigest digest)
+          throws IOException {
+    this(filename, offset);
+    this.remaining = length;
+    this.digest = digest;
+  }
+
+  /**
+   * Returns the rest of the current line of the file, without its line terminator, decoded with
+   * the default charset.
+   *
+   * @return the rest of the current line, or null at the end of the file
+   * @throws IOException if there is an I/O error
+   */
+  String nextLine() throws IOException {
+    int c = this.peek();
+    if (c < 0) {
+      return null;
+    }
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (c >= 0 && c != '\n') {
+      line.write(c);
+      this.position++;
+      c = this.peek();
+    }
+    if (c == '\n') {
+      this.position++;
+    }
+    byte[] b = line.toByteArray();
+    int length = b.length > 0 && b[b.length - 1] == '\r' ? b.length - 1 : b.length;
+    return new String(b, 0, length, Charset.defaultCharset());
+  }
+
+  /**
+   * Returns the next token of the file, such as the magic number of the header.
+   *
+   * @param field is the name of the value being read, used in error messages
+   * @return the next token of the file
+   * @throws IOException if the end of the file is reached or there is an I/O error
+   */
+  String nextToken(String field) throws IOException {
+    StringBuilder token = new StringBuilder();
+    int c = this.skipWhitespace(field);
+    while (c >= 0 && !isWhitespace(c) && c != '#') {
+      token.append((char) c);
+      this.position++;
+      c = this.peek();
+    }
+    return token.toString();
+  }
+
+  /**
+   * Returns the next token of the file as a non-negative decimal integer.
+   *
+   * @param field is the name of the value being read, used in error messages
+   * @return the value of the next token
+   * @throws IOException if the token is not a number, if the end of the file is reached, or if
+   *         there is an I/O error
+   */
+  int nextInt(String field) throws IOException {
+    this.skipWhitespace(field);
+    long start = this.offset();
+    int value = 0;
+    int digits = 0;
+    int next = -1;
+    while (this.position < this.limit || this.fill()) {
+      int c = this.bytes[this.position];
+      if (c < '0' || c > '9') {
+        next = c & 0xFF;
+        break;
+      }
+      value = value * 10 + (c - '0');
+      if (value > 0xFFFFFF) {
+        throw this.error("value of " + field + " is too large", start);
+      }
+      digits++;
+      this.position++;
+    }
+    if (digits == 0 || (next >= 0 && !isWhitespace(next) && next != '#')) {
+      throw this.error("expected a number for " + field + " but found '" + (char) next + "'",
+              this.offset());
+    }
+    return value;
+  }
+
+  /**
+   * Consumes the single whitespace byte that separates the header of a binary PPM file from its
+   * raster.
+   *
+   * @throws IOException if the next byte is not whitespace, if the end of the file is reached,
+   *         or if there is an I/O error
+   */
+  void skipSeparator() throws IOException {
+    int c = this.peek();
+    if (c < 0 || !isWhitespace(c)) {
+      throw this.error("expected whitespace before the raster", this.offset());
+    }
+    this.position++;
+  }
+
+  /**
+   * Reads exactly the given number of bytes of the file into the given array.
+   *
+   * @param dst is the array the bytes are read into
+   * @param offset of the first byte in the array
+   * @param length is the number of bytes to read
+   * @param field is the name of the value being read, used in error messages
+   * @throws IOException if the end of the file is reached or there is an I/O error
+   */
+  void readFully(byte[] dst, int offset, int length, String field) throws IOException {
+    while (length > 0) {
+      if (this.position == this.limit && !this.fill()) {
+        throw new EOFException("Unable to read file '" + this.filename
+                + "': unexpected end of file while reading " + field + ".");
+      }
+      int n = Math.min(length, this.limit - this.position);
+      System.arraycopy(this.bytes, this.position, dst, offset, n);
+      this.position += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Consumes the rest of the bytes the reader may read, so that each of them has been added to
+   * the digest of the reader.
+   *
+   * @throws IOException if there is an I/O error
+   */
+  void skipRest() throws IOException {
+    this.position = this.limit;
+    while (this.fill()) {
+      this.position = this.limit;
+    }
+  }
+
+  /**
+   * Returns the offset in the file of the next byte to be read.
+   *
+   * @return the offset of the next byte
+   */
+  long offset() {
+    return this.consumed - this.limit + this.position;
+  }
+
+  /**
+   * Creates an exception that describes an error at the given offset of the file.
+   *
+   * @param message describing the error
+   * @param offset of the error in the file
+   * @return the exception to be thrown
+   */
+  IOException error(String message, long offset) {
+    return new IOException("Unable to read file '" + this.filename + "': " + message
+            + " at byte " + offset + ".");
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Skips whitespace and comments, and returns the first byte after them without consuming it.
+   *
+   * @param field is the name of the value being read, used in error messages
+   * @return the next byte that is not whitespace or part of a comment
+   * @throws IOException if the end of the file is reached or there is an I/O error
+   */
+  private int skipWhitespace(String field) throws IOException {
+    while (true) {
+      int c = this.peek();
+      if (c < 0) {
+        throw new EOFException("Unable to read file '" + this.filename
+                + "': unexpected end of file while reading " + field + ".");
+      }
+      if (c == '#') {
+        while (c >= 0 && c != '\n' && c != '\r') {
+          this.position++;
+          c = this.peek();
+        }
+      } else if (isWhitespace(c)) {
+        this.position++;
+      } else {
+        return c;
+      }
+    }
+  }
+
+  /**
+   * Returns the next byte of the file without consuming it.
+   *
+   * @return the next byte, or -1 at the end of the file
+   * @throws IOException if there is an I/O error
+   */
+  private int peek() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.bytes[this.position] & 0xFF;
+  }
+
+  /**
+   * Reads the next bytes of the file into the buffer once every byte in it has been consumed.
+   *
+   * @return true if any bytes were read, false at the end of the file
+   * @throws IOException if there is an I/O error
+   */
+  private boolean fill() throws IOException {
+    if (this.remaining == 0) {
+      this.position = 0;
+      this.limit = 0;
+      return false;
+    }
+    this.buffer.clear().limit((int) Math.min(BUFFER_SIZE, this.remaining));
+    int n;
+    do {
+      n = this.channel.read(this.buffer);
+    } while (n == 0);
+    if (n < 0) {
+      this.position = 0;
+      this.limit = 0;
+      return false;
+    }
+    this.position = 0;
+    this.limit = n;
+    this.consumed += n;
+    this.remaining -= n;
+    if (this.digest != null) {
+      this.digest.update(this.bytes, 0, n);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the given byte is whitespace in a PPM file.
+   *
+   * @param c is the byte
+   * @return true if the byte is whitespace, false otherwise
+   */
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+  }
+}
@@ -0,0 +1,126 @@
+package model;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class writes plain text files, such as PPM images and collage projects, through a single
+ * large buffer to a {@code FileChannel}. Numbers are formatted straight into the buffer, and the
+ * digits of the values in [0, 255] are looked up in a table, so writing a sample does not create
+ * any objects.
+ */
+class AsciiWriter implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final byte[][] DIGITS = new byte[256][];
+
+  static {
+    for (int i = 0; i < DIGITS.length; i++) {
+      DIGITS[i] = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private int position;
+
+  /**
+   * This is the constructor for the {@code AsciiWriter} class, which creates (or replaces) the
+   * file with the given name for writing.
+   *
+   * @param filename is the path of the file
+   * @throws IOException if the file cannot be opened for writing
+   */
+  AsciiWriter(String filename) throws IOException {
+    this.channel = new FileOutputStream(filename).getChannel();
+    this.bytes = new byte[BUFFER_SIZE];
+    this.buffer = ByteBuffer.wrap(this.bytes);
+  }
+
+  /**
+   * Writes the given string, encoded with the default charset.
+   *
+   * @param s is the string to be written
+   * @throws IOException if there is an I/O error when writing
+   */
+  void write(String s) throws IOException {
+    byte[] b = s.getBytes(Charset.defaultCharset());
+    for (int i = 0; i < b.length; i += BUFFER_SIZE) {
+      int n = Math.min(BUFFER_SIZE, b.length - i);
+      this.ensure(n);
+      System.arraycopy(b, i, this.bytes, this.position, n);
+      this.position += n;
+    }
+  }
+
+  /**
+   * Writes the given ASCII character.
+   *
+   * @param c is the character to be written
+   * @throws IOException if there is an I/O error when writing
+   */
+  void write(char c) throws IOException {
+    this.ensure(1);
+    this.bytes[this.position++] = (byte) c;
+  }
+
+  /**
+   * Writes the given value in [0, 255] in decimal, followed by the given ASCII character.
+   *
+   * @param value is the value to be written
+   * @param separator is the character written after the value
+   * @throws IOException if there is an I/O error when writing
+   * @throws IllegalArgumentException if value is not in range [0, 255]
+   */
+  void writeSample(int value, char separator) throws IOException, IllegalArgumentException {
+    if (value < 0 || value > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    byte[] digits = DIGITS[value];
+    this.ensure(digits.length + 1);
+    for (byte digit : digits) {
+      this.bytes[this.position++] = digit;
+    }
+    this.bytes[this.position++] = (byte) separator;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Makes room in the buffer for the given number of bytes, writing the buffer to the file if
+   * it is too full.
+   *
+   * @param length is the number of bytes about to be written, at most the size of the buffer
+   * @throws IOException if there is an I/O error when writing
+   */
+  private void ensure(int length) throws IOException {
+    if (this.position + length > BUFFER_SIZE) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Writes the contents of the buffer to the file and empties the buffer.
+   *
+   * @throws IOException if there is an I/O error when writing
+   */
+  private void flush() throws IOException {
+    this.buffer.clear().limit(this.position);
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.position = 0;
+  }
+}
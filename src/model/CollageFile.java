@@ -0,0 +1,1590 @@
+package model;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * This class represents a collage project file, and contains utility methods to write collage
+ * projects to .collage files. Three versions of the format are supported, and the version of a
+ * file is detected when it is read:
+ * <ul>
+ *   <li>Version 1 is plain text: the name of the project, the size of the canvas and its maximum
+ *   value, followed by the name and filter of each layer and the original pixels of the layer,
+ *   one pixel per line as its red, green, blue and alpha values scaled down to the maximum
+ *   value.</li>
+ *   <li>Version 2 is binary: a header with the size, maximum value and name of the project,
+ *   followed by a table with the name, filter, encoding, offset and length of each layer, and
+ *   then the original pixels of each layer as its red, green, blue and alpha planes of one byte
+ *   per pixel, stored either raw or compressed with deflate.</li>
+ *   <li>Version 3 is a binary recipe: the same header, followed by a table of the images that
+ *   were added to the layers and a table with the name, filter, images and positions of each
+ *   layer. An image that was read from an image file is stored as the path and SHA-256 hash of
+ *   the file, and the file itself may be embedded once however many times it was added. Any
+ *   other image is embedded as its planes, like a layer of a version 2 file.</li>
+ * </ul>
+ * Note: The pixels of a version 2 file are stored in the range [0, 255] whatever the maximum
+ * value of the project, so they are read back exactly as they were written.
+ */
+public class CollageFile {
+  /**
+   * The version of the plain text format.
+   */
+  public static final int TEXT = 1;
+
+  /**
+   * The version of the binary format.
+   */
+  public static final int BINARY = 2;
+
+  /**
+   * The version of the recipe format.
+   */
+  public static final int RECIPE = 3;
+
+  private static final byte[] MAGIC = {(byte) 0x89, 'C', 'L', 'P', '\r', '\n', 0x1A, '\n'};
+  private static final byte RAW = 0;
+  private static final byte DEFLATE = 1;
+  private static final byte REFERENCE = 2;
+  private static final byte IMAGE_FILE = 0;
+  private static final byte IMAGE_PLANES = 1;
+  private static final int DIGEST_LENGTH = 32;
+  private static final int PLANES = 4;
+  private static final int[] PLANE_SHIFTS = {16, 8, 0, 24};
+  private static final int CHUNK_SIZE = 1 << 16;
+  private static final int BLOCK_SIZE = 1 << 12;
+
+  private final String filename;
+  private final int version;
+  private final String name;
+  private final int height;
+  private final int width;
+  private final int maxValue;
+  private final long dataOffset;
+  private final List<Entry> entries;
+  private final List<Source> sources;
+  private final List<Layer> recipe;
+  private final long length;
+  private final byte[] fingerprint;
+  private List<String> tracked;
+  private long[] generations;
+
+  /**
+   * This class represents a layer of a collage project file: its name, the name of its filter
+   * and the sources and positions of the images that make up its original pixels.
+   */
+  public static class Layer {
+    private final String name;
+    private final String filter;
+    private final int height;
+    private final int width;
+    private final List<ImageSource> images;
+    private final List<Point> positions;
+
+    /**
+     * Constructs a layer of a project file with the given name, filter and images.
+     *
+     * @param name of the layer
+     * @param filter is the name of the filter of the layer
+     * @param height of the canvas
+     * @param width of the canvas
+     * @param images are the sources of the images of the layer
+     * @param positions are the positions of the images of the layer
+     */
+    private Layer(String name, String filter, int height, int width, List<ImageSource> images,
+                  List<Point> positions) {
+      this.name = name;
+      this.filter = filter;
+      this.height = height;
+      this.width = width;
+      this.images = Collections.unmodifiableList(images);
+      this.positions = Collections.unmodifiableList(positions);
+    }
+
+    /**
+     * Constructs a layer of a project file whose original pixels are stored as a whole.
+     *
+     * @param name of the layer
+     * @param filter is the name of the filter of the layer
+     * @param source of the original pixels of the layer
+     */
+    private Layer(String name, String filter, ImageSource source) {
+      this(name, filter, source.getHeight(), source.getWidth(),
+              Collections.singletonList(source), Collections.singletonList(new Point(0, 0)));
+    }
+
+    /**
+     * Returns the name of this layer.
+     *
+     * @return the name of this layer
+     */
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * Returns the name of the filter of this layer, as accepted by
+     * {@code ICanvas.getFilterFromString}.
+     *
+     * @return the name of the filter of this layer
+     */
+    public String getFilter() {
+      return this.filter;
+    }
+
+    /**
+     * Returns the sources of the images that make up the original pixels of this layer, in the
+     * order they were added to the layer. The layer of a version 1 or 2 file has a single image
+     * that covers the whole layer. The pixels of an image are only read when its source is
+     * loaded, so the file must not be changed until then.
+     *
+     * @return the sources of the images of this layer
+     */
+    public List<ImageSource> getImages() {
+      return this.images;
+    }
+
+    /**
+     * Returns the positions of the images of {@code getImages}, where x is the column and y is
+     * the row of the top left pixel of each image.
+     *
+     * @return the positions of the images of this layer
+     */
+    public List<Point> getPositions() {
+      return this.positions;
+    }
+
+    /**
+     * Returns the original pixels of this layer, before its filter is applied. The image has
+     * no filename, and its color components are in the range [0, 255], so it can be added to a
+     * layer as it is.
+     *
+     * @return the original pixels of this layer
+     * @throws IOException if there is an I/O error when reading the file
+     */
+    public IImage getImage() throws IOException {
+      if (this.images.size() == 1 && this.positions.get(0).equals(new Point(0, 0))) {
+        ImageSource only = this.images.get(0);
+        if (only.getHeight() == this.height && only.getWidth() == this.width
+                && only.getFilename() == null) {
+          return only.load();
+        }
+      }
+      try {
+        return new PackedImage(new ImageLayer(this.height, this.width, this.name, this.images,
+                this.positions).getPreviousImage());
+      } catch (IllegalStateException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * This class represents the entry of a block of stored data in a version 2 or 3 file: the
+   * planes of a layer, or an embedded image.
+   */
+  private static class Entry {
+    private final String name;
+    private final String filter;
+    private final byte encoding;
+    private final long offset;
+    private final long length;
+    private final int height;
+    private final int width;
+
+    /**
+     * Constructs the entry of a layer with the given name, filter and location of its planes.
+     *
+     * @param name of the layer, or a description of an embedded image
+     * @param filter is the name of the filter of the layer, or null for an embedded image
+     * @param encoding of the stored data
+     * @param offset of the stored data in the file
+     * @param length of the stored data in the file
+     * @param height of the stored image
+     * @param width of the stored image
+     */
+    private Entry(String name, String filter, byte encoding, long offset, long length,
+                  int height, int width) {
+      this.name = name;
+      this.filter = filter;
+      this.encoding = encoding;
+      this.offset = offset;
+      this.length = length;
+      this.height = height;
+      this.width = width;
+    }
+
+    /**
+     * Returns a description of this entry for error messages.
+     *
+     * @return a description of this entry
+     */
+    private String describe() {
+      return this.filter != null ? "layer '" + this.name + "'" : this.name;
+    }
+  }
+
+  /**
+   * This class represents an image in the image table of a version 3 file: an image file, which
+   * is either referenced by its path or embedded, or an image whose planes are embedded.
+   */
+  private static class Source {
+    private final byte kind;
+    private final String path;
+    private final byte[] digest;
+    private final Entry entry;
+
+    /**
+     * Constructs an image of the image table.
+     *
+     * @param kind is {@code IMAGE_FILE} or {@code IMAGE_PLANES}
+     * @param path of the image file, or an empty string for embedded planes
+     * @param digest is the SHA-256 hash of the image file
+     * @param entry is the size of the image and the location of its stored data
+     */
+    private Source(byte kind, String path, byte[] digest, Entry entry) {
+      this.kind = kind;
+      this.path = path;
+      this.digest = digest;
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * This class represents the source of the original pixels of a layer of a version 1 file,
+   * which are read along with the rest of the file.
+   */
+  private static class DecodedSource implements ImageSource {
+    private final IImage image;
+
+    /**
+     * Constructs the source of a layer whose pixels have already been read.
+     *
+     * @param image holds the original pixels of the layer
+     */
+    private DecodedSource(IImage image) {
+      this.image = image;
+    }
+
+    @Override
+    public int getHeight() {
+      return this.image.getHeight();
+    }
+
+    @Override
+    public int getWidth() {
+      return this.image.getWidth();
+    }
+
+    @Override
+    public IImage load() {
+      return new PackedImage(this.image);
+    }
+  }
+
+  /**
+   * This class represents the source of stored planes in a version 2 or 3 file, which are read
+   * from the file with a positional read each time the source is loaded.
+   */
+  private static class PlaneSource implements ImageSource {
+    private final String filename;
+    private final Entry entry;
+
+    /**
+     * Constructs the source of the planes with the given entry.
+     *
+     * @param filename the path of the .collage file
+     * @param entry of the planes
+     */
+    private PlaneSource(String filename, Entry entry) {
+      this.filename = filename;
+      this.entry = entry;
+    }
+
+    @Override
+    public int getHeight() {
+      return this.entry.height;
+    }
+
+    @Override
+    public int getWidth() {
+      return this.entry.width;
+    }
+
+    @Override
+    public IImage load() throws IOException {
+      try (FileChannel channel = new FileInputStream(this.filename).getChannel()) {
+        return readPlanes(this.filename, channel, this.entry);
+      }
+    }
+  }
+
+  /**
+   * This class represents the source of an image file of a version 3 file, which is read from
+   * the file it was added from, or from the project file when it is embedded. The hash of the
+   * file is checked each time it is loaded, so an image file that was changed after the project
+   * was saved is never used in its place.
+   */
+  private static class FileSource implements ImageSource {
+    private final String filename;
+    private final Source source;
+
+    /**
+     * Constructs the source of the given image file.
+     *
+     * @param filename the path of the .collage file
+     * @param source is the image file in the image table
+     */
+    private FileSource(String filename, Source source) {
+      this.filename = filename;
+      this.source = source;
+    }
+
+    @Override
+    public int getHeight() {
+      return this.source.entry.height;
+    }
+
+    @Override
+    public int getWidth() {
+      return this.source.entry.width;
+    }
+
+    @Override
+    public String getFilename() {
+      return this.source.path;
+    }
+
+    @Override
+    public byte[] getFileDigest() {
+      return this.source.digest;
+    }
+
+    @Override
+    public IImage load() throws IOException {
+      Entry entry = this.source.entry;
+      IImage image;
+      if (entry.encoding == REFERENCE) {
+        image = ImageUtil.readImage(this.resolve());
+        if (!Arrays.equals(image.getFileDigest(), this.source.digest)) {
+          throw new IOException("Unable to read file '" + this.filename + "': image '"
+                  + this.source.path + "' has changed since the project was saved.");
+        }
+      } else {
+        image = ImageUtil.readImage(this.filename, entry.offset, entry.length,
+                this.source.path);
+        if (!Arrays.equals(image.getFileDigest(), this.source.digest)) {
+          throw new IOException("Unable to read file '" + this.filename + "': corrupt image '"
+                  + this.source.path + "'.");
+        }
+      }
+      // images are scaled when they are added to a layer, so they are scaled the same way here
+      image.updateWithMaxValue();
+      if (image.getHeight() != entry.height || image.getWidth() != entry.width) {
+        throw new IOException("Unable to read file '" + this.filename + "': image '"
+                + this.source.path + "' does not have the expected size.");
+      }
+      return image;
+    }
+
+    /**
+     * Returns the path of the referenced image file. A relative path that does not exist from
+     * the current directory is looked up from the directory of the project file instead.
+     *
+     * @return the path of the image file
+     * @throws FileNotFoundException if the image file does not exist
+     */
+    private String resolve() throws FileNotFoundException {
+      File file = new File(this.source.path);
+      if (file.isFile()) {
+        return this.source.path;
+      }
+      if (!file.isAbsolute()) {
+        File sibling = new File(new File(this.filename).getAbsoluteFile().getParentFile(),
+                this.source.path);
+        if (sibling.isFile()) {
+          return sibling.getPath();
+        }
+      }
+      throw new FileNotFoundException("File '" + this.source.path + "' not found.");
+    }
+  }
+
+  /**
+   * Constructs a project file with the given header and tables.
+   *
+   * @param filename the path of the .collage file
+   * @param version of the format of the file
+   * @param name of the project
+   * @param height of the canvas
+   * @param width of the canvas
+   * @param maxValue of the project
+   * @param dataOffset is the offset of the first layer of a version 1 file
+   * @param entries is the layer table of a version 2 file
+   * @param sources is the image table of a version 3 file
+   * @param recipe is the layer table of a version 3 file
+   * @param fingerprint is the SHA-256 hash of the header and tables of a version 2 or 3 file,
+   *                    or null for a version 1 file
+   */
+  private CollageFile(String filename, int version, String name, int height, int width,
+                      int maxValue, long dataOffset, List<Entry> entries, List<Source> sources,
+                      List<Layer> recipe, byte[] fingerprint) {
+    this.filename = filename;
+    this.version = version;
+    this.name = name;
+    this.height = height;
+    this.width = width;
+    this.maxValue = maxValue;
+    this.dataOffset = dataOffset;
+    this.entries = entries;
+    this.sources = sources;
+    this.recipe = recipe;
+    this.length = new File(filename).length();
+    this.fingerprint = fingerprint;
+    this.tracked = Collections.emptyList();
+    this.generations = new long[0];
+  }
+
+  /**
+   * Read the header of the given .collage file, detecting the version of its format. The
+   * layers of the project are only read by {@code readLayers}, so the header can be checked
+   * first.
+   *
+   * @param filename the path of the .collage file.
+   * @return the project file
+   * @throws IOException if there is an I/O error when reading the file, or if the file is not a
+   *         valid project file
+   */
+  public static CollageFile read(String filename) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    int n;
+    try (FileInputStream in = new FileInputStream(filename)) {
+      n = in.readNBytes(magic, 0, magic.length);
+    } catch (FileNotFoundException e) {
+      throw new FileNotFoundException("File '" + filename + "' not found.");
+    }
+    if (n == MAGIC.length && Arrays.equals(magic, MAGIC)) {
+      return readBinaryHeader(filename);
+    }
+    try (AsciiReader reader = new AsciiReader(filename)) {
+      String name = reader.nextLine();
+      String size = reader.nextLine();
+      String max = reader.nextLine();
+      if (max == null) {
+        throw new IOException("Unable to read file '" + filename + "': incomplete header.");
+      }
+      String[] sizes = size.split("\\s+");
+      try {
+        int width = Integer.parseInt(sizes[0]);
+        int height = Integer.parseInt(sizes[1]);
+        int maxValue = Integer.parseInt(max);
+        return new CollageFile(filename, TEXT, name, height, width, maxValue, reader.offset(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null);
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new IOException("Unable to read file '" + filename + "': invalid header.");
+      }
+    }
+  }
+
+  /**
+   * Reads the header and tables of a version 2 or 3 file. The bytes of the header and tables
+   * are hashed as they are read, so that a later save can tell whether the file was replaced.
+   *
+   * @param filename the path of the .collage file
+   * @return the project file
+   * @throws IOException if there is an I/O error when reading the file
+   */
+  private static CollageFile readBinaryHeader(String filename) throws IOException {
+    MessageDigest fingerprint = ImageUtil.sha256();
+    try (DataInputStream in = new DataInputStream(new DigestInputStream(
+            new BufferedInputStream(new FileInputStream(filename)), fingerprint))) {
+      in.readFully(new byte[MAGIC.length]);
+      int version = in.readInt();
+      if (version != BINARY && version != RECIPE) {
+        throw new IOException("Unable to read file '" + filename + "': unsupported version "
+                + version + ".");
+      }
+      int width = in.readInt();
+      int height = in.readInt();
+      int maxValue = in.readInt();
+      String name = in.readUTF();
+      if (version == RECIPE) {
+        return readRecipeTables(filename, in, fingerprint, name, height, width, maxValue);
+      }
+      int count = in.readInt();
+      if (count < 0) {
+        throw new IOException("Unable to read file '" + filename + "': invalid layer table.");
+      }
+      List<Entry> entries = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        entries.add(new Entry(in.readUTF(), in.readUTF(), in.readByte(), in.readLong(),
+                in.readLong(), height, width));
+      }
+      return new CollageFile(filename, BINARY, name, height, width, maxValue, 0, entries,
+              Collections.emptyList(), Collections.emptyList(), fingerprint.digest());
+    } catch (EOFException e) {
+      throw new IOException("Unable to read file '" + filename + "': unexpected end of file.");
+    }
+  }
+
+  /**
+   * Reads the image table and layer table of a version 3 file.
+   *
+   * @param filename the path of the .collage file
+   * @param in is the stream of the file, positioned after the name of the project
+   * @param fingerprint is updated with the bytes read from the stream
+   * @param name of the project
+   * @param height of the canvas
+   * @param width of the canvas
+   * @param maxValue of the project
+   * @return the project file
+   * @throws IOException if there is an I/O error when reading the file, or if a table is not
+   *         valid
+   */
+  private static CollageFile readRecipeTables(String filename, DataInputStream in,
+                                              MessageDigest fingerprint, String name, int height,
+                                              int width, int maxValue) throws IOException {
+    int count = in.readInt();
+    if (count < 0) {
+      throw new IOException("Unable to read file '" + filename + "': invalid image table.");
+    }
+    List<Source> sources = new ArrayList<>();
+    List<ImageSource> images = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      byte kind = in.readByte();
+      String path = in.readUTF();
+      byte[] digest = new byte[DIGEST_LENGTH];
+      in.readFully(digest);
+      int imageHeight = in.readInt();
+      int imageWidth = in.readInt();
+      Entry entry = new Entry("image #" + (i + 1), null, in.readByte(), in.readLong(),
+              in.readLong(), imageHeight, imageWidth);
+      boolean file = kind == IMAGE_FILE && (entry.encoding == REFERENCE || entry.encoding == RAW);
+      boolean planes = kind == IMAGE_PLANES && entry.encoding != REFERENCE;
+      if ((!file && !planes) || imageHeight < 1 || imageWidth < 1
+              || (long) imageHeight * imageWidth > Integer.MAX_VALUE / PLANES) {
+        throw new IOException("Unable to read file '" + filename + "': invalid entry for "
+                + entry.describe() + ".");
+      }
+      Source source = new Source(kind, path, digest, entry);
+      sources.add(source);
+      images.add(file ? new FileSource(filename, source) : new PlaneSource(filename, entry));
+    }
+    int layerCount = in.readInt();
+    if (layerCount < 0) {
+      throw new IOException("Unable to read file '" + filename + "': invalid layer table.");
+    }
+    List<Layer> recipe = new ArrayList<>();
+    for (int i = 0; i < layerCount; i++) {
+      String layer = in.readUTF();
+      String filter = in.readUTF();
+      int imageCount = in.readInt();
+      if (imageCount < 0) {
+        throw new IOException("Unable to read file '" + filename + "': invalid layer table.");
+      }
+      List<ImageSource> layerImages = new ArrayList<>();
+      List<Point> positions = new ArrayList<>();
+      for (int k = 0; k < imageCount; k++) {
+        int index = in.readInt();
+        Point position = new Point(in.readInt(), in.readInt());
+        if (index < 0 || index >= images.size() || position.x < 0 || position.y < 0) {
+          throw new IOException("Unable to read file '" + filename + "': invalid image of "
+                  + "layer '" + layer + "'.");
+        }
+        layerImages.add(images.get(index));
+        positions.add(position);
+      }
+      recipe.add(new Layer(layer, filter, height, width, layerImages, positions));
+    }
+    return new CollageFile(filename, RECIPE, name, height, width, maxValue, 0,
+            Collections.emptyList(), sources, recipe, fingerprint.digest());
+  }
+
+  /**
+   * Returns the version of the format of this file.
+   *
+   * @return the version of the format of this file
+   */
+  public int getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Returns the name of the project.
+   *
+   * @return the name of the project
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the height of the canvas of the project.
+   *
+   * @return the height of the canvas of the project
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the width of the canvas of the project.
+   *
+   * @return the width of the canvas of the project
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the maximum value of the project.
+   *
+   * @return the maximum value of the project
+   */
+  public int getMaxValue() {
+    return this.maxValue;
+  }
+
+  /**
+   * Records the layers of a canvas that hold the layers of this file, in the same order as
+   * {@code readLayers}, along with their content generations. A later save of the canvas to
+   * this file in the binary format can then keep the stored pixels of every layer whose content
+   * generation has not changed, instead of writing them again.
+   * Note: The layers are matched by name, which is unique within a project and never changes,
+   * so a snapshot of a canvas matches the layers of the canvas it was taken of.
+   *
+   * @param layers are the layers of the canvas that hold the layers of this file
+   * @throws IllegalArgumentException if layers is null or contains null, or if this is a
+   *                                  version 2 file with a different number of layers
+   */
+  public void track(List<ILayer> layers) throws IllegalArgumentException {
+    if (layers == null || layers.contains(null)
+            || (this.version == BINARY && layers.size() != this.entries.size())) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    long[] generations = new long[layers.size()];
+    for (int i = 0; i < generations.length; i++) {
+      generations[i] = layers.get(i).getContentGeneration();
+    }
+    List<String> names = new ArrayList<>();
+    for (ILayer layer : layers) {
+      names.add(layer.getName());
+    }
+    this.tracked = names;
+    this.generations = generations;
+  }
+
+  /**
+   * Reads the layers of the project, from the bottom layer to the top layer. The stored data
+   * of a version 2 or 3 file is only checked against the size of the file here, and the pixels
+   * of each image are read when its source is loaded.
+   *
+   * @return the layers of the project
+   * @throws IOException if there is an I/O error when reading the file, or if the layers are
+   *         not valid
+   * @throws IllegalStateException if the size or maximum value of the project is not valid
+   */
+  public List<Layer> readLayers() throws IOException, IllegalStateException {
+    if (this.height < 1 || this.width < 1 || this.maxValue < 1 || this.maxValue > 255
+            || (long) this.height * this.width > Integer.MAX_VALUE / PLANES) {
+      throw new IllegalStateException("invalid project");
+    }
+    if (this.version == TEXT) {
+      return this.readTextLayers();
+    }
+    List<Layer> layers = new ArrayList<>();
+    try (FileChannel channel = new FileInputStream(this.filename).getChannel()) {
+      for (Entry entry : this.entries) {
+        checkEntry(this.filename, channel, entry);
+        layers.add(new Layer(entry.name, entry.filter, new PlaneSource(this.filename, entry)));
+      }
+      for (Source source : this.sources) {
+        if (source.entry.encoding != REFERENCE) {
+          checkEntry(this.filename, channel, source.entry);
+        }
+      }
+    }
+    layers.addAll(this.recipe);
+    return layers;
+  }
+
+  /**
+   * Reads the layers of a version 1 file, one layer line followed by a line for each pixel.
+   *
+   * @return the layers of the project
+   * @throws IOException if there is an I/O error when reading the file
+   */
+  private List<Layer> readTextLayers() throws IOException {
+    List<Layer> layers = new ArrayList<>();
+    try (AsciiReader reader = new AsciiReader(this.filename, this.dataOffset)) {
+      String line = reader.nextLine();
+      while (line != null) {
+        if (line.trim().isEmpty()) {
+          line = reader.nextLine();
+          continue;
+        }
+        String[] names = line.split("\\s+");
+        int[] argb = new int[this.height * this.width];
+        for (int i = 0; i < argb.length; i++) {
+          int r = reader.nextInt("red value");
+          int g = reader.nextInt("green value");
+          int b = reader.nextInt("blue value");
+          int a = reader.nextInt("alpha value");
+          if ((r | g | b | a) > 255) {
+            throw reader.error("value of the pixel at (" + i / this.width + ", "
+                    + i % this.width + ") of layer '" + names[0] + "' is greater than 255",
+                    reader.offset());
+          }
+          argb[i] = PackedPixel.pack(r, g, b, a);
+        }
+        IImage image = new PackedImage(this.height, this.width, this.maxValue, argb);
+        image.updateWithMaxValue();
+        layers.add(new Layer(names[0], names[1], new DecodedSource(image)));
+        reader.nextLine();
+        line = reader.nextLine();
+      }
+    }
+    return layers;
+  }
+
+  /**
+   * Checks that a block of stored data has a known encoding, is within the file, and has the
+   * expected length if it holds raw planes.
+   *
+   * @param filename the path of the .collage file
+   * @param channel is the channel of the file
+   * @param entry is the entry of the stored data
+   * @throws IOException if there is an I/O error when reading the file, or if the entry is not
+   *         valid
+   */
+  private static void checkEntry(String filename, FileChannel channel, Entry entry)
+          throws IOException {
+    if (entry.offset < 0 || entry.length < 0 || entry.length > Integer.MAX_VALUE
+            || entry.offset + entry.length > channel.size()
+            || (entry.encoding == RAW && entry.filter != null
+                && entry.length != (long) entry.height * entry.width * PLANES)
+            || (entry.encoding != RAW && entry.encoding != DEFLATE)) {
+      throw new IOException("Unable to read file '" + filename + "': invalid entry for "
+              + entry.describe() + ".");
+    }
+  }
+
+  /**
+   * Reads stored planes with a bulk read and packs them into an image.
+   *
+   * @param filename the path of the .collage file
+   * @param channel is the channel of the file
+   * @param entry is the entry of the planes
+   * @return the image
+   * @throws IOException if there is an I/O error when reading the file, or if the planes are
+   *         not valid
+   */
+  private static IImage readPlanes(String filename, FileChannel channel, Entry entry)
+          throws IOException {
+    int size = entry.height * entry.width;
+    checkEntry(filename, channel, entry);
+    if (entry.encoding == RAW && entry.length != (long) size * PLANES) {
+      throw new IOException("Unable to read file '" + filename + "': invalid entry for "
+              + entry.describe() + ".");
+    }
+    byte[] stored = new byte[(int) entry.length];
+    ByteBuffer buffer = ByteBuffer.wrap(stored);
+    long position = entry.offset;
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new EOFException("Unable to read file '" + filename
+                + "': unexpected end of file.");
+      }
+      position += n;
+    }
+    byte[] planes;
+    if (entry.encoding == RAW) {
+      planes = stored;
+    } else {
+      planes = new byte[size * PLANES];
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(stored);
+        int n = 0;
+        while (n < planes.length && !inflater.finished()) {
+          int read = inflater.inflate(planes, n, planes.length - n);
+          if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          n += read;
+        }
+        if (n != planes.length) {
+          throw new IOException("Unable to read file '" + filename
+                  + "': truncated planes for " + entry.describe() + ".");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Unable to read file '" + filename
+                + "': corrupt planes for " + entry.describe() + ".");
+      } finally {
+        inflater.end();
+      }
+    }
+    int[] argb = new int[size];
+    for (int p = 0; p < PLANES; p++) {
+      int shift = PLANE_SHIFTS[p];
+      int base = p * size;
+      for (int i = 0; i < size; i++) {
+        argb[i] |= (planes[base + i] & 0xFF) << shift;
+      }
+    }
+    return new PackedImage(entry.height, entry.width, 255, argb);
+  }
+
+  /**
+   * Write the given collage project to a .collage file. The project is written in the plain
+   * text format unless the {@code collage.projectFormat} system property is set to {@code 2}
+   * for the binary format or {@code 3} for the recipe format. The stored planes of a binary or
+   * recipe file are compressed with deflate unless the {@code collage.projectCompression}
+   * system property is set to {@code raw}, and the image files of a recipe are only referenced
+   * unless the {@code collage.projectSources} system property is set to {@code embed}.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  public static void write(ICanvas canvas, int maxValue, String filename)
+          throws IOException, IllegalArgumentException {
+    write(canvas, maxValue, filename, null);
+  }
+
+  /**
+   * Write the given collage project to a .collage file, in the format chosen by the same system
+   * properties as {@code write(ICanvas, int, String)}, and returns the written file with the
+   * layers of the canvas tracked.
+   * Note: When the project is written in the binary format to the file it was last loaded from
+   * or saved to, and the file has not been changed since, only the layers whose original pixels
+   * have changed since then are written. The stored pixels of the other layers are copied as
+   * they are, and keep their place in the file. The whole file is written again once more than
+   * half of it is taken by layers that are no longer used.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param previous is the file the project was last loaded from or saved to, or null if none
+   * @return the written file
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  public static CollageFile write(ICanvas canvas, int maxValue, String filename,
+                                  CollageFile previous)
+          throws IOException, IllegalArgumentException {
+    return write(canvas, maxValue, filename, previous, percent -> { });
+  }
+
+  /**
+   * Write the given collage project to a .collage file like
+   * {@code write(ICanvas, int, String, CollageFile)}, reporting how much of the project has been
+   * written as each layer or image is written.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param previous is the file the project was last loaded from or saved to, or null if none
+   * @param progress is given the percentage of the project that has been written, from 0 to 100
+   * @return the written file
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas or progress is null or maxValue is not in range
+   *                                  [1, 255]
+   */
+  public static CollageFile write(ICanvas canvas, int maxValue, String filename,
+                                  CollageFile previous, IntConsumer progress)
+          throws IOException, IllegalArgumentException {
+    if (progress == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int format = Integer.getInteger("collage.projectFormat", TEXT);
+    boolean compress = !"raw".equals(System.getProperty("collage.projectCompression"));
+    if (format == BINARY) {
+      if (previous == null || !previous.isCurrent(canvas, filename)
+              || !writeChanged(canvas, maxValue, filename, previous, compress, progress)) {
+        writeBinary(canvas, maxValue, filename, compress, progress);
+      }
+    } else if (format == RECIPE) {
+      writeRecipe(canvas, maxValue, filename,
+              "embed".equals(System.getProperty("collage.projectSources")), compress, progress);
+    } else {
+      writeText(canvas, maxValue, filename, progress);
+    }
+    CollageFile written = read(filename);
+    written.track(canvas.getLayers());
+    progress.accept(100);
+    return written;
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the plain text format, with the color
+   * components of the pixels scaled from [0, 255] down to [0, maxValue].
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  public static void writeText(ICanvas canvas, int maxValue, String filename)
+          throws IOException, IllegalArgumentException {
+    writeText(canvas, maxValue, filename, percent -> { });
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the plain text format, reporting the
+   * percentage of the layers that have been written after each layer.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param progress is given the percentage of the layers that have been written
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  private static void writeText(ICanvas canvas, int maxValue, String filename,
+                                IntConsumer progress) throws IOException, IllegalArgumentException {
+    if (canvas == null || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int height = canvas.getImage().getHeight();
+    int width = canvas.getImage().getWidth();
+    int[] scale = ImageUtil.scaleTable(maxValue);
+    int[] row = new int[width];
+    loadLayers(canvas);
+    File temp = ImageUtil.tempFile(filename);
+    try {
+      try (AsciiWriter writer = new AsciiWriter(temp.getPath())) {
+        writer.write(canvas.getProjectName() + "\n" + width + " " + height + "\n"
+                + maxValue + "\n");
+        List<ILayer> layers = canvas.getLayers();
+        for (int k = 0; k < layers.size(); k++) {
+          ILayer layer = layers.get(k);
+          writer.write(layer.getName() + " " + layer.getFilter().toString() + "\n");
+          IImage image = layer.getPreviousImage();
+          for (int i = 0; i < height; i++) {
+            image.readRow(i, row);
+            for (int j = 0; j < width; j++) {
+              int pixel = row[j];
+              writer.writeSample(scale[PackedPixel.red(pixel)], ' ');
+              writer.writeSample(scale[PackedPixel.green(pixel)], ' ');
+              writer.writeSample(scale[PackedPixel.blue(pixel)], ' ');
+              writer.writeSample(scale[PackedPixel.alpha(pixel)], '\n');
+            }
+          }
+          progress.accept(percent(k + 1, layers.size()));
+        }
+      }
+      ImageUtil.commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the binary format. The planes of each
+   * layer are written first, and the header and layer table are written last, once the offset
+   * and length of every layer is known. Room is left after the layer table for it to grow, so
+   * that a later save that keeps the stored pixels of some layers can write its layer table in
+   * the same place.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param compress is true to compress the planes of each layer with deflate
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  public static void writeBinary(ICanvas canvas, int maxValue, String filename,
+                                 boolean compress) throws IOException, IllegalArgumentException {
+    writeBinary(canvas, maxValue, filename, compress, percent -> { });
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the binary format, reporting the
+   * percentage of the layers that have been written after each layer.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param compress is true to compress the planes of each layer with deflate
+   * @param progress is given the percentage of the layers that have been written
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  private static void writeBinary(ICanvas canvas, int maxValue, String filename,
+                                  boolean compress, IntConsumer progress)
+          throws IOException, IllegalArgumentException {
+    if (canvas == null || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int height = canvas.getImage().getHeight();
+    int width = canvas.getImage().getWidth();
+    List<ILayer> layers = canvas.getLayers();
+    String name = String.valueOf(canvas.getProjectName());
+    int headerLength = headerLength(name, layers);
+    List<Entry> entries = new ArrayList<>();
+    loadLayers(canvas);
+    File temp = ImageUtil.tempFile(filename);
+    try {
+      try (FileChannel channel = new FileOutputStream(temp).getChannel()) {
+        channel.position(dataStart(headerLength));
+        for (ILayer layer : layers) {
+          long offset = channel.position();
+          writePlanes(channel, layer.getPreviousImage(), height, width, compress);
+          entries.add(new Entry(layer.getName(), layer.getFilter().toString(),
+                  compress ? DEFLATE : RAW, offset, channel.position() - offset, height, width));
+          progress.accept(percent(entries.size(), layers.size()));
+        }
+        writeBinaryHeader(channel, name, height, width, maxValue, entries);
+      }
+      ImageUtil.commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Write the given collage project over the binary file it was last loaded from or saved to,
+   * keeping the stored pixels of every layer whose content generation is the same as when the
+   * file was read. The file is copied up to the end of the last kept layer, so the kept layers
+   * are at the same offsets as before, and the planes of the other layers are appended. The
+   * header and layer table are then written at the start of the copy, which replaces the file.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param previous is the file as it was last loaded or saved
+   * @param compress is true to compress the planes of the appended layers with deflate
+   * @param progress is given the percentage of the layers that have been written
+   * @return true if the project was written, or false if the whole file should be written
+   *         instead because no layer can be kept, the layer table no longer fits before the
+   *         kept layers, or more than half of the file would be taken by unused layers
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  private static boolean writeChanged(ICanvas canvas, int maxValue, String filename,
+                                      CollageFile previous, boolean compress,
+                                      IntConsumer progress)
+          throws IOException, IllegalArgumentException {
+    if (canvas == null || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int height = previous.height;
+    int width = previous.width;
+    List<ILayer> layers = canvas.getLayers();
+    String name = String.valueOf(canvas.getProjectName());
+    int headerLength = headerLength(name, layers);
+    Map<String, Integer> saved = new HashMap<>();
+    for (int i = 0; i < previous.tracked.size(); i++) {
+      saved.put(previous.tracked.get(i), i);
+    }
+    Entry[] kept = new Entry[layers.size()];
+    long start = Long.MAX_VALUE;
+    long end = 0;
+    long live = 0;
+    for (int k = 0; k < layers.size(); k++) {
+      ILayer layer = layers.get(k);
+      Integer index = saved.get(layer.getName());
+      if (index != null && previous.generations[index] == layer.getContentGeneration()) {
+        kept[k] = previous.entries.get(index);
+        start = Math.min(start, kept[k].offset);
+        end = Math.max(end, kept[k].offset + kept[k].length);
+        live += kept[k].length;
+      }
+    }
+    if (live == 0 || headerLength > start || end - dataStart(headerLength) - live > live) {
+      return false;
+    }
+
+    List<Entry> entries = new ArrayList<>();
+    File temp = ImageUtil.tempFile(filename);
+    try {
+      try (FileChannel in = new FileInputStream(filename).getChannel();
+           FileChannel channel = new FileOutputStream(temp).getChannel()) {
+        long copied = 0;
+        while (copied < end) {
+          copied += in.transferTo(copied, end - copied, channel);
+        }
+        channel.position(end);
+        for (int k = 0; k < layers.size(); k++) {
+          ILayer layer = layers.get(k);
+          long offset = kept[k] != null ? kept[k].offset : channel.position();
+          byte encoding = kept[k] != null ? kept[k].encoding : compress ? DEFLATE : RAW;
+          if (kept[k] == null) {
+            writePlanes(channel, layer.getPreviousImage(), height, width, compress);
+          }
+          long length = kept[k] != null ? kept[k].length : channel.position() - offset;
+          entries.add(new Entry(layer.getName(), layer.getFilter().toString(), encoding, offset,
+                  length, height, width));
+          progress.accept(percent(k + 1, layers.size()));
+        }
+        writeBinaryHeader(channel, name, height, width, maxValue, entries);
+      }
+      ImageUtil.commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+    return true;
+  }
+
+  /**
+   * Writes the header and layer table of a version 2 file at the start of the given channel.
+   *
+   * @param channel is the channel of the file
+   * @param name of the project
+   * @param height of the canvas
+   * @param width of the canvas
+   * @param maxValue of the project
+   * @param entries is the layer table
+   * @throws IOException if there is an I/O error when writing the file
+   */
+  private static void writeBinaryHeader(FileChannel channel, String name, int height, int width,
+                                        int maxValue, List<Entry> entries) throws IOException {
+    channel.position(0);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(channel), CHUNK_SIZE));
+    out.write(MAGIC);
+    out.writeInt(BINARY);
+    out.writeInt(width);
+    out.writeInt(height);
+    out.writeInt(maxValue);
+    out.writeUTF(name);
+    out.writeInt(entries.size());
+    for (Entry entry : entries) {
+      out.writeUTF(entry.name);
+      out.writeUTF(entry.filter);
+      out.writeByte(entry.encoding);
+      out.writeLong(entry.offset);
+      out.writeLong(entry.length);
+    }
+    out.flush();
+  }
+
+  /**
+   * Returns whether this is a version 2 file that is still the given file as it was when it
+   * was read, holding a project of the size of the given canvas. The file is read again, and
+   * it is only the same file if it has the same length and its header and layer table have the
+   * same hash as when it was read.
+   *
+   * @param canvas is the collage project to be written
+   * @param filename the path of the .collage file.
+   * @return true if the file has not changed since it was read, false otherwise
+   */
+  private boolean isCurrent(ICanvas canvas, String filename) {
+    File file = new File(filename);
+    if (canvas == null || this.version != BINARY || !file.isFile()
+            || file.length() != this.length || canvas.getImage().getHeight() != this.height
+            || canvas.getImage().getWidth() != this.width) {
+      return false;
+    }
+    try {
+      return Arrays.equals(read(filename).fingerprint, this.fingerprint);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the given number of written items as a percentage of all of them.
+   *
+   * @param done is the number of items that have been written
+   * @param total is the number of items to be written
+   * @return the percentage of the items that have been written, from 0 to 100
+   */
+  private static int percent(int done, int total) {
+    return total == 0 ? 100 : (int) (100L * done / total);
+  }
+
+  /**
+   * Returns the offset of the first layer of a version 2 file, which leaves as much room again
+   * as the header and layer table take, rounded up to a whole block.
+   *
+   * @param headerLength is the number of bytes of the header and layer table
+   * @return the offset of the first layer
+   */
+  private static long dataStart(int headerLength) {
+    return (2L * headerLength + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the recipe format. Each image that
+   * was added to a layer from an image file that still exists is stored as the path and hash of
+   * the file, once for each distinct file content, and the bytes of the file are embedded if
+   * embed is true. Every other image is embedded as its planes, once however many times it was
+   * added. The embedded data is written first, and the header and tables are written last.
+   * Note: An image file is only stored if it still has the hash it had when the image was
+   * read, so an image whose file was changed after it was added to a layer is embedded as its
+   * planes instead.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param embed is true to embed the image files in the project file
+   * @param compress is true to compress the embedded planes with deflate
+   * @throws IOException if there is an I/O error when reading an image file or writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  public static void writeRecipe(ICanvas canvas, int maxValue, String filename, boolean embed,
+                                 boolean compress) throws IOException, IllegalArgumentException {
+    writeRecipe(canvas, maxValue, filename, embed, compress, percent -> { });
+  }
+
+  /**
+   * Write the given collage project to a .collage file in the recipe format, reporting the
+   * percentage of the image table that has been written after each image.
+   *
+   * @param canvas is the collage project to be written
+   * @param maxValue is the maximum value of the project
+   * @param filename the path of the .collage file.
+   * @param embed is true to embed the image files in the project file
+   * @param compress is true to compress the embedded planes with deflate
+   * @param progress is given the percentage of the image table that has been written
+   * @throws IOException if there is an I/O error when reading an image file or writing the file
+   * @throws IllegalArgumentException if canvas is null or maxValue is not in range [1, 255]
+   */
+  private static void writeRecipe(ICanvas canvas, int maxValue, String filename, boolean embed,
+                                  boolean compress, IntConsumer progress)
+          throws IOException, IllegalArgumentException {
+    if (canvas == null || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int height = canvas.getImage().getHeight();
+    int width = canvas.getImage().getWidth();
+    List<ILayer> layers = canvas.getLayers();
+    String name = String.valueOf(canvas.getProjectName());
+    loadStoredImages(canvas, filename);
+
+    // the image table, the index in it of each image of each layer, and the current hash of
+    // each image file
+    List<Source> sources = new ArrayList<>();
+    List<IImage> sourceImages = new ArrayList<>();
+    Map<String, byte[]> hashes = new HashMap<>();
+    Map<String, Integer> files = new HashMap<>();
+    Map<IImage, Integer> embedded = new IdentityHashMap<>();
+    List<int[]> indices = new ArrayList<>();
+    for (ILayer layer : layers) {
+      List<IImage> images = layer.getImages();
+      int[] layerIndices = new int[images.size()];
+      for (int k = 0; k < images.size(); k++) {
+        IImage image = images.get(k);
+        String path = imageFile(image);
+        byte[] digest = image.getFileDigest();
+        boolean stored = false;
+        if (path != null && digest != null) {
+          byte[] current = hashes.get(path);
+          if (current == null) {
+            current = ImageUtil.digest(path, 0, new File(path).length());
+            hashes.put(path, current);
+          }
+          stored = Arrays.equals(current, digest);
+        }
+        Integer index;
+        if (stored) {
+          String key = Arrays.toString(digest);
+          index = files.get(key);
+          if (index == null) {
+            index = sources.size();
+            files.put(key, index);
+            sources.add(new Source(IMAGE_FILE, path, digest, new Entry(path, null,
+                    embed ? RAW : REFERENCE, 0, 0, image.getHeight(), image.getWidth())));
+            sourceImages.add(image);
+          }
+        } else {
+          index = embedded.get(image);
+          if (index == null) {
+            index = sources.size();
+            embedded.put(image, index);
+            sources.add(new Source(IMAGE_PLANES, "", new byte[DIGEST_LENGTH], new Entry("", null,
+                    compress ? DEFLATE : RAW, 0, 0, image.getHeight(), image.getWidth())));
+            sourceImages.add(image);
+          }
+        }
+        layerIndices[k] = index;
+      }
+      indices.add(layerIndices);
+    }
+
+    CountingStream counter = new CountingStream();
+    writeRecipeHeader(new DataOutputStream(counter), name, height, width, maxValue, sources,
+            layers, indices);
+    File temp = ImageUtil.tempFile(filename);
+    try {
+      try (FileChannel channel = new FileOutputStream(temp).getChannel()) {
+        channel.position(counter.count);
+        for (int i = 0; i < sources.size(); i++) {
+          Source source = sources.get(i);
+          Entry entry = source.entry;
+          progress.accept(percent(i, sources.size()));
+          if (entry.encoding == REFERENCE) {
+            continue;
+          }
+          long offset = channel.position();
+          if (source.kind == IMAGE_FILE) {
+            try (FileChannel in = new FileInputStream(source.path).getChannel()) {
+              long size = in.size();
+              long copied = 0;
+              while (copied < size) {
+                copied += in.transferTo(copied, size - copied, channel);
+              }
+              channel.position(offset + size);
+            }
+          } else {
+            writePlanes(channel, sourceImages.get(i), entry.height, entry.width,
+                    entry.encoding == DEFLATE);
+          }
+          sources.set(i, new Source(source.kind, source.path, source.digest, new Entry(entry.name,
+                  null, entry.encoding, offset, channel.position() - offset, entry.height,
+                  entry.width)));
+        }
+        channel.position(0);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), CHUNK_SIZE));
+        writeRecipeHeader(out, name, height, width, maxValue, sources, layers, indices);
+        out.flush();
+      }
+      ImageUtil.commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Returns the path of the image file the given image was read from, if it still exists.
+   *
+   * @param image is an image of a layer
+   * @return the path of the image file, or null if there is none
+   */
+  private static String imageFile(IImage image) {
+    String path;
+    try {
+      path = image.getFilename();
+    } catch (RuntimeException e) {
+      return null;
+    }
+    return path != null && new File(path).isFile() ? path : null;
+  }
+
+  /**
+   * Writes the header, image table and layer table of a version 3 file.
+   *
+   * @param out is the stream to write to
+   * @param name of the project
+   * @param height of the canvas
+   * @param width of the canvas
+   * @param maxValue of the project
+   * @param sources is the image table
+   * @param layers of the project
+   * @param indices are the indices in the image table of the images of each layer
+   * @throws IOException if there is an I/O error when writing, or if a name is too long to be
+   *         written
+   */
+  private static void writeRecipeHeader(DataOutputStream out, String name, int height,
+                                        int width, int maxValue, List<Source> sources,
+                                        List<ILayer> layers, List<int[]> indices)
+          throws IOException {
+    out.write(MAGIC);
+    out.writeInt(RECIPE);
+    out.writeInt(width);
+    out.writeInt(height);
+    out.writeInt(maxValue);
+    out.writeUTF(name);
+    out.writeInt(sources.size());
+    for (Source source : sources) {
+      out.writeByte(source.kind);
+      out.writeUTF(source.path);
+      out.write(source.digest);
+      out.writeInt(source.entry.height);
+      out.writeInt(source.entry.width);
+      out.writeByte(source.entry.encoding);
+      out.writeLong(source.entry.offset);
+      out.writeLong(source.entry.length);
+    }
+    out.writeInt(layers.size());
+    for (int i = 0; i < layers.size(); i++) {
+      ILayer layer = layers.get(i);
+      List<Point> positions = layer.getPositions();
+      int[] layerIndices = indices.get(i);
+      out.writeUTF(layer.getName());
+      out.writeUTF(layer.getFilter().toString());
+      out.writeInt(layerIndices.length);
+      for (int k = 0; k < layerIndices.length; k++) {
+        out.writeInt(layerIndices[k]);
+        out.writeInt(positions.get(k).x);
+        out.writeInt(positions.get(k).y);
+      }
+    }
+  }
+
+  /**
+   * Loads the original pixels of every layer of the given project that has not been loaded yet,
+   * since a project may be written over the file its layers are loaded from.
+   *
+   * @param canvas is the collage project to be written
+   */
+  private static void loadLayers(ICanvas canvas) {
+    for (ILayer layer : canvas.getLayers()) {
+      layer.getPreviousImage();
+    }
+  }
+
+  /**
+   * Loads the images of the layers of the given project that have not been loaded yet and are
+   * stored in the given file, which are the planes and embedded image files of a version 2 or 3
+   * file, since they can no longer be read once the file is replaced. The images that are only
+   * referenced are read from their own image files, so they are left to be loaded when they
+   * are needed.
+   *
+   * @param canvas is the collage project to be written
+   * @param filename the path of the .collage file.
+   * @throws IOException if there is an I/O error when reading an image
+   */
+  private static void loadStoredImages(ICanvas canvas, String filename) throws IOException {
+    File file = new File(filename);
+    if (!file.isFile()) {
+      return;
+    }
+    for (ILayer layer : canvas.getLayers()) {
+      for (IImage image : layer.getImages()) {
+        ImageSource source = image instanceof LazyImage ? ((LazyImage) image).getSource() : null;
+        String stored = null;
+        if (source instanceof PlaneSource) {
+          stored = ((PlaneSource) source).filename;
+        } else if (source instanceof FileSource
+                && ((FileSource) source).source.entry.encoding != REFERENCE) {
+          stored = ((FileSource) source).filename;
+        }
+        if (stored == null || !new File(stored).isFile()
+                || !Files.isSameFile(Paths.get(stored), file.toPath())) {
+          continue;
+        }
+        try {
+          ((LazyImage) image).get();
+        } catch (IllegalStateException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes taken by the header and layer table of a version 2 file.
+   *
+   * @param name of the project
+   * @param layers of the project
+   * @return the number of bytes of the header and layer table
+   * @throws IOException if a name is too long to be written
+   */
+  private static int headerLength(String name, List<ILayer> layers) throws IOException {
+    CountingStream counter = new CountingStream();
+    DataOutputStream out = new DataOutputStream(counter);
+    out.write(MAGIC);
+    out.writeInt(BINARY);
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeUTF(name);
+    out.writeInt(layers.size());
+    for (ILayer layer : layers) {
+      out.writeUTF(layer.getName());
+      out.writeUTF(layer.getFilter().toString());
+      out.writeByte(0);
+      out.writeLong(0);
+      out.writeLong(0);
+    }
+    return counter.count;
+  }
+
+  /**
+   * Writes the red, green, blue and alpha planes of the given image to the channel at its
+   * current position, a chunk of rows at a time.
+   *
+   * @param channel is the channel of the file
+   * @param image is the image to be written
+   * @param height of the image
+   * @param width of the image
+   * @param compress is true to compress the planes with deflate
+   * @throws IOException if there is an I/O error when writing the file
+   */
+  private static void writePlanes(FileChannel channel, IImage image, int height, int width,
+                                  boolean compress) throws IOException {
+    OutputStream target = new BufferedOutputStream(Channels.newOutputStream(channel), CHUNK_SIZE);
+    Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+    OutputStream out = compress ? new DeflaterOutputStream(target, deflater, CHUNK_SIZE) : target;
+    try {
+      int[] row = new int[width];
+      byte[] bytes = new byte[width];
+      for (int shift : PLANE_SHIFTS) {
+        for (int i = 0; i < height; i++) {
+          image.readRow(i, row);
+          for (int j = 0; j < width; j++) {
+            bytes[j] = (byte) (row[j] >>> shift);
+          }
+          out.write(bytes);
+        }
+      }
+      if (compress) {
+        ((DeflaterOutputStream) out).finish();
+      }
+      target.flush();
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * This class represents an output stream that only counts the bytes written to it.
+   */
+  private static class CountingStream extends OutputStream {
+    private int count;
+
+    @Override
+    public void write(int b) {
+      this.count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      this.count += len;
+    }
+  }
+}
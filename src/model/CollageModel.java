@@ -1,7 +1,14 @@
 package model;
 
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 import model.filter.BrightenFilter;
 import model.filter.Component;
@@ -23,6 +30,12 @@ public class CollageModel implements ICanvas {
   private final int width;
   private final IImage image;
   private final ArrayList<ILayer> layers;
+  private final List<IImage> prefixImages;
+  private final List<ILayer> prefixLayers;
+  private final List<Long> prefixGenerations;
+  private final Set<ILayer> compositedLayers;
+  private final DirtyRegions dirtyRegions;
+  private ImagePyramid previews;
   private String projectName;
 
   /**
@@ -32,8 +45,14 @@ public class CollageModel implements ICanvas {
   public CollageModel() {
     this.height = 1;
     this.width = 1;
-    this.image = new ColorImage(height, width, 1, 255);
+    this.image = new PackedImage(height, width, 1, 255);
     this.layers = new ArrayList<>();
+    this.prefixImages = new ArrayList<>();
+    this.prefixLayers = new ArrayList<>();
+    this.prefixGenerations = new ArrayList<>();
+    this.compositedLayers = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.dirtyRegions = new DirtyRegions();
+    this.dirtyRegions.add(new Rectangle(0, 0, this.image.getWidth(), this.image.getHeight()));
   }
 
   /**
@@ -54,8 +73,21 @@ public class CollageModel implements ICanvas {
     }
     this.height = height;
     this.width = width;
-    this.image = new ColorImage(pixels);
+    this.image = new PackedImage(pixels.length, pixels[0].length, 255, 255);
+    for (int i = 0; i < pixels.length; i++) {
+      for (int j = 0; j < pixels[i].length; j++) {
+        if (pixels[i][j] != null) {
+          this.image.setPixel(i, j, pixels[i][j]);
+        }
+      }
+    }
     this.layers = layers;
+    this.prefixImages = new ArrayList<>();
+    this.prefixLayers = new ArrayList<>();
+    this.prefixGenerations = new ArrayList<>();
+    this.compositedLayers = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.dirtyRegions = new DirtyRegions();
+    this.dirtyRegions.add(new Rectangle(0, 0, this.image.getWidth(), this.image.getHeight()));
   }
 
   /**
@@ -74,11 +106,41 @@ public class CollageModel implements ICanvas {
     }
     this.height = height;
     this.width = width;
-    this.image = new ColorImage(height, width, 255, 255);
+    this.image = new PackedImage(height, width, 255, 255);
     this.layers = new ArrayList<>();
+    this.prefixImages = new ArrayList<>();
+    this.prefixLayers = new ArrayList<>();
+    this.prefixGenerations = new ArrayList<>();
+    this.compositedLayers = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.dirtyRegions = new DirtyRegions();
+    this.dirtyRegions.add(new Rectangle(0, 0, this.image.getWidth(), this.image.getHeight()));
     this.projectName = name;
   }
 
+  /**
+   * This is the constructor for the {@code CollageModel} class, which creates a new
+   * {@code CollageModel} that is a snapshot of the given canvas, with a copy of its image and
+   * a snapshot of each of its layers.
+   *
+   * @param other is the canvas to take a snapshot of
+   */
+  private CollageModel(CollageModel other) {
+    this.height = other.height;
+    this.width = other.width;
+    this.image = new PackedImage(other.image);
+    this.layers = new ArrayList<>();
+    for (ILayer layer : other.layers) {
+      this.layers.add(layer.snapshot());
+    }
+    this.prefixImages = new ArrayList<>();
+    this.prefixLayers = new ArrayList<>();
+    this.prefixGenerations = new ArrayList<>();
+    this.compositedLayers = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.compositedLayers.addAll(this.layers);
+    this.dirtyRegions = new DirtyRegions();
+    this.projectName = other.projectName;
+  }
+
   @Override
   public void addLayerToCanvas(int height, int width, String name) throws IllegalArgumentException {
     for (ILayer l : layers) {
@@ -86,7 +148,63 @@ public class CollageModel implements ICanvas {
         throw new IllegalArgumentException("Cannot have same layer name twice.");
       }
     }
-    this.layers.add(new ImageLayer(height, width, name));
+    ILayer layer = new ImageLayer(height, width, name);
+    this.layers.add(layer);
+    // a new layer is fully transparent, so it does not change the canvas
+    this.compositedLayers.add(layer);
+    this.updatePixels();
+  }
+
+  @Override
+  public void addLayerToCanvas(int height, int width, String name, ImageSource source)
+          throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    for (ILayer l : layers) {
+      if (l.getName().equals(name)) {
+        throw new IllegalArgumentException("Cannot have same layer name twice.");
+      }
+    }
+    // the layer is composited as a whole on the next update, which only loads it if it shows
+    this.layers.add(new ImageLayer(height, width, name, source));
+  }
+
+  @Override
+  public void addLayersToCanvas(List<ILayer> layers) throws IllegalArgumentException {
+    if (layers == null || layers.contains(null)) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    Set<String> names = new HashSet<>();
+    for (ILayer l : this.layers) {
+      names.add(l.getName());
+    }
+    int lastBlend = -1;
+    for (int k = 0; k < layers.size(); k++) {
+      if (!names.add(layers.get(k).getName())) {
+        throw new IllegalArgumentException("Cannot have same layer name twice.");
+      }
+      if (isBlend(layers.get(k).getFilter())) {
+        lastBlend = k;
+      }
+    }
+    if (lastBlend >= 0) {
+      // the layers below each blending layer are painted once onto a running composite, and
+      // each blending layer gets its own copy of the composite as it is at that layer
+      IImage backdrop = new PackedImage(this.getPrefix(this.layers.size()));
+      Rectangle whole = new Rectangle(0, 0, this.width, this.height);
+      for (int k = 0; k <= lastBlend; k++) {
+        ILayer layer = layers.get(k);
+        if (isBlend(layer.getFilter())) {
+          layer.applyFilter(this.blendFilter(layer.getFilter().toString(),
+                  k == lastBlend ? backdrop : new PackedImage(backdrop)));
+        }
+        if (k < lastBlend) {
+          this.paintLayer(layer, backdrop, whole);
+        }
+      }
+    }
+    this.layers.addAll(layers);
     this.updatePixels();
   }
 
@@ -127,25 +245,162 @@ public class CollageModel implements ICanvas {
 
   @Override
   public void updatePixels() {
-    for (ILayer layer : layers) {
-      for (int i = 0; i < this.height; i++) {
-        for (int j = 0; j < this.width; j++) {
-          try {
-            IPixel pixel = layer.getImage().getPixel(i, j);
-            if (pixel.getAlpha() != 0) {
-              this.image.setPixel(i, j, pixel);
-              IFilter layerFilter = layer.getFilter();
-              if (!layerFilter.toString().equals(pixel.getFilter().toString())) {
-                layerFilter.apply(this.image, i, j);
-                IPixel newPixel = this.image.getPixel(i, j);
-                this.image.setPixel(i, j, newPixel);
+    Rectangle bounds = new Rectangle(0, 0, this.image.getWidth(), this.image.getHeight());
+    DirtyRegions changed = new DirtyRegions();
+    for (ILayer layer : this.layers) {
+      List<Rectangle> regions = layer.takeDirtyRegions();
+      if (this.compositedLayers.add(layer)) {
+        // layers that were never composited on this canvas are composited as a whole
+        changed.add(bounds.intersection(new Rectangle(0, 0, layer.getWidth(),
+                layer.getHeight())));
+      } else {
+        for (Rectangle region : regions) {
+          changed.add(bounds.intersection(region));
+        }
+      }
+    }
+    List<Rectangle> regions = changed.take();
+    for (Rectangle region : regions) {
+      this.compositeTopDown(region);
+      if (this.previews != null) {
+        this.previews.markDirty(region);
+      }
+    }
+    this.dirtyRegions.addAll(regions);
+  }
+
+  @Override
+  public List<Rectangle> takeDirtyRegions() {
+    return this.dirtyRegions.take();
+  }
+
+  /**
+   * This method is used to paint the layers of the canvas within the given region of the canvas
+   * image. Each pixel of the canvas shows the topmost non-transparent pixel of the layers, so
+   * the layers are walked from the top down and a row stops once every pixel in it has been
+   * painted, instead of painting every layer over the ones below it. The image of a blending
+   * layer is already rendered against the layers below it, so it is painted like any other layer.
+   * Note: Pixels that are transparent in every layer keep their current value.
+   *
+   * @param region of the canvas image to paint, where x is the column and y is the row of its
+   *               top left pixel
+   */
+  private void compositeTopDown(Rectangle region) {
+    RowExecutor.getDefault().forEachRow(region.y, region.y + region.height, region.width,
+        (from, to) -> {
+          int[] src = new int[region.width];
+          int[] dst = new int[region.width];
+          boolean[] painted = new boolean[region.width];
+          for (int i = from; i < to; i++) {
+            this.image.readRegion(i, region.x, 1, region.width, dst);
+            Arrays.fill(painted, false);
+            // columns [lo, hi) of the region still contain every pixel left to paint
+            int lo = 0;
+            int hi = region.width;
+            for (int k = this.layers.size() - 1; k >= 0 && lo < hi; k--) {
+              IImage layerImage = this.layers.get(k).getImage();
+              int end = Math.min(hi, layerImage.getWidth() - region.x);
+              if (i >= layerImage.getHeight() || end <= lo) {
+                continue;
+              }
+              layerImage.readRegion(i, region.x + lo, 1, end - lo, src);
+              for (int j = lo; j < end; j++) {
+                int pixel = src[j - lo];
+                if (!painted[j] && PackedPixel.alpha(pixel) != 0) {
+                  dst[j] = pixel;
+                  painted[j] = true;
+                }
+              }
+              while (lo < hi && painted[lo]) {
+                lo++;
+              }
+              while (hi > lo && painted[hi - 1]) {
+                hi--;
               }
             }
-          } catch (IndexOutOfBoundsException e) {
-            // do nothing
+            this.image.writeRegion(i, region.x, 1, region.width, dst);
           }
+        });
+  }
+
+  /**
+   * This method is used to paint the given layer within the given region of the given image.
+   * Each row only depends on the same row of the layer, so bands of rows may be painted in
+   * parallel.
+   *
+   * @param layer to be painted on the image
+   * @param target is the image the layer is painted on
+   * @param region of the image to paint, where x is the column and y is the row of its top left
+   *               pixel
+   */
+  private void paintLayer(ILayer layer, IImage target, Rectangle region) {
+    RowExecutor.getDefault().forEachRow(region.y, region.y + region.height, region.width,
+        (from, to) -> this.compositeLayer(layer, target,
+                new Rectangle(region.x, from, region.width, to - from)));
+  }
+
+  /**
+   * This method is used to paint the non-transparent pixels of the given layer that are within
+   * the given region on top of the given image. The image of a layer always holds its pixels
+   * with the filter of the layer already applied, so the pixels are copied as they are.
+   * Note: Any pixel(s) of the layer that are not within the grid of the image are cropped off.
+   *
+   * @param layer to be painted on the image
+   * @param target is the image the layer is painted on
+   * @param region of the image to paint, where x is the column and y is the row of its top left
+   *               pixel
+   */
+  private void compositeLayer(ILayer layer, IImage target, Rectangle region) {
+    IImage layerImage = layer.getImage();
+    Rectangle area = region.intersection(new Rectangle(0, 0,
+            Math.min(target.getWidth(), layerImage.getWidth()),
+            Math.min(target.getHeight(), layerImage.getHeight())));
+    if (area.isEmpty()) {
+      return;
+    }
+    int[] src = new int[area.width];
+    int[] dst = new int[area.width];
+    for (int i = area.y; i < area.y + area.height; i++) {
+      layerImage.readRegion(i, area.x, 1, area.width, src);
+      target.readRegion(i, area.x, 1, area.width, dst);
+      for (int j = 0; j < area.width; j++) {
+        if (PackedPixel.alpha(src[j]) != 0) {
+          dst[j] = src[j];
         }
       }
+      target.writeRegion(i, area.x, 1, area.width, dst);
+    }
+  }
+
+  /**
+   * Returns whether the given filter blends a layer with the layers below it.
+   *
+   * @param filter is the filter of a layer
+   * @return true if the filter is a difference, multiply, or screen filter, false otherwise
+   */
+  private static boolean isBlend(IFilter filter) {
+    return filter instanceof DifferenceFilter || filter instanceof MultiplyFilter
+            || filter instanceof ScreenFilter;
+  }
+
+  /**
+   * This method is used to create the blending filter with the given name, which blends a layer
+   * with the given composite of the layers below it.
+   *
+   * @param filterStr is the String representation of the filter
+   * @param backdrop is the composite of the layers below the layer
+   * @return the blending filter, or null if filterStr is not the name of a blending filter
+   */
+  private IFilter blendFilter(String filterStr, IImage backdrop) {
+    switch (filterStr) {
+      case "difference":
+        return new DifferenceFilter(backdrop);
+      case "multiply":
+        return new MultiplyFilter(backdrop);
+      case "screen":
+        return new ScreenFilter(backdrop);
+      default:
+        return null;
     }
   }
 
@@ -154,6 +409,16 @@ public class CollageModel implements ICanvas {
     return this.image;
   }
 
+  @Override
+  public IImage getPreview(int level) throws IllegalArgumentException {
+    // the previews are built the first time they are asked for, and then kept up to date with
+    // the regions that updatePixels composites
+    if (this.previews == null) {
+      this.previews = new ImagePyramid(this.image);
+    }
+    return this.previews.get(level);
+  }
+
   @Override
   public ArrayList<ILayer> getLayers() {
     return this.layers;
@@ -166,25 +431,48 @@ public class CollageModel implements ICanvas {
 
   @Override
   public IImage getPrevIm(String layerName) {
-    IImage im = new ColorImage(this.height, this.width, 255, this.image.getMaxValue());
-    for (int i = 0; layers.size() > 0 && i < layers.size()
-            && !layers.get(i).getName().equals(layerName); i++) {
-      for (int j = 0; j < this.height; j++) {
-        for (int k = 0; k < this.width; k++) {
-          IPixel pixel = layers.get(i).getImage().getPixel(j, k);
-          if (pixel.getAlpha() != 0) {
-            im.setPixel(j, k, pixel);
-            IFilter layerFilter = layers.get(i).getFilter();
-            if (!layerFilter.toString().equals(pixel.getFilter().toString())) {
-              layerFilter.apply(im, j, k);
-              IPixel newPixel = im.getPixel(j, k);
-              im.setPixel(j, k, newPixel);
-            }
-          }
-        }
-      }
+    int index = 0;
+    while (index < this.layers.size() && !this.layers.get(index).getName().equals(layerName)) {
+      index++;
     }
-    return im;
+    return this.getPrefix(index);
+  }
+
+  /**
+   * This method is used to retrieve the composite of the first count layers of the canvas on a
+   * white background. The composites are cached for each layer index and are only composited
+   * again once a layer at or below that index has been changed, replaced, or removed.
+   * Note: The returned image is shared with the cache and must not be modified.
+   *
+   * @param count is the number of layers, from the bottom, in the composite
+   * @return the composite of the first count layers of the canvas
+   */
+  private IImage getPrefix(int count) {
+    int valid = 0;
+    while (valid < this.prefixLayers.size() && valid < this.layers.size()
+            && this.prefixLayers.get(valid) == this.layers.get(valid)
+            && this.prefixGenerations.get(valid) == this.layers.get(valid).getGeneration()) {
+      valid++;
+    }
+    while (this.prefixLayers.size() > valid) {
+      this.prefixLayers.remove(this.prefixLayers.size() - 1);
+      this.prefixGenerations.remove(this.prefixGenerations.size() - 1);
+      this.prefixImages.remove(this.prefixImages.size() - 1);
+    }
+    if (this.prefixImages.isEmpty()) {
+      this.prefixImages.add(new PackedImage(this.height, this.width, 255,
+              this.image.getMaxValue()));
+    }
+    while (this.prefixLayers.size() < count) {
+      int k = this.prefixLayers.size();
+      ILayer layer = this.layers.get(k);
+      IImage next = new PackedImage(this.prefixImages.get(k));
+      this.paintLayer(layer, next, new Rectangle(0, 0, this.width, this.height));
+      this.prefixImages.add(next);
+      this.prefixLayers.add(layer);
+      this.prefixGenerations.add(layer.getGeneration());
+    }
+    return this.prefixImages.get(count);
   }
 
   @Override
@@ -214,25 +502,25 @@ public class CollageModel implements ICanvas {
   public IFilter getFilterFromString(String filterStr, String layerName) throws RuntimeException {
     switch (filterStr) {
       case "normal":
-        return new NormalFilter();
+        return NormalFilter.getInstance();
       case "red-component":
-        return new ComponentFilter(Component.RED);
+        return ComponentFilter.getInstance(Component.RED);
       case "green-component":
-        return new ComponentFilter(Component.GREEN);
+        return ComponentFilter.getInstance(Component.GREEN);
       case "blue-component":
-        return new ComponentFilter(Component.BLUE);
+        return ComponentFilter.getInstance(Component.BLUE);
       case "brighten-value":
-        return new BrightenFilter(LightType.VALUE);
+        return BrightenFilter.getInstance(LightType.VALUE);
       case "brighten-intensity":
-        return new BrightenFilter(LightType.INTENSITY);
+        return BrightenFilter.getInstance(LightType.INTENSITY);
       case "brighten-luma":
-        return new BrightenFilter(LightType.LUMA);
+        return BrightenFilter.getInstance(LightType.LUMA);
       case "darken-value":
-        return new DarkenFilter(LightType.VALUE);
+        return DarkenFilter.getInstance(LightType.VALUE);
       case "darken-intensity":
-        return new DarkenFilter(LightType.INTENSITY);
+        return DarkenFilter.getInstance(LightType.INTENSITY);
       case "darken-luma":
-        return new DarkenFilter(LightType.LUMA);
+        return DarkenFilter.getInstance(LightType.LUMA);
       case "difference":
         return new DifferenceFilter(this.getPrevIm(layerName));
       case "multiply":
@@ -262,6 +550,11 @@ public class CollageModel implements ICanvas {
     return argb;
   }
 
+  @Override
+  public ICanvas snapshot() {
+    return new CollageModel(this);
+  }
+
   @Override
   public ICanvas setModel() {
     return new CollageModel();
@@ -104,7 +104,7 @@ public class ColorImage implements IImage {
     this.height = height;
     this.width = width;
     this.maxValue = maxValue;
-    this.pixels = new ColorPixel[height][width];
+    this.pixels = new IPixel[height][width];
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
         IPixel newPixel = new ColorPixel(maxValue, maxValue, maxValue, alpha);
@@ -34,7 +34,7 @@ public class ColorPixel implements IPixel {
     this.green = green;
     this.blue = blue;
     this.alpha = alpha;
-    this.filter = new NormalFilter();
+    this.filter = NormalFilter.getInstance();
 
   }
 
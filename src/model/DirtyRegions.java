@@ -0,0 +1,79 @@
+package model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the regions of an image that have changed since they were last
+ * taken. Each region is a rectangle where x is the column and y is the row of its top left
+ * pixel. Regions that overlap are merged into their bounding rectangle, so every pixel is in at
+ * most one region.
+ */
+class DirtyRegions {
+  private final List<Rectangle> regions;
+
+  /**
+   * This is the constructor for the {@code DirtyRegions} class, which creates a new
+   * {@code DirtyRegions} without any regions.
+   */
+  DirtyRegions() {
+    this.regions = new ArrayList<>();
+  }
+
+  /**
+   * Adds the given region, merging it with any region it overlaps.
+   * Note: Empty regions are ignored.
+   *
+   * @param region that has changed
+   */
+  void add(Rectangle region) {
+    if (region.isEmpty()) {
+      return;
+    }
+    Rectangle merged = new Rectangle(region);
+    boolean overlaps = true;
+    while (overlaps) {
+      overlaps = false;
+      for (int i = 0; i < this.regions.size(); i++) {
+        if (this.regions.get(i).intersects(merged)) {
+          merged = merged.union(this.regions.remove(i));
+          overlaps = true;
+          break;
+        }
+      }
+    }
+    this.regions.add(merged);
+  }
+
+  /**
+   * Adds each of the given regions.
+   *
+   * @param regions that have changed
+   */
+  void addAll(List<Rectangle> regions) {
+    for (Rectangle region : regions) {
+      this.add(region);
+    }
+  }
+
+  /**
+   * Returns whether there are no changed regions.
+   *
+   * @return true if there are no changed regions, false otherwise
+   */
+  boolean isEmpty() {
+    return this.regions.isEmpty();
+  }
+
+  /**
+   * Returns the changed regions and forgets them.
+   *
+   * @return the changed regions
+   */
+  List<Rectangle> take() {
+    List<Rectangle> taken = new ArrayList<>(this.regions);
+    this.regions.clear();
+    return taken;
+  }
+}
@@ -1,7 +1,10 @@
 package model;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import model.filter.IFilter;
 
@@ -20,6 +23,56 @@ public interface ICanvas {
    */
   void addLayerToCanvas(int height, int width, String name) throws IllegalArgumentException;
 
+  /**
+   * This method is used to add a new, unique layer to the canvas whose original pixels are the
+   * image of the given source placed at (0, 0), such as a layer of a saved project.
+   * Note: The default implementation loads the image right away and adds it to a new layer.
+   * An implementation may instead only load the image once its pixels are needed, in which case
+   * the image of the canvas is only updated by the next call to {@code updatePixels}.
+   *
+   * @param height is the height of the new layer
+   * @param width is the width of the new layer
+   * @param name is the name of the new layer
+   * @param source is the source of the original pixels of the new layer
+   * @throws IOException if there is an I/O error when loading the image
+   * @throws IllegalArgumentException if a layer with the same name already exists or if source
+   *                                  is null
+   */
+  default void addLayerToCanvas(int height, int width, String name, ImageSource source)
+          throws IOException, IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.addLayerToCanvas(height, width, name);
+    this.addImageToLayer(name, source.load(), 0, 0);
+  }
+
+  /**
+   * This method is used to add several new, unique layers to the top of the canvas at once, in
+   * order from the bottom layer to the top layer, such as the layers of a saved project. The
+   * layers keep their original pixels and filters, and a filter that blends a layer with the
+   * layers below it (difference, multiply, or screen) is bound to the layers below it on the
+   * canvas. The image of the canvas is then updated.
+   * Note: The default implementation adds the layers one at a time, setting the filter of each
+   * layer after its image is added. An implementation may instead bind the blending filters
+   * while walking the layers once from the bottom up, and update the image of the canvas once.
+   *
+   * @param layers are the layers to be added, from the bottom layer to the top layer
+   * @throws IllegalArgumentException if layers is null or contains null, or if a layer has the
+   *                                  same name as another layer
+   */
+  default void addLayersToCanvas(List<ILayer> layers) throws IllegalArgumentException {
+    if (layers == null || layers.contains(null)) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    for (ILayer layer : layers) {
+      this.addLayerToCanvas(layer.getHeight(), layer.getWidth(), layer.getName());
+      this.addImageToLayer(layer.getName(), layer.getPreviousImage(), 0, 0);
+      this.addFilter(this.getFilterFromString(layer.getFilter().toString(), layer.getName()),
+              layer.getName());
+    }
+  }
+
   /**
    * This method is used to add an image to a valid, specified layer at the given offset position.
    * Note: An offset of (0, 0) represents the top leftmost position of the canvas.
@@ -35,12 +88,28 @@ public interface ICanvas {
 
   /**
    * This method is used to update the pixels of the canvas based on the current layers
-   * and their respective filters.
+   * and their respective filters. Only the regions of the layers that have changed since the
+   * last update are painted again.
    * Note: Any pixel(s) that are not within the grid of the canvas are cropped off and not
    * considered as part of the final canvas image.
    */
   void updatePixels();
 
+  /**
+   * Returns the regions of the canvas image that have changed since the last call to this
+   * method, and forgets them. Each region is a rectangle where x is the column and y is the row
+   * of its top left pixel.
+   * Note: The default implementation reports the whole canvas image as changed.
+   *
+   * @return the regions of the canvas image that have changed since the last call
+   */
+  default List<Rectangle> takeDirtyRegions() {
+    IImage image = this.getImage();
+    List<Rectangle> regions = new ArrayList<>();
+    regions.add(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    return regions;
+  }
+
   /**
    * Returns the current image of the canvas.
    *
@@ -48,6 +117,23 @@ public interface ICanvas {
    */
   IImage getImage();
 
+  /**
+   * Returns a preview of the current image of the canvas at 1/2^level of its resolution, where
+   * each pixel is the average of the block of 2^level by 2^level pixels of the image it covers,
+   * such as for zoomed out views and thumbnails. Level 0 is the image itself.
+   * Note: The default implementation makes the preview from the whole image every time. An
+   * implementation may instead keep the previews of each level and only make the regions that
+   * changed again when the image of the canvas is updated by {@code updatePixels}, in which case
+   * the returned preview may change in place afterwards.
+   *
+   * @param level is the level of the preview, in range [0, 3]
+   * @return the preview of the image of the canvas at the level
+   * @throws IllegalArgumentException if the level is not in range [0, 3]
+   */
+  default IImage getPreview(int level) throws IllegalArgumentException {
+    return new ImagePyramid(this.getImage()).get(level);
+  }
+
   /**
    * Returns the current list of layers of the canvas.
    *
@@ -101,6 +187,20 @@ public interface ICanvas {
    */
   int getARGB(int x, int y, int maxProjectValue, double factor);
 
+  /**
+   * Returns a snapshot of the canvas, a new canvas with the project name, image, and layers the
+   * canvas has now, which keeps them when the canvas is changed later on, so that it can be
+   * written on another thread while the canvas is still being edited.
+   * Note: The default implementation returns the canvas itself, which must then not be changed
+   * until it has been written. An implementation may instead share the pixels of its layers
+   * with the snapshot until either of them changes.
+   *
+   * @return a snapshot of the canvas
+   */
+  default ICanvas snapshot() {
+    return this;
+  }
+
   /**
    * This method outlines a way of returning an object of the model.
    * @return an initialized object of type ICanvas
@@ -169,4 +269,42 @@ public interface ICanvas {
    * @return a new object of type IPixel
    */
   IPixel createPixel(int red, int green, int blue, int alpha, IFilter filter);
+
+  /**
+   * This method creates and returns a layer that is not on the canvas yet, whose original
+   * pixels are the image of the given source placed at (0, 0), so that it can be added with
+   * {@code addLayersToCanvas}.
+   *
+   * @param height is the height of the layer
+   * @param width is the width of the layer
+   * @param name is the name of the layer
+   * @param source is the source of the original pixels of the layer
+   * @return a new object of type ILayer
+   * @throws IllegalArgumentException if height or width are less than 1 or if name or source
+   *                                  is null
+   */
+  default ILayer createLayer(int height, int width, String name, ImageSource source)
+          throws IllegalArgumentException {
+    return new ImageLayer(height, width, name, source);
+  }
+
+  /**
+   * This method creates and returns a layer that is not on the canvas yet, whose original
+   * pixels are the images of the given sources placed at the given positions, in order, so that
+   * it can be added with {@code addLayersToCanvas}.
+   *
+   * @param height is the height of the layer
+   * @param width is the width of the layer
+   * @param name is the name of the layer
+   * @param sources are the sources of the images of the layer
+   * @param positions are the positions of the images, where x is the column and y is the row
+   *                  of the top left pixel of each image
+   * @return a new object of type ILayer
+   * @throws IllegalArgumentException if height or width are less than 1, if any input is null,
+   *                                  or if there is not one position per source
+   */
+  default ILayer createLayer(int height, int width, String name, List<ImageSource> sources,
+                             List<Point> positions) throws IllegalArgumentException {
+    return new ImageLayer(height, width, name, sources, positions);
+  }
 }
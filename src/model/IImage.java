@@ -67,4 +67,85 @@ public interface IImage {
    * @throws RuntimeException if image filename is null
    */
   String getFilename() throws RuntimeException;
-}
\ No newline at end of file
+
+  /**
+   * Returns the SHA-256 hash of the image file the image was read from, as the file was when
+   * the image was read.
+   * Note: The default implementation returns null, for an image that was not read from an
+   * image file.
+   *
+   * @return the hash of the image file, or null if there is none
+   */
+  default byte[] getFileDigest() {
+    return null;
+  }
+
+  /**
+   * Reads the pixels of the specified row of the image into the given array as packed ARGB
+   * values (see {@code PackedPixel}).
+   *
+   * @param row of the image to read
+   * @param dst is the array that receives the packed ARGB values, at least as long as the width
+   *            of the image
+   */
+  default void readRow(int row, int[] dst) {
+    this.readRegion(row, 0, 1, this.getWidth(), dst);
+  }
+
+  /**
+   * Writes the given packed ARGB values (see {@code PackedPixel}) to the pixels of the specified
+   * row of the image.
+   * Note: The written pixels have the normal filter.
+   *
+   * @param row of the image to write
+   * @param src is the array of packed ARGB values, at least as long as the width of the image
+   */
+  default void writeRow(int row, int[] src) {
+    this.writeRegion(row, 0, 1, this.getWidth(), src);
+  }
+
+  /**
+   * Reads the pixels of the specified rectangular region of the image into the given array as
+   * packed ARGB values (see {@code PackedPixel}). The values are stored row by row, so the pixel
+   * at (row + i, col + j) is stored at index i * width + j.
+   *
+   * @param row of the top left pixel of the region
+   * @param col of the top left pixel of the region
+   * @param height of the region, in pixels
+   * @param width of the region, in pixels
+   * @param dst is the array that receives the packed ARGB values
+   * @throws IndexOutOfBoundsException if the region is not within the image
+   */
+  default void readRegion(int row, int col, int height, int width, int[] dst)
+          throws IndexOutOfBoundsException {
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        dst[i * width + j] = PackedPixel.pack(this.getPixel(row + i, col + j));
+      }
+    }
+  }
+
+  /**
+   * Writes the given packed ARGB values (see {@code PackedPixel}) to the pixels of the specified
+   * rectangular region of the image. The values are read row by row, so the value at index
+   * i * width + j is written to the pixel at (row + i, col + j).
+   * Note: The written pixels have the normal filter.
+   *
+   * @param row of the top left pixel of the region
+   * @param col of the top left pixel of the region
+   * @param height of the region, in pixels
+   * @param width of the region, in pixels
+   * @param src is the array of packed ARGB values
+   * @throws IndexOutOfBoundsException if the region is not within the image
+   */
+  default void writeRegion(int row, int col, int height, int width, int[] src)
+          throws IndexOutOfBoundsException {
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int argb = src[i * width + j];
+        this.setPixel(row + i, col + j, new ColorPixel(PackedPixel.red(argb),
+                PackedPixel.green(argb), PackedPixel.blue(argb), PackedPixel.alpha(argb)));
+      }
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.List;
 import model.filter.IFilter;
 
@@ -15,6 +17,14 @@ public interface ILayer {
    */
   IPixel[][] getPreviousPixels();
 
+  /**
+   * Returns the image of this layer before any filters were applied.
+   * Note: The returned image is the storage of the layer and must not be modified.
+   *
+   * @return the image of this layer before any filters were applied
+   */
+  IImage getPreviousImage();
+
   /**
    * Returns the image that represents this layer.
    *
@@ -29,6 +39,31 @@ public interface ILayer {
    */
   List<IImage> getImages();
 
+  /**
+   * Returns the positions at which the images of {@code getImages} were added to this layer, in
+   * the same order. Each position is a point where x is the column and y is the row of the top
+   * left pixel of the image.
+   *
+   * @return the positions of the images that have been added to this layer
+   */
+  List<Point> getPositions();
+
+  /**
+   * Returns the height of this layer, in pixels. Unlike {@code getImage}, this never loads the
+   * pixels of a layer that has not been loaded yet.
+   *
+   * @return the height of this layer
+   */
+  int getHeight();
+
+  /**
+   * Returns the width of this layer, in pixels. Unlike {@code getImage}, this never loads the
+   * pixels of a layer that has not been loaded yet.
+   *
+   * @return the width of this layer
+   */
+  int getWidth();
+
   /**
    * Returns the name of this image layer.
    *
@@ -45,6 +80,8 @@ public interface ILayer {
 
   /**
    * Sets the filter applied to this image layer to the specified filter.
+   * Note: The image of the layer always shows the original pixels with the filter of the
+   * layer applied, so setting the filter renders the image again.
    *
    * @param other the filter to be applied to this image layer
    */
@@ -52,16 +89,17 @@ public interface ILayer {
 
   /**
    * Applies the specified filter to this image layer.
-   * First, applyFilter method checks to see if there is already on the layer. If so,
-   * it creates a copy of the original pixels. If not, then it resets the image pixels to the
-   * original pixels. Then, it applies the filter to the image and sets the new filter.
+   * The filter replaces any filter already on the layer: it is applied to the original pixels
+   * of the layer, not on top of the previous filter. Images added to the layer later are
+   * filtered as they are added.
    *
    * @param filter the filter to be applied to this image layer
    */
   void applyFilter(IFilter filter);
 
   /**
-   * Reverts the image pixels to the original pixels before any filters were applied.
+   * Reverts the image pixels to the original pixels before any filters were applied, and
+   * resets the filter of this layer to the normal filter.
    */
   void revertToOriginal();
 
@@ -74,4 +112,42 @@ public interface ILayer {
    * @throws IllegalArgumentException if the image position is outside the bounds of the canvas
    */
   void addImageToLayer(IImage image, int x, int y) throws IllegalArgumentException;
+
+  /**
+   * Returns the generation of this layer, a counter that changes every time the image of this
+   * layer is changed by adding an image, applying a filter, or reverting to the original pixels.
+   *
+   * @return the generation of this layer
+   */
+  long getGeneration();
+
+  /**
+   * Returns the content generation of this layer, a counter that only changes when the original
+   * pixels of this layer are changed by adding an image. Unlike {@code getGeneration}, it does
+   * not change when a filter is applied, so a saved copy of the original pixels of this layer
+   * is still valid as long as its content generation is the same.
+   *
+   * @return the content generation of this layer
+   */
+  long getContentGeneration();
+
+  /**
+   * Returns the regions of this layer whose pixels have changed since the last call to this
+   * method, and forgets them. Each region is a rectangle where x is the column and y is the row
+   * of its top left pixel: placing an image marks the part of the layer it covers, while
+   * applying a filter or reverting to the original pixels marks the whole layer.
+   *
+   * @return the regions of this layer that have changed since the last call
+   */
+  List<Rectangle> takeDirtyRegions();
+
+  /**
+   * Returns a snapshot of this layer, a new layer with the name, filter, images, pixels, and
+   * generations this layer has now, which keeps them when this layer is changed later on, so
+   * that it can be saved on another thread while this layer is still being edited.
+   * Note: A snapshot is meant to be read, and is not added to a canvas.
+   *
+   * @return a snapshot of this layer
+   */
+  ILayer snapshot();
 }
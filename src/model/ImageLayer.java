@@ -1,6 +1,9 @@
 package model;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import model.filter.IFilter;
@@ -9,21 +12,28 @@ import model.filter.NormalFilter;
 /**
  * This class represents the implementation of the {@code ILayer} interface that represents
  * an image layer in an image editor.
+ * Note: The pixels of the layer are kept in {@code TiledImage}s, so a layer only holds the
+ * tiles its images cover, and its filter is only applied to those tiles.
  */
 public class ImageLayer implements ILayer {
   private final int height;
   private final int width;
-  private IImage image;
+  private TiledImage image;
   private List<IImage> images;
+  private final List<Point> positions;
   private final String name;
   private IFilter filter;
-  private IPixel[][] previousPixels;
+  private TiledImage previousImage;
+  private final DirtyRegions dirtyRegions;
+  private long generation;
+  private long contentGeneration;
+  private volatile boolean pending;
 
   /**
    * This is the constructor for the {@code ImageLayer} class, which constructs a new
    * {@code ImageLayer}
    * object with the specified height, width, and layer name.
-   * Note: This constructor initializes the previousPixels which represents the original
+   * Note: This constructor initializes the previous image which represents the original
    * pixels of a layer (originally set as transparent white pixels).
    *
    * @param height of the layer/canvas, in pixels
@@ -38,26 +48,144 @@ public class ImageLayer implements ILayer {
     } else {
       this.height = height;
       this.width = width;
-      this.image = new ColorImage(height, width, 0, 255);
+      this.image = new TiledImage(height, width, 255);
       this.images = new ArrayList<>();
+      this.positions = new ArrayList<>();
       this.name = name;
-      this.filter = new NormalFilter();
-      this.previousPixels = new ColorPixel[height][width];
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          this.previousPixels[i][j] = new ColorPixel(255, 255, 255, 0);
-        }
+      this.filter = NormalFilter.getInstance();
+      this.previousImage = new TiledImage(height, width, 255);
+      this.dirtyRegions = new DirtyRegions();
+    }
+  }
+
+  /**
+   * This is the constructor for the {@code ImageLayer} class, which constructs a new
+   * {@code ImageLayer} object with the specified height, width, and layer name, whose original
+   * pixels are the image of the given source placed at (0, 0).
+   * Note: The image is only loaded from its source the first time the pixels of the layer are
+   * needed, such as when the layer is composited or saved, so a layer that is hidden behind
+   * other layers is never loaded. Until then, setting the filter of the layer only records the
+   * filter, and the layer holds no pixels.
+   *
+   * @param height of the layer/canvas, in pixels
+   * @param width  of the layer/canvas, in pixels
+   * @param name   of the image layer
+   * @param source of the original pixels of the layer
+   * @throws IllegalArgumentException if height or width are less than 1
+   *        or if name or source is null
+   */
+  public ImageLayer(int height, int width, String name, ImageSource source)
+          throws IllegalArgumentException {
+    this(height, width, name, Collections.singletonList(source),
+            Collections.singletonList(new Point(0, 0)));
+  }
+
+  /**
+   * This is the constructor for the {@code ImageLayer} class, which constructs a new
+   * {@code ImageLayer} object with the specified height, width, and layer name, whose original
+   * pixels are the images of the given sources placed at the given positions, in order, as if
+   * each image was added with {@code addImageToLayer}.
+   * Note: The images are only loaded from their sources the first time the pixels of the layer
+   * are needed, like the layer of a single source.
+   *
+   * @param height of the layer/canvas, in pixels
+   * @param width  of the layer/canvas, in pixels
+   * @param name   of the image layer
+   * @param sources of the images of the layer
+   * @param positions of the images of the layer, where x is the column and y is the row of the
+   *                  top left pixel of each image
+   * @throws IllegalArgumentException if height or width are less than 1, if name, sources, or
+   *        positions is null, if there is not one position per source, or if a position is
+   *        negative
+   */
+  public ImageLayer(int height, int width, String name, List<ImageSource> sources,
+                    List<Point> positions) throws IllegalArgumentException {
+    if (height < 1 || width < 1 || name == null || sources == null || positions == null
+            || sources.size() != positions.size()) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = height;
+    this.width = width;
+    this.images = new ArrayList<>();
+    this.positions = new ArrayList<>();
+    this.name = name;
+    this.filter = NormalFilter.getInstance();
+    this.dirtyRegions = new DirtyRegions();
+    for (int k = 0; k < sources.size(); k++) {
+      Point position = positions.get(k);
+      if (sources.get(k) == null || position == null || position.x < 0 || position.y < 0) {
+        throw new IllegalArgumentException("invalid input");
+      }
+      LazyImage image = new LazyImage(sources.get(k));
+      this.images.add(image);
+      this.positions.add(new Point(position));
+      Rectangle area = new Rectangle(0, 0, width, height).intersection(new Rectangle(
+              position.x, position.y, image.getWidth(), image.getHeight()));
+      if (!area.isEmpty()) {
+        this.dirtyRegions.add(area);
+      }
+    }
+    if (this.images.isEmpty()) {
+      this.image = new TiledImage(height, width, 255);
+      this.previousImage = new TiledImage(height, width, 255);
+    } else {
+      this.pending = true;
+      this.generation = 1;
+    }
+  }
+
+  /**
+   * This is the constructor for the {@code ImageLayer} class, which constructs a new
+   * {@code ImageLayer} that is a snapshot of the given layer, with its name, filter, images,
+   * and generations as they are now.
+   * Note: The snapshot shares the tiles of pixels of the given layer rather than copying them,
+   * and whichever of the two layers is changed first copies the tiles it changes, so taking a
+   * snapshot is cheap and the snapshot keeps the pixels it was taken with. A layer whose images
+   * have not been loaded yet shares them with its snapshot, and they are loaded only once.
+   *
+   * @param other is the layer to take a snapshot of
+   * @throws IllegalArgumentException if other is null
+   */
+  ImageLayer(ImageLayer other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    synchronized (other) {
+      this.height = other.height;
+      this.width = other.width;
+      this.images = new ArrayList<>(other.images);
+      this.positions = new ArrayList<>();
+      for (Point position : other.positions) {
+        this.positions.add(new Point(position));
+      }
+      this.name = other.name;
+      this.filter = other.filter;
+      this.dirtyRegions = new DirtyRegions();
+      this.generation = other.generation;
+      this.contentGeneration = other.contentGeneration;
+      this.pending = other.pending;
+      if (!other.pending) {
+        this.previousImage = new TiledImage(other.previousImage);
+        this.image = new TiledImage(other.image);
       }
     }
   }
 
   @Override
   public IPixel[][] getPreviousPixels() {
-    return this.previousPixels;
+    this.materialize();
+    return this.previousImage.getPixels();
+  }
+
+  @Override
+  public IImage getPreviousImage() {
+    this.materialize();
+    return this.previousImage;
   }
 
   @Override
   public IImage getImage() {
+    this.materialize();
     return this.image;
   }
 
@@ -66,6 +194,11 @@ public class ImageLayer implements ILayer {
     return this.images;
   }
 
+  @Override
+  public List<Point> getPositions() {
+    return Collections.unmodifiableList(this.positions);
+  }
+
   @Override
   public String getName() {
     return this.name;
@@ -78,36 +211,37 @@ public class ImageLayer implements ILayer {
 
   @Override
   public void setFilter(IFilter other) {
-    this.filter = other;
+    this.applyFilter(other);
   }
 
   @Override
-  public void applyFilter(IFilter filter) {
-    if (this.filter.toString().equals("normal")) {
-      for (int i = 0; i < this.height; i++) {
-        for (int j = 0; j < this.width; j++) {
-          previousPixels[i][j] = this.image.getPixel(i, j);
-        }
-      }
-    } else {
-      revertToOriginal();
-    }
+  public int getHeight() {
+    return this.height;
+  }
 
-    for (int i = 0; i < this.height; i++) {
-      for (int j = 0; j < this.width; j++) {
-        filter.apply(this.image, i, j);
-      }
-    }
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public void applyFilter(IFilter filter) {
     this.filter = filter;
+    if (!this.pending) {
+      this.render();
+    }
+    this.dirtyRegions.add(new Rectangle(0, 0, this.width, this.height));
+    this.generation++;
   }
 
   @Override
   public void revertToOriginal() {
-    for (int i = 0; i < this.height; i++) {
-      for (int j = 0; j < this.width; j++) {
-        this.image.setPixel(i, j, previousPixels[i][j]);
-      }
+    this.filter = NormalFilter.getInstance();
+    if (!this.pending) {
+      this.image = new TiledImage(this.previousImage);
     }
+    this.dirtyRegions.add(new Rectangle(0, 0, this.width, this.height));
+    this.generation++;
   }
 
   @Override
@@ -115,8 +249,68 @@ public class ImageLayer implements ILayer {
     if (y < 0 || y >= this.height || x < 0 || x >= this.width) {
       throw new IllegalArgumentException("Image position must be in canvas size grid.");
     }
+    this.materialize();
     this.images.add(image);
+    this.positions.add(new Point(y, x));
     this.updatePixels(image, x, y);
+    this.generation++;
+    this.contentGeneration++;
+  }
+
+  @Override
+  public long getGeneration() {
+    return this.generation;
+  }
+
+  @Override
+  public long getContentGeneration() {
+    return this.contentGeneration;
+  }
+
+  @Override
+  public List<Rectangle> takeDirtyRegions() {
+    return this.dirtyRegions.take();
+  }
+
+  @Override
+  public ILayer snapshot() {
+    return new ImageLayer(this);
+  }
+
+  /**
+   * This method is used to load the original pixels of a layer that was created from image
+   * sources, and to render them with the current filter of the layer. It does nothing once the
+   * layer has been loaded.
+   * Note: The pixels of a layer may be needed by several threads at the same time while the
+   * canvas is composited, so the layer is loaded by the first of them while the others wait.
+   *
+   * @throws IllegalStateException if an image cannot be read from its source
+   */
+  private void materialize() throws IllegalStateException {
+    if (!this.pending) {
+      return;
+    }
+    synchronized (this) {
+      if (!this.pending) {
+        return;
+      }
+      // only the tiles the images cover are written, the rest of the layer stays blank
+      TiledImage loadedPixels = new TiledImage(this.height, this.width, 255);
+      for (int k = 0; k < this.images.size(); k++) {
+        IImage loaded = ((LazyImage) this.images.get(k)).get();
+        Point position = this.positions.get(k);
+        int rows = Math.min(loaded.getHeight(), this.height - position.y);
+        int cols = Math.min(loaded.getWidth(), this.width - position.x);
+        int[] row = new int[Math.max(cols, 0)];
+        for (int i = 0; i < rows && cols > 0; i++) {
+          loaded.readRegion(i, 0, 1, cols, row);
+          loadedPixels.writeRegion(position.y + i, position.x, 1, cols, row);
+        }
+      }
+      this.previousImage = loadedPixels;
+      this.render();
+      this.pending = false;
+    }
   }
 
   /**
@@ -129,15 +323,62 @@ public class ImageLayer implements ILayer {
    * @param y or row position of the image to be applied on the layer
    */
   private void updatePixels(IImage image, int x, int y) {
-    for (int i = x, ii = 0; i < this.height; i++, ii++) {
-      for (int j = y, jj = 0; j < this.width; j++, jj++) {
-        try {
-          this.image.setPixel(i, j, image.getPixel(ii, jj));
-          previousPixels[i][j] = this.image.getPixel(i, j);
-        } catch (IndexOutOfBoundsException e) {
-          // do nothing (crops parts of the image that are outside of canvas grid)
-        }
+    int rows = Math.min(image.getHeight(), this.height - x);
+    int cols = Math.min(image.getWidth(), this.width - y);
+    if (rows <= 0 || cols <= 0) {
+      return;
+    }
+    // the bands of rows are not aligned to the tiles, so the tiles are copied up front
+    this.previousImage.makeWritable(x, y, rows, cols);
+    this.image.makeWritable(x, y, rows, cols);
+    RowExecutor.getDefault().forEachRow(0, rows, cols, (from, to) -> {
+      int[] row = new int[cols];
+      for (int i = from; i < to; i++) {
+        image.readRegion(i, 0, 1, cols, row);
+        this.previousImage.writeRegion(x + i, y, 1, cols, row);
+        this.filter.applyRow(x + i, y, row, cols);
+        this.image.writeRegion(x + i, y, 1, cols, row);
       }
+    });
+    this.dirtyRegions.add(new Rectangle(y, x, cols, rows));
+  }
+
+  /**
+   * This method is used to render the image of the layer by applying the filter of the layer to
+   * the original pixels of the layer, one tile at a time. Filters leave transparent pixels
+   * transparent, so the tiles that are blank in the original pixels stay blank and are skipped,
+   * and with the normal filter the image shares every tile with the original pixels. Bands of
+   * rows of tiles may be rendered in parallel.
+   * Note: The rendered image replaces the image of the layer rather than being written over it,
+   * so a snapshot of the layer keeps the image it was taken with.
+   */
+  private void render() {
+    TiledImage source = this.previousImage;
+    if (this.filter instanceof NormalFilter) {
+      this.image = new TiledImage(source);
+      return;
     }
+    // each band writes its own rows of tiles of the new image, so no tile is written by two
+    // bands and the tiles are made writable as they are written
+    TiledImage target = new TiledImage(this.height, this.width, 255);
+    int size = TiledImage.TILE_SIZE;
+    RowExecutor.getDefault().forEachRow(0, source.getTileRows(), this.width * size,
+        (start, end) -> {
+          int[] row = new int[size];
+          for (int tileRow = start; tileRow < end; tileRow++) {
+            for (int tileColumn = 0; tileColumn < source.getTileColumns(); tileColumn++) {
+              if (source.isBlank(tileRow, tileColumn)) {
+                continue;
+              }
+              Rectangle tile = source.getTileRegion(tileRow, tileColumn);
+              for (int i = tile.y; i < tile.y + tile.height; i++) {
+                source.readRegion(i, tile.x, 1, tile.width, row);
+                this.filter.applyRow(i, tile.x, row, tile.width);
+                target.writeRegion(i, tile.x, 1, tile.width, row);
+              }
+            }
+          }
+        });
+    this.image = target;
   }
 }
@@ -0,0 +1,148 @@
+package model;
+
+import java.awt.Rectangle;
+
+/**
+ * This class represents a pyramid of previews of an image, at 1/2, 1/4 and 1/8 of its
+ * resolution, where each pixel of a level is the average of a block of 2 by 2 pixels of the
+ * level below it. A level is only built once it is asked for, and from then on only the pixels
+ * of the regions of the image that changed are made again, level by level from the bottom up,
+ * instead of the whole level.
+ * Note: The pyramid only knows about the changes of the image that it is told about with
+ * {@code markDirty}.
+ */
+class ImagePyramid {
+  /**
+   * The number of levels above the image, the highest of which is 1/8 of its resolution.
+   */
+  static final int LEVELS = 3;
+  private final IImage source;
+  private final IImage[] levels;
+  private final DirtyRegions[] dirty;
+
+  /**
+   * This is the constructor for the {@code ImagePyramid} class, which creates a new
+   * {@code ImagePyramid} of the given image, without building any of its levels yet.
+   *
+   * @param source is the image at full resolution
+   * @throws IllegalArgumentException if source is null
+   */
+  ImagePyramid(IImage source) throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.source = source;
+    this.levels = new IImage[LEVELS + 1];
+    this.levels[0] = source;
+    this.dirty = new DirtyRegions[LEVELS + 1];
+    for (int k = 0; k <= LEVELS; k++) {
+      this.dirty[k] = new DirtyRegions();
+    }
+  }
+
+  /**
+   * This method is used to record a region of the image that changed, so that the levels that
+   * have been built show it again the next time they are asked for.
+   *
+   * @param region of the image that changed, where x is the column and y is the row of its top
+   *               left pixel
+   */
+  void markDirty(Rectangle region) {
+    for (int k = 1; k <= LEVELS; k++) {
+      if (this.levels[k] != null) {
+        this.dirty[k].add(region);
+      }
+    }
+  }
+
+  /**
+   * Returns the image at the given level of the pyramid, at 1/2^level of the resolution of the
+   * image, building the level and the ones below it first if needed, or bringing them up to date
+   * with the regions that changed.
+   * Note: The returned image is changed in place when the level is brought up to date.
+   *
+   * @param level is the level, where 0 is the image itself
+   * @return the image at the level
+   * @throws IllegalArgumentException if the level is not in range [0, LEVELS]
+   */
+  IImage get(int level) throws IllegalArgumentException {
+    if (level < 0 || level > LEVELS) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    for (int k = 1; k <= level; k++) {
+      IImage below = this.levels[k - 1];
+      if (this.levels[k] == null) {
+        int height = (below.getHeight() + 1) / 2;
+        int width = (below.getWidth() + 1) / 2;
+        this.levels[k] = new PackedImage(height, width, this.source.getMaxValue(),
+                new int[height * width]);
+        this.dirty[k].take();
+        downsample(below, this.levels[k], new Rectangle(0, 0, width, height));
+      } else {
+        // a pixel of level k covers a block of 2^k by 2^k pixels of the image
+        for (Rectangle region : this.dirty[k].take()) {
+          int column = region.x >> k;
+          int row = region.y >> k;
+          downsample(below, this.levels[k], new Rectangle(column, row,
+                  ((region.x + region.width - 1) >> k) - column + 1,
+                  ((region.y + region.height - 1) >> k) - row + 1));
+        }
+      }
+    }
+    return this.levels[level];
+  }
+
+  /**
+   * This method is used to make the pixels of a region of a level again from the level below
+   * it, where each pixel is the average of each component of the 2 by 2 block of pixels below
+   * it, or of the pixels of the block that are within the level below at its right and bottom
+   * edges.
+   *
+   * @param below is the level below
+   * @param level is the level to be made again
+   * @param region of the level, where x is the column and y is the row of its top left pixel
+   */
+  private static void downsample(IImage below, IImage level, Rectangle region) {
+    Rectangle area = region.intersection(new Rectangle(0, 0, level.getWidth(),
+            level.getHeight()));
+    if (area.isEmpty()) {
+      return;
+    }
+    int first = area.x * 2;
+    int span = Math.min(area.width * 2, below.getWidth() - first);
+    RowExecutor.getDefault().forEachRow(area.y, area.y + area.height, span * 2, (from, to) -> {
+      int[] top = new int[span];
+      int[] bottom = new int[span];
+      int[] out = new int[area.width];
+      for (int row = from; row < to; row++) {
+        below.readRegion(row * 2, first, 1, span, top);
+        boolean pair = row * 2 + 1 < below.getHeight();
+        if (pair) {
+          below.readRegion(row * 2 + 1, first, 1, span, bottom);
+        }
+        for (int x = 0; x < area.width; x++) {
+          int i = x * 2;
+          int count = 0;
+          int alpha = 0;
+          int red = 0;
+          int green = 0;
+          int blue = 0;
+          for (int j = i; j < Math.min(i + 2, span); j++) {
+            for (int k = 0; k < (pair ? 2 : 1); k++) {
+              int pixel = k == 0 ? top[j] : bottom[j];
+              alpha += PackedPixel.alpha(pixel);
+              red += PackedPixel.red(pixel);
+              green += PackedPixel.green(pixel);
+              blue += PackedPixel.blue(pixel);
+              count++;
+            }
+          }
+          int half = count / 2;
+          out[x] = PackedPixel.pack((red + half) / count, (green + half) / count,
+                  (blue + half) / count, (alpha + half) / count);
+        }
+        level.writeRegion(row, area.x, 1, area.width, out);
+      }
+    });
+  }
+}
@@ -0,0 +1,59 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This interface represents a reference to an image whose pixels are not in memory yet, such as
+ * a layer stored in a .collage file. Its size is known up front, and its pixels are only read
+ * when it is loaded.
+ */
+public interface ImageSource {
+
+  /**
+   * Returns the height of the image, in pixels.
+   *
+   * @return the height of the image
+   */
+  int getHeight();
+
+  /**
+   * Returns the width of the image, in pixels.
+   *
+   * @return the width of the image
+   */
+  int getWidth();
+
+  /**
+   * Returns the path of the image file the image is read from, which is also the filename of
+   * the loaded image.
+   * Note: The default implementation returns null, for an image that is not read from an image
+   * file of its own.
+   *
+   * @return the path of the image file, or null if there is none
+   */
+  default String getFilename() {
+    return null;
+  }
+
+  /**
+   * Returns the SHA-256 hash of the image file the image is read from, which is also the file
+   * digest of the loaded image.
+   * Note: The default implementation returns null, for an image that is not read from an image
+   * file of its own.
+   *
+   * @return the hash of the image file, or null if there is none
+   */
+  default byte[] getFileDigest() {
+    return null;
+  }
+
+  /**
+   * This method is used to read the pixels of the image. The returned image holds its color
+   * components in the range [0, 255], so it can be added to a layer as it is, and each call
+   * returns a new image.
+   *
+   * @return the image
+   * @throws IOException if there is an I/O error when reading the image
+   */
+  IImage load() throws IOException;
+}
@@ -1,82 +1,339 @@
 package model;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.IOException;
-import java.util.Scanner;
-import java.io.FileNotFoundException;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 /**
  * This class contains utility methods to read a PPM, JPG/JPEG, and PNG images from file
- * and retrieve its contents.
+ * and retrieve its contents, and to write images to PPM files.
  */
 public class ImageUtil {
+  private static final String PLAIN_PPM = "P3";
+  private static final String BINARY_PPM = "P6";
+  private static final int DIGEST_BUFFER_SIZE = 1 << 16;
+
   /**
    * Read an image file in the provided image format and return its {@code IImage}.
    * Currently, only PPM, JPG/JPEG, and PNG image formats are supported.
+   * Note: The bytes of the file are hashed as they are decoded, and the hash is kept as the file
+   * digest of the image, so a collage project can tell later whether the file still holds the
+   * image.
    *
    * @param filename the path of the PPM file.
    * @throws IOException if there is an I/O error when reading the file
    * @throws IllegalArgumentException if an unsupported/invalid image format is provided
    */
   public static IImage readImage(String filename) throws IOException, IllegalArgumentException {
-    if (filename.endsWith(".ppm")) {
-      return readPPM(filename);
-    } else if (filename.endsWith(".jpg") || filename.endsWith(".jpeg")) {
-      return readJPG(filename);
-    } else if (filename.endsWith(".png")) {
-      return readPNG(filename);
-    } else {
-      throw new IllegalArgumentException("Invalid image format. Only PPM, JPG/JPEG, " +
-                                         "and PNG are supported.");
+    return readImage(filename, 0, Long.MAX_VALUE, filename);
+  }
+
+  /**
+   * Returns a new SHA-256 message digest.
+   *
+   * @return the message digest
+   */
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
   }
 
   /**
-   * Read an image file in the PPM format and return its {@code IImage}.
+   * Returns the SHA-256 hash of the given part of a file.
    *
-   * @param filename the path of the PPM file.
+   * @param filename the path of the file
+   * @param offset of the part of the file
+   * @param length of the part of the file
+   * @return the hash of the part of the file
    * @throws IOException if there is an I/O error when reading the file
    */
+  static byte[] digest(String filename, long offset, long length) throws IOException {
+    MessageDigest digest = sha256();
+    try (FileChannel channel = new FileInputStream(filename).getChannel()) {
+      ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+      long position = offset;
+      long end = offset + length;
+      while (position < end) {
+        buffer.clear().limit((int) Math.min(DIGEST_BUFFER_SIZE, end - position));
+        int n = channel.read(buffer, position);
+        if (n < 0) {
+          throw new EOFException("Unable to read file '" + filename
+                  + "': unexpected end of file.");
+        }
+        buffer.flip();
+        digest.update(buffer);
+        position += n;
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Read an image file in the PPM format and return its {@code IImage}. Both plain (P3) and
+   * binary (P6) files are supported, and the format is detected from the magic number.
+   * Note: The samples are parsed straight from the bytes of the file into the packed storage of
+   * the image, and comments may appear anywhere in the header of a binary file or anywhere in a
+   * plain file.
+   *
+   * @param filename the path of the PPM file.
+   * @throws IOException if there is an I/O error when reading the file, or if the file is not a
+   *         valid PPM file
+   */
   public static IImage readPPM(String filename) throws IOException {
-    Scanner sc;
-    try {
-      sc = new Scanner(new FileInputStream(filename));
-    } catch (FileNotFoundException e) {
-      throw new FileNotFoundException("File '" + filename + "' not found.");
+    try (AsciiReader reader = new AsciiReader(filename)) {
+      return readPPM(reader, filename);
     }
+  }
 
-    try {
-      StringBuilder builder = new StringBuilder();
-      while (sc.hasNextLine()) {
-        String s = sc.nextLine();
-        if (s.charAt(0) != '#') {
-          builder.append(s).append(System.lineSeparator());
+  /**
+   * Read an image file in the PPM format from the given reader, and return its
+   * {@code IImage}.
+   *
+   * @param reader is the reader of the file, positioned at the start of the image
+   * @param filename is the filename of the returned image
+   * @return the image
+   * @throws IOException if there is an I/O error when reading the file, or if the file is not a
+   *         valid PPM file
+   */
+  private static PackedImage readPPM(AsciiReader reader, String filename) throws IOException {
+    boolean binary = reader.nextToken("magic number").equals(BINARY_PPM);
+    long headerOffset = reader.offset();
+    int width = reader.nextInt("width");
+    int height = reader.nextInt("height");
+    int maxValue = reader.nextInt("maximum value");
+    if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE / 3) {
+      throw reader.error("invalid image size " + width + "x" + height, headerOffset);
+    }
+    if (maxValue < 1 || maxValue > 255) {
+      throw reader.error("maximum value " + maxValue + " is not in range [1, 255]",
+              headerOffset);
+    }
+
+    int[] argb = new int[width * height];
+    if (binary) {
+      reader.skipSeparator();
+      byte[] row = new byte[width * 3];
+      for (int i = 0; i < height; i++) {
+        reader.readFully(row, 0, row.length, "row " + i);
+        int index = i * width;
+        for (int j = 0; j < row.length; j += 3) {
+          argb[index++] = maxValue << 24 | (row[j] & 0xFF) << 16 | (row[j + 1] & 0xFF) << 8
+                  | (row[j + 2] & 0xFF);
         }
       }
-      sc = new Scanner(builder.toString());
+    } else {
+      for (int i = 0; i < argb.length; i++) {
+        int r = reader.nextInt("red sample");
+        int g = reader.nextInt("green sample");
+        int b = reader.nextInt("blue sample");
+        if ((r | g | b) > 255) {
+          throw reader.error("sample of the pixel at (" + i / width + ", " + i % width
+                  + ") is greater than 255", reader.offset());
+        }
+        argb[i] = maxValue << 24 | r << 16 | g << 8 | b;
+      }
+    }
+    return new PackedImage(height, width, maxValue, argb, filename);
+  }
 
-      String token;
-      token = sc.next();
-      int width = sc.nextInt();
-      int height = sc.nextInt();
-      int maxValue = sc.nextInt();
+  /**
+   * Write the given image to a file in the PPM format, with its color components scaled from
+   * [0, 255] down to [0, maxValue]. The image is written as a plain (P3) file unless the
+   * {@code collage.ppmFormat} system property is set to {@code P6}.
+   *
+   * @param image to be written
+   * @param maxValue is the maximum value of the color components in the file
+   * @param filename the path of the PPM file.
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if image is null or maxValue is not in range [1, 255]
+   */
+  public static void writePPM(IImage image, int maxValue, String filename)
+          throws IOException, IllegalArgumentException {
+    writePPM(image, maxValue, filename,
+            BINARY_PPM.equalsIgnoreCase(System.getProperty("collage.ppmFormat", PLAIN_PPM)));
+  }
 
-      IPixel[][] pixels = new ColorPixel[height][width];
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          int r = sc.nextInt();
-          int g = sc.nextInt();
-          int b = sc.nextInt();
-          pixels[i][j] = new ColorPixel(r, g, b, maxValue);
+  /**
+   * Write the given image to a file in the PPM format, with its color components scaled from
+   * [0, 255] down to [0, maxValue].
+   * Note: A binary file is written a row at a time through a {@code FileChannel}, and a plain
+   * file is formatted into a large buffer that is written through a {@code FileChannel}. The
+   * file is written to a temporary file first, which then replaces it.
+   *
+   * @param image to be written
+   * @param maxValue is the maximum value of the color components in the file
+   * @param filename the path of the PPM file.
+   * @param binary is true to write a binary (P6) file, false to write a plain (P3) file
+   * @throws IOException if there is an I/O error when writing the file
+   * @throws IllegalArgumentException if image is null or maxValue is not in range [1, 255]
+   */
+  public static void writePPM(IImage image, int maxValue, String filename, boolean binary)
+          throws IOException, IllegalArgumentException {
+    if (image == null || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int[] scale = scaleTable(maxValue);
+    String header = (binary ? BINARY_PPM : PLAIN_PPM) + "\n" + width + " " + height + "\n"
+            + maxValue + "\n";
+    int[] row = new int[width];
+    File temp = tempFile(filename);
+    try {
+      if (binary) {
+        try (FileChannel channel = new FileOutputStream(temp).getChannel()) {
+          writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+          ByteBuffer bytes = ByteBuffer.allocate(width * 3);
+          for (int i = 0; i < height; i++) {
+            image.readRow(i, row);
+            bytes.clear();
+            for (int j = 0; j < width; j++) {
+              int pixel = row[j];
+              bytes.put((byte) scale[PackedPixel.red(pixel)]);
+              bytes.put((byte) scale[PackedPixel.green(pixel)]);
+              bytes.put((byte) scale[PackedPixel.blue(pixel)]);
+            }
+            bytes.flip();
+            writeFully(channel, bytes);
+          }
+        }
+      } else {
+        try (AsciiWriter writer = new AsciiWriter(temp.getPath())) {
+          writer.write(header);
+          for (int i = 0; i < height; i++) {
+            image.readRow(i, row);
+            for (int j = 0; j < width; j++) {
+              int pixel = row[j];
+              writer.writeSample(scale[PackedPixel.red(pixel)], ' ');
+              writer.writeSample(scale[PackedPixel.green(pixel)], ' ');
+              writer.writeSample(scale[PackedPixel.blue(pixel)], ' ');
+            }
+            writer.write('\n');
+          }
         }
       }
-      return new ColorImage(height, width, maxValue, pixels, filename);
-    } catch (StringIndexOutOfBoundsException e) {
-      throw new IOException("Unable to read file.");
+      commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Write the given image to a file in the given format, such as PNG or JPG, through
+   * {@code ImageIO}. The image is written to a temporary file first, which then replaces the
+   * file, so the file is never left partly written.
+   *
+   * @param image to be written
+   * @param format is the informal name of the format, such as "png" or "jpg"
+   * @param filename the path of the image file.
+   * @throws IOException if there is an I/O error when writing the file, or if there is no
+   *                     writer for the format
+   * @throws IllegalArgumentException if image or format is null
+   */
+  public static void writeImage(BufferedImage image, String format, String filename)
+          throws IOException, IllegalArgumentException {
+    if (image == null || format == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    File temp = tempFile(filename);
+    try {
+      if (!ImageIO.write(image, format, temp)) {
+        throw new IOException("No writer for format: " + format);
+      }
+      commit(temp, filename);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  /**
+   * Returns a table that maps each color component in [0, 255] to the nearest value in
+   * [0, maxValue], rounded the same way as {@code Math.round(component / (255.0 / maxValue))}.
+   *
+   * @param maxValue is the maximum value of the scaled components
+   * @return the table of scaled components
+   */
+  static int[] scaleTable(int maxValue) {
+    double factor = 255.0 / maxValue;
+    int[] scale = new int[256];
+    for (int i = 0; i < scale.length; i++) {
+      scale[i] = (int) Math.round((double) i / factor);
+    }
+    return scale;
+  }
+
+  /**
+   * Writes every remaining byte of the given buffer to the given channel.
+   *
+   * @param channel to be written to
+   * @param bytes to be written
+   * @throws IOException if there is an I/O error when writing
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  /**
+   * Creates an empty temporary file next to the given file, so that it can replace the file.
+   *
+   * @param filename the path of the file to be replaced
+   * @return the temporary file
+   * @throws IOException if the file cannot be created
+   */
+  static File tempFile(String filename) throws IOException {
+    File target = new File(filename).getAbsoluteFile();
+    return File.createTempFile("." + target.getName() + "-", ".tmp", target.getParentFile());
+  }
+
+  /**
+   * Forces the contents of a fully written temporary file to the disk and then renames it over
+   * the given file, so that the file is either left as it was or fully replaced, even if the
+   * program or system stops in between.
+   *
+   * @param temp is the temporary file
+   * @param filename the path of the file to be replaced
+   * @throws IOException if there is an I/O error when forcing or renaming the file
+   */
+  static void commit(File temp, String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    try {
+      Files.move(temp.toPath(), Paths.get(filename), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp.toPath(), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING);
     }
   }
 
@@ -88,26 +345,27 @@ public class ImageUtil {
    */
   public static IImage readJPG(String filename) throws IOException {
     try {
-      BufferedImage img = ImageIO.read(new File(filename));
-      int height = img.getHeight();
-      int width = img.getWidth();
-      int maxValue = 255;
-      IPixel[][] pixels = new ColorPixel[height][width];
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          int rgb = img.getRGB(j, i);
-          int r = (rgb >> 16) & 0xFF;
-          int g = (rgb >> 8) & 0xFF;
-          int b = rgb & 0xFF;
-          pixels[i][j] = new ColorPixel(r, g, b, maxValue);
-        }
-      }
-      return new ColorImage(height, width, maxValue, pixels, filename);
+      return fromJPG(ImageIO.read(new File(filename)), filename);
     } catch (IOException e) {
       throw new IOException("Unable to read file.");
     }
   }
 
+  /**
+   * Returns the {@code IImage} of a decoded JPG/JPEG image, whose pixels are all opaque.
+   *
+   * @param img is the decoded image
+   * @param filename is the filename of the returned image
+   * @return the image
+   */
+  private static PackedImage fromJPG(BufferedImage img, String filename) {
+    int[] argb = readPixels(img);
+    for (int i = 0; i < argb.length; i++) {
+      argb[i] |= 0xFF000000;
+    }
+    return new PackedImage(img.getHeight(), img.getWidth(), 255, argb, filename);
+  }
+
   /**
    * Read an image file in the PNG format and return its {@code IImage}.
    *
@@ -116,24 +374,131 @@ public class ImageUtil {
    */
   public static IImage readPNG(String filename) throws IOException {
     try {
-      BufferedImage img = ImageIO.read(new File(filename));
-      int height = img.getHeight();
-      int width = img.getWidth();
-      int maxValue = 255;
-      IPixel[][] pixels = new ColorPixel[height][width];
+      return fromPNG(ImageIO.read(new File(filename)), filename);
+    } catch (IOException e) {
+      throw new IOException("Unable to read file.");
+    }
+  }
+
+  /**
+   * Returns the {@code IImage} of a decoded PNG image, keeping the alpha of its pixels.
+   *
+   * @param img is the decoded image
+   * @param filename is the filename of the returned image
+   * @return the image
+   */
+  private static PackedImage fromPNG(BufferedImage img, String filename) {
+    return new PackedImage(img.getHeight(), img.getWidth(), 255, readPixels(img), filename);
+  }
+
+  /**
+   * Returns the pixels of a decoded image as packed ARGB values in the sRGB color space, stored
+   * row by row, the same as {@code BufferedImage.getRGB} returns them.
+   * Note: The samples of the usual types that ImageIO decodes into (3 or 4 interleaved bytes,
+   * or a packed int per pixel) are already in the sRGB color space, so they are copied straight
+   * from the data buffer of the image. The pixels of any other type are converted a row at a
+   * time by {@code getRGB} rather than one pixel at a time.
+   *
+   * @param img is the decoded image
+   * @return the packed ARGB values of the pixels
+   */
+  private static int[] readPixels(BufferedImage img) {
+    int height = img.getHeight();
+    int width = img.getWidth();
+    int[] argb = new int[height * width];
+    WritableRaster raster = img.getRaster();
+    SampleModel model = raster.getSampleModel();
+    // the position of the top left pixel of the image in its sample model
+    int x0 = -raster.getSampleModelTranslateX();
+    int y0 = -raster.getSampleModelTranslateY();
+    int type = img.getType();
+    if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+            && model instanceof ComponentSampleModel) {
+      ComponentSampleModel components = (ComponentSampleModel) model;
+      byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+      int stride = components.getScanlineStride();
+      int pixelStride = components.getPixelStride();
+      int[] bands = components.getBandOffsets();
+      boolean alpha = type == BufferedImage.TYPE_4BYTE_ABGR;
+      int start = raster.getDataBuffer().getOffset() + y0 * stride + x0 * pixelStride;
       for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          int rgba = img.getRGB(j, i);
-          int r = (rgba >> 16) & 0xFF;
-          int g = (rgba >> 8) & 0xFF;
-          int b = rgba & 0xFF;
-          int a = (rgba >> 24) & 0xFF;
-          pixels[i][j] = new ColorPixel(r, g, b, a);
+        int index = i * width;
+        int offset = start + i * stride;
+        for (int j = 0; j < width; j++, offset += pixelStride) {
+          int a = alpha ? data[offset + bands[3]] & 0xFF : 0xFF;
+          argb[index++] = a << 24 | (data[offset + bands[0]] & 0xFF) << 16
+                  | (data[offset + bands[1]] & 0xFF) << 8 | (data[offset + bands[2]] & 0xFF);
         }
       }
-      return new ColorImage(height, width, maxValue, pixels, filename);
-    } catch (IOException e) {
-      throw new IOException("Unable to read file.");
+    } else if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+            && model instanceof SinglePixelPackedSampleModel) {
+      int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+      int stride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+      int start = raster.getDataBuffer().getOffset() + y0 * stride + x0;
+      for (int i = 0; i < height; i++) {
+        System.arraycopy(data, start + i * stride, argb, i * width, width);
+      }
+      if (type == BufferedImage.TYPE_INT_RGB) {
+        for (int i = 0; i < argb.length; i++) {
+          argb[i] |= 0xFF000000;
+        }
+      }
+    } else {
+      for (int i = 0; i < height; i++) {
+        img.getRGB(0, i, width, 1, argb, i * width, width);
+      }
+    }
+    return argb;
+  }
+
+  /**
+   * Read an image file in the provided image format that is stored at the given offset of
+   * another file, such as an image embedded in a collage project, and return its
+   * {@code IImage}. The format is given by the extension of the name of the image, like
+   * {@code readImage}, and the stored bytes of the image are hashed as its file digest while
+   * they are decoded, so each byte is only read once.
+   *
+   * @param filename the path of the file the image is stored in.
+   * @param offset is the offset of the image in the file
+   * @param length is the number of bytes of the image in the file, or {@code Long.MAX_VALUE}
+   *               if the image takes the rest of the file
+   * @param name is the filename of the returned image
+   * @return the image
+   * @throws IOException if there is an I/O error when reading the file, or if the image is not
+   *         valid
+   * @throws IllegalArgumentException if an unsupported/invalid image format is provided
+   */
+  static IImage readImage(String filename, long offset, long length, String name)
+          throws IOException, IllegalArgumentException {
+    boolean jpg = name.endsWith(".jpg") || name.endsWith(".jpeg");
+    if (!name.endsWith(".ppm") && !jpg && !name.endsWith(".png")) {
+      throw new IllegalArgumentException("Invalid image format. Only PPM, JPG/JPEG, " +
+                                         "and PNG are supported.");
+    }
+    MessageDigest digest = sha256();
+    PackedImage image;
+    if (name.endsWith(".ppm")) {
+      try (AsciiReader reader = new AsciiReader(filename, offset, length, digest)) {
+        image = readPPM(reader, name);
+        reader.skipRest();
+      }
+    } else {
+      try (FileInputStream file = new FileInputStream(filename)) {
+        file.getChannel().position(offset);
+        InputStream stored = length == Long.MAX_VALUE ? file
+                : new ByteArrayInputStream(file.readNBytes((int) length));
+        DigestInputStream in = new DigestInputStream(new BufferedInputStream(stored), digest);
+        BufferedImage img = ImageIO.read(new MemoryCacheImageInputStream(in));
+        if (img == null) {
+          throw new IOException("Unable to read file '" + filename + "': invalid image '"
+                  + name + "'.");
+        }
+        // the decoder may stop before the end of the image, so the rest of it is hashed too
+        in.transferTo(OutputStream.nullOutputStream());
+        image = jpg ? fromJPG(img, name) : fromPNG(img, name);
+      }
     }
+    image.setFileDigest(digest.digest());
+    return image;
   }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This class represents an image that is loaded from an {@code ImageSource} the first time its
+ * pixels are accessed. Its size and filename are known without loading it.
+ * Note: The image is loaded at most once, even when its pixels are first accessed from several
+ * threads at the same time, and the source is let go of once it has been loaded.
+ */
+class LazyImage implements IImage {
+  private final int height;
+  private final int width;
+  private final String filename;
+  private final byte[] fileDigest;
+  private ImageSource source;
+  private volatile IImage image;
+
+  /**
+   * This is the constructor for the {@code LazyImage} class, which creates a new
+   * {@code LazyImage} that is loaded from the given source.
+   *
+   * @param source of the pixels of the image
+   * @throws IllegalArgumentException if source is null
+   */
+  LazyImage(ImageSource source) throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = source.getHeight();
+    this.width = source.getWidth();
+    this.filename = source.getFilename();
+    this.fileDigest = source.getFileDigest();
+    this.source = source;
+  }
+
+  /**
+   * This method is used to retrieve the loaded image, loading it from its source first if it
+   * has not been loaded yet.
+   *
+   * @return the loaded image
+   * @throws IllegalStateException if the image cannot be read from its source
+   */
+  IImage get() throws IllegalStateException {
+    IImage loaded = this.image;
+    if (loaded == null) {
+      synchronized (this) {
+        loaded = this.image;
+        if (loaded == null) {
+          try {
+            loaded = this.source.load();
+          } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+          }
+          this.image = loaded;
+          this.source = null;
+        }
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Returns the source the image is loaded from, if it has not been loaded yet.
+   *
+   * @return the source of the image, or null once it has been loaded
+   */
+  synchronized ImageSource getSource() {
+    return this.source;
+  }
+
+  /**
+   * Returns whether the image has been loaded from its source.
+   *
+   * @return true if the image has been loaded, false otherwise
+   */
+  boolean isLoaded() {
+    return this.image != null;
+  }
+
+  @Override
+  public void updateWithMaxValue() {
+    this.get().updateWithMaxValue();
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public IPixel[][] getPixels() {
+    return this.get().getPixels();
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.get().getMaxValue();
+  }
+
+  @Override
+  public IPixel getPixel(int row, int col) {
+    return this.get().getPixel(row, col);
+  }
+
+  @Override
+  public void setPixel(int row, int col, IPixel pixel) {
+    this.get().setPixel(row, col, pixel);
+  }
+
+  @Override
+  public String getFilename() throws RuntimeException {
+    if (this.filename == null) {
+      throw new RuntimeException("Unknown filename");
+    }
+    return this.filename;
+  }
+
+  @Override
+  public byte[] getFileDigest() {
+    return this.fileDigest;
+  }
+
+  @Override
+  public void readRegion(int row, int col, int height, int width, int[] dst)
+          throws IndexOutOfBoundsException {
+    this.get().readRegion(row, col, height, width, dst);
+  }
+
+  @Override
+  public void writeRegion(int row, int col, int height, int width, int[] src)
+          throws IndexOutOfBoundsException {
+    this.get().writeRegion(row, col, height, width, src);
+  }
+}
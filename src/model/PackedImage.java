@@ -0,0 +1,416 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.filter.IFilter;
+import model.filter.NormalFilter;
+
+/**
+ * This class implements the {@code IImage} interface and represents a color image whose pixels
+ * are stored in a single array of packed ARGB integers instead of one {@code IPixel} object per
+ * pixel. The filter of each pixel is stored as a one-byte index into a small table of the
+ * distinct filters used by the image, which is only allocated once a pixel has a filter other
+ * than the normal filter.
+ */
+public class PackedImage implements IImage {
+  private static final IFilter NORMAL = NormalFilter.getInstance();
+  private static final int MAX_FILTERS = 256;
+
+  private final int height;
+  private final int width;
+  private final int maxValue;
+  private final int[] argb;
+  private final List<IFilter> filters;
+  private byte[] filterIds;
+  private IPixel[][] views;
+  private String filename;
+  private byte[] fileDigest;
+
+  /**
+   * This is the constructor for the {@code PackedImage} class, which creates a new
+   * {@code PackedImage} with the specified height, width, maximum value of the color components,
+   * array of packed ARGB values (stored row by row), and the filename.
+   * Note: The given array is used directly as the storage of the image, it is not copied.
+   *
+   * @param height of the image
+   * @param width of the image
+   * @param maxValue is the maximum value of each color component of the pixels
+   * @param argb is the array of packed ARGB values of the pixels, stored row by row
+   * @param filename of the image file
+   * @throws IllegalArgumentException if the height or width is less than 1, if the maximum value
+   *        is not in range [1, 255], if the array length does not match the size of the image,
+   *        or if parameters are null
+   */
+  public PackedImage(int height, int width, int maxValue, int[] argb, String filename)
+          throws IllegalArgumentException {
+    this(height, width, maxValue, argb);
+    if (filename == null) {
+      throw new IllegalArgumentException("invalid inputs");
+    }
+    this.filename = filename;
+  }
+
+  /**
+   * This is the constructor for the {@code PackedImage} class, which creates a new
+   * {@code PackedImage} without a filename, with the specified height, width, maximum value of
+   * the color components, and array of packed ARGB values (stored row by row).
+   * Note: The given array is used directly as the storage of the image, it is not copied.
+   *
+   * @param height of the image
+   * @param width of the image
+   * @param maxValue is the maximum value of each color component of the pixels
+   * @param argb is the array of packed ARGB values of the pixels, stored row by row
+   * @throws IllegalArgumentException if the height or width is less than 1, if the maximum value
+   *        is not in range [1, 255], if the array length does not match the size of the image,
+   *        or if argb is null
+   */
+  public PackedImage(int height, int width, int maxValue, int[] argb)
+          throws IllegalArgumentException {
+    if (height < 1 || width < 1 || maxValue < 1 || maxValue > 255 || argb == null
+            || argb.length != (long) height * width) {
+      throw new IllegalArgumentException("invalid inputs");
+    }
+    this.height = height;
+    this.width = width;
+    this.maxValue = maxValue;
+    this.argb = argb;
+    this.filters = new ArrayList<>();
+    this.filters.add(NORMAL);
+  }
+
+  /**
+   * This is the constructor for the {@code PackedImage} class, which creates a new
+   * {@code PackedImage} with the specified height and width of the image, alpha value of the
+   * pixels, and the maximum value of the color components of the pixels.
+   * Note: Every pixel is initialized as a white pixel with the given alpha value.
+   *
+   * @param height of the image
+   * @param width of the image
+   * @param alpha value of the pixels
+   * @param maxValue is the maximum value of each color component of the pixels
+   * @throws IllegalArgumentException if the height and width are less than 1, alpha value is not
+   *        in range [0, 255], or max value is not in range [1, 255]
+   */
+  public PackedImage(int height, int width, int alpha, int maxValue)
+          throws IllegalArgumentException {
+    if (height < 1 || width < 1 || alpha < 0 || alpha > 255 || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = height;
+    this.width = width;
+    this.maxValue = maxValue;
+    this.argb = new int[height * width];
+    this.filters = new ArrayList<>();
+    this.filters.add(NORMAL);
+    Arrays.fill(this.argb, PackedPixel.pack(maxValue, maxValue, maxValue, alpha));
+  }
+
+  /**
+   * This is the constructor for the {@code PackedImage} class, which creates a new
+   * {@code PackedImage} that holds a copy of the pixels (and their filters) of the given image.
+   *
+   * @param other is the image to be copied
+   * @throws IllegalArgumentException if other is null
+   */
+  public PackedImage(IImage other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = other.getHeight();
+    this.width = other.getWidth();
+    this.maxValue = other.getMaxValue();
+    this.argb = new int[this.height * this.width];
+    this.filters = new ArrayList<>();
+    if (other instanceof PackedImage) {
+      PackedImage packed = (PackedImage) other;
+      System.arraycopy(packed.argb, 0, this.argb, 0, this.argb.length);
+      this.filters.addAll(packed.filters);
+      if (packed.filterIds != null) {
+        this.filterIds = packed.filterIds.clone();
+      }
+    } else {
+      this.filters.add(NORMAL);
+      for (int i = 0; i < this.height; i++) {
+        for (int j = 0; j < this.width; j++) {
+          this.setPixel(i, j, other.getPixel(i, j));
+        }
+      }
+    }
+    try {
+      this.filename = other.getFilename();
+      this.fileDigest = other.getFileDigest();
+    } catch (RuntimeException e) {
+      // the copied image has no filename
+    }
+  }
+
+  @Override
+  public void updateWithMaxValue() {
+    if (this.getMaxValue() == 255) {
+      return;
+    }
+    double factor = 255.0 / this.getMaxValue();
+    for (int i = 0; i < this.argb.length; i++) {
+      int pixel = this.argb[i];
+      int red = (int) Math.round((double) PackedPixel.red(pixel) * factor);
+      int green = (int) Math.round((double) PackedPixel.green(pixel) * factor);
+      int blue = (int) Math.round((double) PackedPixel.blue(pixel) * factor);
+      this.argb[i] = PackedPixel.pack(red, green, blue, 255);
+    }
+    this.filterIds = null;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns a 2D array of {@code IPixel} views of the pixels of this image.
+   * Note: The views read from and write filters to the packed storage of this image, so any
+   * change to the image is visible through them. The views are only created on the first call
+   * to this method.
+   *
+   * @return the 2D array of {@code IPixel} views of the pixels of this image
+   */
+  @Override
+  public IPixel[][] getPixels() {
+    if (this.views == null) {
+      this.views = new IPixel[this.height][this.width];
+      for (int i = 0; i < this.height; i++) {
+        for (int j = 0; j < this.width; j++) {
+          this.views[i][j] = new PixelView(i * this.width + j);
+        }
+      }
+    }
+    return this.views;
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.maxValue;
+  }
+
+  /**
+   * Retrieves a snapshot of the {@code IPixel} that is positioned at the specified (row, col)
+   * in the image pixels. Later changes to the image are not reflected by the returned pixel.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the {@code IPixel} that is positioned at the specified (row, col) in the image pixels
+   * @throws IndexOutOfBoundsException if (row, col) is outside the image
+   */
+  @Override
+  public IPixel getPixel(int row, int col) throws IndexOutOfBoundsException {
+    int index = this.indexOf(row, col);
+    return new PackedPixel(this.argb[index], this.filterAt(index));
+  }
+
+  @Override
+  public void setPixel(int row, int col, IPixel pixel) throws IndexOutOfBoundsException {
+    int index = this.indexOf(row, col);
+    this.argb[index] = PackedPixel.pack(pixel);
+    this.setFilterAt(index, pixel.getFilter());
+  }
+
+  @Override
+  public void readRow(int row, int[] dst) throws IndexOutOfBoundsException {
+    System.arraycopy(this.argb, this.indexOf(row, 0), dst, 0, this.width);
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) throws IndexOutOfBoundsException {
+    this.writeRegion(row, 0, 1, this.width, src);
+  }
+
+  @Override
+  public void readRegion(int row, int col, int height, int width, int[] dst)
+          throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, height, width);
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(this.argb, (row + i) * this.width + col, dst, i * width, width);
+    }
+  }
+
+  @Override
+  public void writeRegion(int row, int col, int height, int width, int[] src)
+          throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, height, width);
+    for (int i = 0; i < height; i++) {
+      int start = (row + i) * this.width + col;
+      System.arraycopy(src, i * width, this.argb, start, width);
+      if (this.filterIds != null) {
+        Arrays.fill(this.filterIds, start, start + width, (byte) 0);
+      }
+    }
+  }
+
+  @Override
+  public String getFilename() throws RuntimeException {
+    if (this.filename == null) {
+      throw new RuntimeException("Unknown filename");
+    }
+    return this.filename;
+  }
+
+  @Override
+  public byte[] getFileDigest() {
+    return this.fileDigest;
+  }
+
+  /**
+   * Sets the SHA-256 hash of the image file this image was read from.
+   *
+   * @param fileDigest is the hash of the image file
+   */
+  void setFileDigest(byte[] fileDigest) {
+    this.fileDigest = fileDigest;
+  }
+
+  /**
+   * Returns the index of the pixel at (row, col) in the packed storage of this image.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the index of the pixel in the packed storage
+   * @throws IndexOutOfBoundsException if (row, col) is outside the image
+   */
+  private int indexOf(int row, int col) throws IndexOutOfBoundsException {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new IndexOutOfBoundsException("Pixel (" + row + ", " + col + ") is outside of image.");
+    }
+    return row * this.width + col;
+  }
+
+  /**
+   * Checks that the specified rectangular region is within the image.
+   *
+   * @param row of the top left pixel of the region
+   * @param col of the top left pixel of the region
+   * @param height of the region, in pixels
+   * @param width of the region, in pixels
+   * @throws IndexOutOfBoundsException if the region is not within the image
+   */
+  private void checkRegion(int row, int col, int height, int width)
+          throws IndexOutOfBoundsException {
+    if (row < 0 || col < 0 || height < 0 || width < 0
+            || row + height > this.height || col + width > this.width) {
+      throw new IndexOutOfBoundsException("Region (" + row + ", " + col + ", " + height + ", "
+              + width + ") is outside of image.");
+    }
+  }
+
+  /**
+   * Returns the filter of the pixel at the given index of the packed storage.
+   *
+   * @param index of a pixel in the packed storage
+   * @return the filter of the pixel
+   */
+  private IFilter filterAt(int index) {
+    if (this.filterIds == null) {
+      return NORMAL;
+    }
+    return this.filters.get(this.filterIds[index] & 0xFF);
+  }
+
+  /**
+   * Sets the filter of the pixel at the given index of the packed storage. Filters are
+   * shared between pixels by their String representation.
+   *
+   * @param index of a pixel in the packed storage
+   * @param filter of the pixel
+   * @throws IllegalStateException if the image already uses the maximum number of filters
+   */
+  private void setFilterAt(int index, IFilter filter) throws IllegalStateException {
+    int id = this.filterIdOf(filter);
+    if (id == 0 && this.filterIds == null) {
+      return;
+    }
+    if (this.filterIds == null) {
+      this.filterIds = new byte[this.argb.length];
+    }
+    this.filterIds[index] = (byte) id;
+  }
+
+  /**
+   * Returns the index of the given filter in the filter table of this image, adding the filter
+   * to the table if no filter with the same String representation exists yet.
+   *
+   * @param filter to look up
+   * @return the index of the filter in the filter table
+   * @throws IllegalStateException if the image already uses the maximum number of filters
+   */
+  private int filterIdOf(IFilter filter) throws IllegalStateException {
+    for (int i = 0; i < this.filters.size(); i++) {
+      if (this.filters.get(i) == filter) {
+        return i;
+      }
+    }
+    String name = String.valueOf(filter);
+    for (int i = 0; i < this.filters.size(); i++) {
+      if (String.valueOf(this.filters.get(i)).equals(name)) {
+        return i;
+      }
+    }
+    if (this.filters.size() == MAX_FILTERS) {
+      throw new IllegalStateException("Image cannot hold more than " + MAX_FILTERS
+              + " distinct filters.");
+    }
+    this.filters.add(filter);
+    return this.filters.size() - 1;
+  }
+
+  /**
+   * This class represents a view of a single pixel of the packed storage of a
+   * {@code PackedImage}, which always reflects the current state of the image.
+   */
+  private class PixelView implements IPixel {
+    private final int index;
+
+    /**
+     * Constructs a view of the pixel at the given index of the packed storage.
+     *
+     * @param index of a pixel in the packed storage
+     */
+    private PixelView(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public int getRed() {
+      return PackedPixel.red(argb[this.index]);
+    }
+
+    @Override
+    public int getGreen() {
+      return PackedPixel.green(argb[this.index]);
+    }
+
+    @Override
+    public int getBlue() {
+      return PackedPixel.blue(argb[this.index]);
+    }
+
+    @Override
+    public int getAlpha() {
+      return PackedPixel.alpha(argb[this.index]);
+    }
+
+    @Override
+    public IFilter getFilter() {
+      return filterAt(this.index);
+    }
+
+    @Override
+    public void setFilter(IFilter other) {
+      setFilterAt(this.index, other);
+    }
+  }
+}
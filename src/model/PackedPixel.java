@@ -0,0 +1,133 @@
+package model;
+
+import model.filter.IFilter;
+
+/**
+ * This class implements the {@code IPixel} interface and represents a lightweight pixel
+ * whose color information (RGBA) is stored as a single packed ARGB integer.
+ * It also provides the static helpers used to pack and unpack ARGB integers, where the alpha
+ * component occupies the highest 8 bits followed by the red, green, and blue components.
+ */
+public class PackedPixel implements IPixel {
+  private final int argb;
+  private IFilter filter;
+
+  /**
+   * This is the constructor for the {@code PackedPixel} class, which constructs a
+   * {@code PackedPixel} object with the specified packed ARGB value and {@code IFilter}.
+   *
+   * @param argb   is the packed ARGB value of the pixel
+   * @param filter to be applied to the pixel
+   * @throws IllegalArgumentException if filter is null
+   */
+  public PackedPixel(int argb, IFilter filter) throws IllegalArgumentException {
+    if (filter == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.argb = argb;
+    this.filter = filter;
+  }
+
+  /**
+   * Returns the packed ARGB value of the pixel.
+   *
+   * @return the packed ARGB value of the pixel
+   */
+  public int getARGB() {
+    return this.argb;
+  }
+
+  @Override
+  public int getRed() {
+    return red(this.argb);
+  }
+
+  @Override
+  public int getGreen() {
+    return green(this.argb);
+  }
+
+  @Override
+  public int getBlue() {
+    return blue(this.argb);
+  }
+
+  @Override
+  public int getAlpha() {
+    return alpha(this.argb);
+  }
+
+  @Override
+  public IFilter getFilter() {
+    return this.filter;
+  }
+
+  @Override
+  public void setFilter(IFilter other) {
+    this.filter = other;
+  }
+
+  /**
+   * Packs the given red, green, blue, and alpha values into a single ARGB integer.
+   * Note: Each value is expected to be in the range [0, 255].
+   *
+   * @param red   value of the pixel
+   * @param green value of the pixel
+   * @param blue  value of the pixel
+   * @param alpha value of the pixel
+   * @return the packed ARGB value
+   */
+  public static int pack(int red, int green, int blue, int alpha) {
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Packs the color information of the given {@code IPixel} into a single ARGB integer.
+   *
+   * @param pixel to be packed
+   * @return the packed ARGB value
+   */
+  public static int pack(IPixel pixel) {
+    return pack(pixel.getRed(), pixel.getGreen(), pixel.getBlue(), pixel.getAlpha());
+  }
+
+  /**
+   * Returns the alpha value of the given packed ARGB integer.
+   *
+   * @param argb is the packed ARGB value
+   * @return the alpha value
+   */
+  public static int alpha(int argb) {
+    return argb >>> 24;
+  }
+
+  /**
+   * Returns the red value of the given packed ARGB integer.
+   *
+   * @param argb is the packed ARGB value
+   * @return the red value
+   */
+  public static int red(int argb) {
+    return (argb >> 16) & 0xFF;
+  }
+
+  /**
+   * Returns the green value of the given packed ARGB integer.
+   *
+   * @param argb is the packed ARGB value
+   * @return the green value
+   */
+  public static int green(int argb) {
+    return (argb >> 8) & 0xFF;
+  }
+
+  /**
+   * Returns the blue value of the given packed ARGB integer.
+   *
+   * @param argb is the packed ARGB value
+   * @return the blue value
+   */
+  public static int blue(int argb) {
+    return argb & 0xFF;
+  }
+}
@@ -22,10 +22,29 @@ public class RepresentationConverter {
    * @param b blue value of the RGB between 0 and 1
    */
   public static ArrayList<Double> convertRGBtoHSL(double r, double g, double b) {
+    double[] values = new double[3];
+    convertRGBtoHSL(r, g, b, values);
+    ArrayList<Double> hsl = new ArrayList<>();
+    hsl.add(values[0]);
+    hsl.add(values[1]);
+    hsl.add(values[2]);
+    return hsl;
+  }
+
+  /**
+   * Converts an RGB representation in the range 0-1 into an HSL representation, like
+   * {@code convertRGBtoHSL(double, double, double)}, and writes the hue, saturation, and
+   * lightness into the first three elements of the given array instead of allocating a list.
+   *
+   * @param r red value of the RGB between 0 and 1
+   * @param g green value of the RGB between 0 and 1
+   * @param b blue value of the RGB between 0 and 1
+   * @param hsl is the array the hue, saturation, and lightness are written to
+   */
+  public static void convertRGBtoHSL(double r, double g, double b, double[] hsl) {
     double componentMax = Math.max(r, Math.max(g, b));
     double componentMin = Math.min(r, Math.min(g, b));
     double delta = componentMax - componentMin;
-    ArrayList<Double> hsl = new ArrayList<>();
     double lightness = (componentMax + componentMin) / 2;
     double hue;
     double saturation;
@@ -51,13 +70,11 @@ public class RepresentationConverter {
 
       hue = hue * 60;
     }
-    hsl.add(hue);
-    hsl.add(saturation);
-    hsl.add(lightness);
-    return hsl;
+    hsl[0] = hue;
+    hsl[1] = saturation;
+    hsl[2] = lightness;
   }
 
-
   /**
    * Converts an HSL representation where
    * <ul>
@@ -74,19 +91,32 @@ public class RepresentationConverter {
 
   public static ArrayList<Integer> convertHSLtoRGB(double hue, double saturation,
                                                    double lightness) {
-    double r = convertFn(hue, saturation, lightness, 0) * 255;
-    double g = convertFn(hue, saturation, lightness, 8) * 255;
-    double b = convertFn(hue, saturation, lightness, 4) * 255;
+    int packed = convertHSLtoPackedRGB(hue, saturation, lightness);
     ArrayList<Integer> rgb = new ArrayList<>();
-    int r1 = (int) r;
-    int g1 = (int) g;
-    int b1 = (int) b;
-    rgb.add(r1);
-    rgb.add(g1);
-    rgb.add(b1);
+    rgb.add((packed >> 16) & 0xFF);
+    rgb.add((packed >> 8) & 0xFF);
+    rgb.add(packed & 0xFF);
     return rgb;
   }
 
+  /**
+   * Converts an HSL representation into an RGB representation, like
+   * {@code convertHSLtoRGB}, and returns the red, green, and blue values in the range 0-255
+   * packed into a single integer (red in bits 16-23, green in bits 8-15, and blue in bits 0-7)
+   * instead of allocating a list.
+   *
+   * @param hue        hue of the HSL representation
+   * @param saturation saturation of the HSL representation
+   * @param lightness  lightness of the HSL representation
+   * @return the packed RGB values
+   */
+  public static int convertHSLtoPackedRGB(double hue, double saturation, double lightness) {
+    int r = (int) (convertFn(hue, saturation, lightness, 0) * 255);
+    int g = (int) (convertFn(hue, saturation, lightness, 8) * 255);
+    int b = (int) (convertFn(hue, saturation, lightness, 4) * 255);
+    return (r << 16) | (g << 8) | b;
+  }
+
   /**
    * Helper method that performs the translation from the HSL polygonal
    * model to the more familiar RGB model.
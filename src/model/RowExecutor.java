@@ -0,0 +1,175 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs passes over the rows of an image, such as compositing layers or applying a
+ * filter, either on the calling thread or split into bands of rows on a {@code ForkJoinPool}.
+ * Every row is processed by exactly one band with the same code as the sequential path, so
+ * both paths produce the same pixels.
+ * Note: The default executor uses the number of threads given by the {@code collage.threads}
+ * system property (the number of available processors if not set) and the threshold given by
+ * the {@code collage.parallelThreshold} system property.
+ */
+public class RowExecutor {
+  /**
+   * This interface represents a pass over a band of rows of an image.
+   */
+  public interface RowTask {
+    /**
+     * Processes the rows in the range [from, to).
+     *
+     * @param from is the first row of the band
+     * @param to is the row after the last row of the band
+     */
+    void run(int from, int to);
+  }
+
+  private static final int DEFAULT_THRESHOLD = 1 << 16;
+  private static final int BANDS_PER_THREAD = 4;
+  private static RowExecutor defaultExecutor;
+
+  private final int threads;
+  private final int threshold;
+  private final ForkJoinPool pool;
+
+  /**
+   * This is the constructor for the {@code RowExecutor} class, which creates a new
+   * {@code RowExecutor} with the specified number of threads and threshold.
+   * Note: An executor with a single thread always runs passes on the calling thread.
+   *
+   * @param threads is the number of threads to split a pass between
+   * @param threshold is the number of pixels a pass must cover to be split between threads
+   * @throws IllegalArgumentException if threads is less than 1 or threshold is negative
+   */
+  public RowExecutor(int threads, int threshold) throws IllegalArgumentException {
+    if (threads < 1 || threshold < 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.threads = threads;
+    this.threshold = threshold;
+    this.pool = threads == 1 ? null : new ForkJoinPool(threads);
+  }
+
+  /**
+   * Returns the executor used by the model for passes over the rows of images.
+   *
+   * @return the executor used by the model
+   */
+  public static synchronized RowExecutor getDefault() {
+    if (defaultExecutor == null) {
+      defaultExecutor = new RowExecutor(
+              Integer.getInteger("collage.threads", Runtime.getRuntime().availableProcessors()),
+              Integer.getInteger("collage.parallelThreshold", DEFAULT_THRESHOLD));
+    }
+    return defaultExecutor;
+  }
+
+  /**
+   * Sets the executor used by the model for passes over the rows of images. The pool of the
+   * previous executor is shut down.
+   *
+   * @param executor to be used by the model
+   * @throws IllegalArgumentException if executor is null
+   */
+  public static synchronized void setDefault(RowExecutor executor)
+          throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    if (defaultExecutor != null && defaultExecutor != executor) {
+      defaultExecutor.shutdown();
+    }
+    defaultExecutor = executor;
+  }
+
+  /**
+   * Returns the number of threads a pass is split between.
+   *
+   * @return the number of threads a pass is split between
+   */
+  public int getThreads() {
+    return this.threads;
+  }
+
+  /**
+   * Returns the number of pixels a pass must cover to be split between threads.
+   *
+   * @return the number of pixels a pass must cover to be split between threads
+   */
+  public int getThreshold() {
+    return this.threshold;
+  }
+
+  /**
+   * Runs the given task over the rows in the range [from, to). If the rows cover at least the
+   * threshold number of pixels, they are split into bands that run in parallel, otherwise the
+   * task runs once over every row on the calling thread. This method returns once every row has
+   * been processed.
+   *
+   * @param from is the first row of the pass
+   * @param to is the row after the last row of the pass
+   * @param width is the number of pixels in each row
+   * @param task to run over the rows
+   */
+  public void forEachRow(int from, int to, int width, RowTask task) {
+    int rows = to - from;
+    if (rows <= 0) {
+      return;
+    }
+    if (this.pool == null || this.pool.isShutdown() || rows == 1
+            || (long) rows * width < this.threshold) {
+      task.run(from, to);
+      return;
+    }
+    int bands = Math.min(rows, this.threads * BANDS_PER_THREAD);
+    this.pool.invoke(new Band(from, to, (rows + bands - 1) / bands, task));
+  }
+
+  /**
+   * Shuts down the pool of this executor. Passes run after this are run on the calling thread.
+   */
+  public void shutdown() {
+    if (this.pool != null) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * This class represents a range of rows that is split in half until it is a single band.
+   */
+  private static class Band extends RecursiveAction {
+    private final int from;
+    private final int to;
+    private final int bandRows;
+    private final RowTask task;
+
+    /**
+     * Constructs a range of rows [from, to) made of bands of the given number of rows.
+     *
+     * @param from is the first row of the range
+     * @param to is the row after the last row of the range
+     * @param bandRows is the number of rows in a band
+     * @param task to run over each band
+     */
+    private Band(int from, int to, int bandRows, RowTask task) {
+      this.from = from;
+      this.to = to;
+      this.bandRows = bandRows;
+      this.task = task;
+    }
+
+    @Override
+    protected void compute() {
+      int bands = (this.to - this.from + this.bandRows - 1) / this.bandRows;
+      if (bands <= 1) {
+        this.task.run(this.from, this.to);
+        return;
+      }
+      int mid = this.from + (bands / 2) * this.bandRows;
+      invokeAll(new Band(this.from, mid, this.bandRows, this.task),
+              new Band(mid, this.to, this.bandRows, this.task));
+    }
+  }
+}
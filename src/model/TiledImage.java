@@ -0,0 +1,465 @@
+package model;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import model.filter.IFilter;
+import model.filter.NormalFilter;
+
+/**
+ * This class implements the {@code IImage} interface and represents a color image whose pixels
+ * are stored in square tiles of {@code TILE_SIZE} by {@code TILE_SIZE} packed ARGB integers,
+ * which is suited to the layers of a canvas that are mostly transparent. Every tile that has
+ * never been written holds transparent white pixels and is the same single blank tile, so the
+ * memory of the image depends on how much of it is occupied rather than on its size.
+ * Tiles are copy-on-write: a copy of the image shares every tile with it, and whichever of the
+ * two images is written first copies only the tiles it writes, so copying an image is cheap.
+ * Note: The pixels of the image have no filters of their own, each pixel has the normal filter.
+ * Bands of rows may be written in parallel without locking when no two bands write the same
+ * tile, or once the tiles the bands write have been made writable with {@code makeWritable}.
+ */
+public class TiledImage implements IImage {
+  /**
+   * The width and height of a tile, in pixels.
+   */
+  public static final int TILE_SIZE = 128;
+  private static final int SHIFT = 7;
+  private static final int[] CLEAR = blankTile(255);
+
+  private final int height;
+  private final int width;
+  private final int maxValue;
+  private final int columns;
+  private final int[] blank;
+  private final int[][] tiles;
+  // whether each tile belongs to this image alone and may be written in place
+  private final boolean[] owned;
+  private IPixel[][] views;
+
+  /**
+   * This is the constructor for the {@code TiledImage} class, which creates a new
+   * {@code TiledImage} with the specified height, width, and maximum value of the color
+   * components, whose pixels are all transparent white.
+   *
+   * @param height of the image
+   * @param width of the image
+   * @param maxValue is the maximum value of each color component of the pixels
+   * @throws IllegalArgumentException if the height or width is less than 1, or if the maximum
+   *        value is not in range [1, 255]
+   */
+  public TiledImage(int height, int width, int maxValue) throws IllegalArgumentException {
+    if (height < 1 || width < 1 || maxValue < 1 || maxValue > 255) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = height;
+    this.width = width;
+    this.maxValue = maxValue;
+    this.columns = (width + TILE_SIZE - 1) >> SHIFT;
+    this.blank = maxValue == 255 ? CLEAR : blankTile(maxValue);
+    this.tiles = new int[((height + TILE_SIZE - 1) >> SHIFT) * this.columns][];
+    Arrays.fill(this.tiles, this.blank);
+    this.owned = new boolean[this.tiles.length];
+  }
+
+  /**
+   * This is the constructor for the {@code TiledImage} class, which creates a new
+   * {@code TiledImage} with the same pixels as the given image.
+   * Note: The copy shares the tiles of the given image instead of copying them, and either
+   * image copies a shared tile the first time it writes to it.
+   *
+   * @param other is the image to be copied
+   * @throws IllegalArgumentException if other is null
+   */
+  public TiledImage(TiledImage other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.height = other.height;
+    this.width = other.width;
+    this.maxValue = other.maxValue;
+    this.columns = other.columns;
+    this.blank = other.blank;
+    this.owned = new boolean[other.owned.length];
+    synchronized (other) {
+      this.tiles = other.tiles.clone();
+      Arrays.fill(other.owned, false);
+    }
+  }
+
+  @Override
+  public void updateWithMaxValue() {
+    if (this.maxValue == 255) {
+      return;
+    }
+    double factor = 255.0 / this.maxValue;
+    for (int t = 0; t < this.tiles.length; t++) {
+      int[] tile = this.writable(t);
+      for (int i = 0; i < tile.length; i++) {
+        int pixel = tile[i];
+        int red = (int) Math.round((double) PackedPixel.red(pixel) * factor);
+        int green = (int) Math.round((double) PackedPixel.green(pixel) * factor);
+        int blue = (int) Math.round((double) PackedPixel.blue(pixel) * factor);
+        tile[i] = PackedPixel.pack(red, green, blue, 255);
+      }
+    }
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns a 2D array of {@code IPixel} views of the pixels of this image.
+   * Note: The views read from the tiles of this image, so any change to the image is visible
+   * through them. The views are only created on the first call to this method.
+   *
+   * @return the 2D array of {@code IPixel} views of the pixels of this image
+   */
+  @Override
+  public IPixel[][] getPixels() {
+    if (this.views == null) {
+      this.views = new IPixel[this.height][this.width];
+      for (int i = 0; i < this.height; i++) {
+        for (int j = 0; j < this.width; j++) {
+          this.views[i][j] = new PixelView(i, j);
+        }
+      }
+    }
+    return this.views;
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.maxValue;
+  }
+
+  /**
+   * Retrieves a snapshot of the {@code IPixel} that is positioned at the specified (row, col)
+   * in the image pixels. Later changes to the image are not reflected by the returned pixel.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the {@code IPixel} that is positioned at the specified (row, col) in the image pixels
+   * @throws IndexOutOfBoundsException if (row, col) is outside the image
+   */
+  @Override
+  public IPixel getPixel(int row, int col) throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, 1, 1);
+    return new PackedPixel(this.argbAt(row, col), NormalFilter.getInstance());
+  }
+
+  /**
+   * Sets the color of the pixel at the specified (row, col) to the color of the given pixel.
+   * Note: The filter of the given pixel is not kept.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @param pixel whose color is given to the pixel of the image
+   * @throws IndexOutOfBoundsException if (row, col) is outside the image
+   */
+  @Override
+  public void setPixel(int row, int col, IPixel pixel) throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, 1, 1);
+    this.writable(this.tileOf(row, col))[this.offsetOf(row, col)] = PackedPixel.pack(pixel);
+  }
+
+  @Override
+  public void readRegion(int row, int col, int height, int width, int[] dst)
+          throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, height, width);
+    for (int i = 0; i < height; i++) {
+      int r = row + i;
+      int j = 0;
+      while (j < width) {
+        int c = col + j;
+        int n = Math.min(width - j, TILE_SIZE - (c & (TILE_SIZE - 1)));
+        System.arraycopy(this.tiles[this.tileOf(r, c)], this.offsetOf(r, c), dst, i * width + j,
+                n);
+        j += n;
+      }
+    }
+  }
+
+  @Override
+  public void writeRegion(int row, int col, int height, int width, int[] src)
+          throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, height, width);
+    for (int i = 0; i < height; i++) {
+      int r = row + i;
+      int j = 0;
+      while (j < width) {
+        int c = col + j;
+        int n = Math.min(width - j, TILE_SIZE - (c & (TILE_SIZE - 1)));
+        int t = this.tileOf(r, c);
+        System.arraycopy(src, i * width + j, this.owned[t] ? this.tiles[t] : this.writable(t),
+                this.offsetOf(r, c), n);
+        j += n;
+      }
+    }
+  }
+
+  @Override
+  public String getFilename() throws RuntimeException {
+    throw new RuntimeException("Unknown filename");
+  }
+
+  /**
+   * Copies every tile the given region covers that is shared with another image or is the
+   * blank tile, so that the region can then be written by several threads at once without any
+   * tile being copied while it is written.
+   *
+   * @param row of the top left pixel of the region
+   * @param col of the top left pixel of the region
+   * @param height of the region
+   * @param width of the region
+   * @throws IndexOutOfBoundsException if the region is not within the image
+   */
+  public void makeWritable(int row, int col, int height, int width)
+          throws IndexOutOfBoundsException {
+    this.checkRegion(row, col, height, width);
+    if (height == 0 || width == 0) {
+      return;
+    }
+    for (int tileRow = row >> SHIFT; tileRow <= (row + height - 1) >> SHIFT; tileRow++) {
+      for (int tileColumn = col >> SHIFT; tileColumn <= (col + width - 1) >> SHIFT;
+           tileColumn++) {
+        this.writable(tileRow * this.columns + tileColumn);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of rows of tiles of this image.
+   *
+   * @return the number of rows of tiles
+   */
+  public int getTileRows() {
+    return this.tiles.length / this.columns;
+  }
+
+  /**
+   * Returns the number of columns of tiles of this image.
+   *
+   * @return the number of columns of tiles
+   */
+  public int getTileColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Returns the region of this image that the tile at the given row and column of tiles holds,
+   * which is smaller than a full tile at the right and bottom edges of the image.
+   *
+   * @param tileRow is the row of the tile
+   * @param tileColumn is the column of the tile
+   * @return the region of the tile, where x is the column and y is the row of its top left pixel
+   * @throws IndexOutOfBoundsException if there is no such tile
+   */
+  public Rectangle getTileRegion(int tileRow, int tileColumn) throws IndexOutOfBoundsException {
+    this.indexOfTile(tileRow, tileColumn);
+    int col = tileColumn << SHIFT;
+    int row = tileRow << SHIFT;
+    return new Rectangle(col, row, Math.min(TILE_SIZE, this.width - col),
+            Math.min(TILE_SIZE, this.height - row));
+  }
+
+  /**
+   * Returns whether the tile at the given row and column of tiles has never been written since
+   * the image was created, so that all of its pixels are transparent white.
+   *
+   * @param tileRow is the row of the tile
+   * @param tileColumn is the column of the tile
+   * @return true if the tile is blank, false otherwise
+   * @throws IndexOutOfBoundsException if there is no such tile
+   */
+  public boolean isBlank(int tileRow, int tileColumn) throws IndexOutOfBoundsException {
+    return this.tiles[this.indexOfTile(tileRow, tileColumn)] == this.blank;
+  }
+
+  /**
+   * Returns the number of tiles of this image that are not blank, which is how much memory the
+   * pixels of the image take up, in tiles.
+   *
+   * @return the number of tiles that are not blank
+   */
+  public int countOccupiedTiles() {
+    int count = 0;
+    for (int[] tile : this.tiles) {
+      if (tile != this.blank) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the tile at the given index, copying it first if it is shared with another image or
+   * is the blank tile, so that it can be written in place.
+   * Note: The tile is copied without locking, so a tile must not be made writable by two
+   * threads at once.
+   *
+   * @param t is the index of the tile
+   * @return the tile, which belongs to this image alone
+   */
+  private int[] writable(int t) {
+    if (!this.owned[t]) {
+      this.tiles[t] = this.tiles[t] == this.blank ? this.blankCopy(t) : this.tiles[t].clone();
+      this.owned[t] = true;
+    }
+    return this.tiles[t];
+  }
+
+  /**
+   * Returns a new tile of transparent white pixels, the size of the tile at the given index.
+   *
+   * @param t is the index of the tile
+   * @return the new tile
+   */
+  private int[] blankCopy(int t) {
+    Rectangle region = this.getTileRegion(t / this.columns, t % this.columns);
+    int[] tile = new int[region.width * region.height];
+    Arrays.fill(tile, this.blank[0]);
+    return tile;
+  }
+
+  /**
+   * Returns the index of the tile that holds the pixel at (row, col).
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the index of the tile
+   */
+  private int tileOf(int row, int col) {
+    return (row >> SHIFT) * this.columns + (col >> SHIFT);
+  }
+
+  /**
+   * Returns the index of the pixel at (row, col) within the tile that holds it. The rows of a
+   * tile are as long as the tile is wide, and every pixel of the blank tile is the same, so it
+   * is read the same way as any other tile.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the index of the pixel within its tile
+   */
+  private int offsetOf(int row, int col) {
+    int tileWidth = Math.min(TILE_SIZE, this.width - (col & -TILE_SIZE));
+    return (row & (TILE_SIZE - 1)) * tileWidth + (col & (TILE_SIZE - 1));
+  }
+
+  /**
+   * Returns the index of the tile at the given row and column of tiles.
+   *
+   * @param tileRow is the row of the tile
+   * @param tileColumn is the column of the tile
+   * @return the index of the tile
+   * @throws IndexOutOfBoundsException if there is no such tile
+   */
+  private int indexOfTile(int tileRow, int tileColumn) throws IndexOutOfBoundsException {
+    if (tileRow < 0 || tileColumn < 0 || tileColumn >= this.columns
+            || tileRow >= this.getTileRows()) {
+      throw new IndexOutOfBoundsException("Tile (" + tileRow + ", " + tileColumn
+              + ") is outside of image.");
+    }
+    return tileRow * this.columns + tileColumn;
+  }
+
+  /**
+   * Checks that the specified rectangular region is within the image.
+   *
+   * @param row of the top left pixel of the region
+   * @param col of the top left pixel of the region
+   * @param height of the region, in pixels
+   * @param width of the region, in pixels
+   * @throws IndexOutOfBoundsException if the region is not within the image
+   */
+  private void checkRegion(int row, int col, int height, int width)
+          throws IndexOutOfBoundsException {
+    if (row < 0 || col < 0 || height < 0 || width < 0
+            || row + height > this.height || col + width > this.width) {
+      throw new IndexOutOfBoundsException("Region (" + row + ", " + col + ", " + height + ", "
+              + width + ") is outside of image.");
+    }
+  }
+
+  /**
+   * Returns the packed ARGB value of the pixel at (row, col), which must be within the image.
+   *
+   * @param row of a pixel in the image
+   * @param col of a pixel in the image
+   * @return the packed ARGB value of the pixel
+   */
+  private int argbAt(int row, int col) {
+    return this.tiles[this.tileOf(row, col)][this.offsetOf(row, col)];
+  }
+
+  /**
+   * Returns a full tile of transparent white pixels for the given maximum value.
+   *
+   * @param maxValue is the maximum value of each color component of the pixels
+   * @return the blank tile
+   */
+  private static int[] blankTile(int maxValue) {
+    int[] tile = new int[TILE_SIZE * TILE_SIZE];
+    Arrays.fill(tile, PackedPixel.pack(maxValue, maxValue, maxValue, 0));
+    return tile;
+  }
+
+  /**
+   * This class represents a view of a single pixel of a {@code TiledImage}, which always
+   * reflects the current state of the image.
+   * Note: The pixels of the image have no filters of their own, so setting the filter of a view
+   * has no effect.
+   */
+  private class PixelView implements IPixel {
+    private final int row;
+    private final int col;
+
+    /**
+     * Constructs a view of the pixel at (row, col) of the image.
+     *
+     * @param row of a pixel in the image
+     * @param col of a pixel in the image
+     */
+    private PixelView(int row, int col) {
+      this.row = row;
+      this.col = col;
+    }
+
+    @Override
+    public int getRed() {
+      return PackedPixel.red(argbAt(this.row, this.col));
+    }
+
+    @Override
+    public int getGreen() {
+      return PackedPixel.green(argbAt(this.row, this.col));
+    }
+
+    @Override
+    public int getBlue() {
+      return PackedPixel.blue(argbAt(this.row, this.col));
+    }
+
+    @Override
+    public int getAlpha() {
+      return PackedPixel.alpha(argbAt(this.row, this.col));
+    }
+
+    @Override
+    public IFilter getFilter() {
+      return NormalFilter.getInstance();
+    }
+
+    @Override
+    public void setFilter(IFilter other) {
+      // the pixels of a tiled image have no filters of their own
+    }
+  }
+}
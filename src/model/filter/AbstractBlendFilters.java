@@ -1,10 +1,9 @@
 package model.filter;
 
-import java.util.ArrayList;
-
 import model.ColorPixel;
 import model.IImage;
 import model.IPixel;
+import model.PackedPixel;
 import model.RepresentationConverter;
 
 /**
@@ -42,35 +41,60 @@ public abstract class AbstractBlendFilters implements IFilter {
    * @param col of the pixel to apply the filter to
    */
   public void apply(IImage im, int row, int col) {
-    double dr = this.prevIm.getPixel(row, col).getRed() / 255.0;
-    double dg = this.prevIm.getPixel(row, col).getGreen() / 255.0;
-    double db = this.prevIm.getPixel(row, col).getBlue() / 255.0;
-    ArrayList<Double> dhsl = RepresentationConverter.convertRGBtoHSL(dr, dg, db);
-    double r = im.getPixel(row, col).getRed() / 255.0;
-    double g = im.getPixel(row, col).getGreen() / 255.0;
-    double b = im.getPixel(row, col).getBlue() / 255.0;
-    ArrayList<Double> hsl = RepresentationConverter.convertRGBtoHSL(r, g, b);
-    int a = im.getPixel(row, col).getAlpha();
-    ArrayList<Integer> rgb = this.getValues(hsl, dhsl);
-    int r1 = rgb.get(0);
-    int g1 = rgb.get(1);
-    int b1 = rgb.get(2);
-    IPixel pix = new ColorPixel(r1, g1, b1, a);
-    pix.setFilter(this);
-    im.setPixel(row, col, pix);
+    IPixel pixel = im.getPixel(row, col);
+    int argb = this.blend(PackedPixel.pack(pixel), PackedPixel.pack(this.prevIm.getPixel(row, col)),
+            new double[3], new double[3]);
+    im.setPixel(row, col, new ColorPixel(PackedPixel.red(argb), PackedPixel.green(argb),
+            PackedPixel.blue(argb), pixel.getAlpha(), this));
+  }
+
+  @Override
+  public void applyRow(int row, int col, int[] argb, int length) {
+    // pixels outside of the background image are left as they are
+    int n = Math.min(length, this.prevIm.getWidth() - col);
+    if (row >= this.prevIm.getHeight() || n <= 0) {
+      return;
+    }
+    int[] prev = new int[n];
+    double[] hsl = new double[3];
+    double[] dhsl = new double[3];
+    this.prevIm.readRegion(row, col, 1, n, prev);
+    for (int k = 0; k < n; k++) {
+      argb[k] = this.blend(argb[k], prev[k], hsl, dhsl);
+    }
+  }
+
+  /**
+   * This method is used to blend a pixel with the pixel of the background image at the same
+   * position: the pixel keeps its hue, saturation, and alpha, and gets the lightness returned
+   * by {@code getLightness}.
+   *
+   * @param argb is the packed ARGB value of the pixel
+   * @param prevArgb is the packed ARGB value of the pixel of the background image
+   * @param hsl is an array of at least 3 elements used to hold the HSL values of the pixel
+   * @param dhsl is an array of at least 3 elements used to hold the HSL values of the pixel of
+   *             the background image
+   * @return the packed ARGB value of the blended pixel
+   */
+  private int blend(int argb, int prevArgb, double[] hsl, double[] dhsl) {
+    RepresentationConverter.convertRGBtoHSL(PackedPixel.red(prevArgb) / 255.0,
+            PackedPixel.green(prevArgb) / 255.0, PackedPixel.blue(prevArgb) / 255.0, dhsl);
+    RepresentationConverter.convertRGBtoHSL(PackedPixel.red(argb) / 255.0,
+            PackedPixel.green(argb) / 255.0, PackedPixel.blue(argb) / 255.0, hsl);
+    int rgb = RepresentationConverter.convertHSLtoPackedRGB(hsl[0], hsl[1],
+            this.getLightness(hsl[2], dhsl[2]));
+    return (PackedPixel.alpha(argb) << 24) | rgb;
   }
 
   /**
-   * This method returns the RGB component values once converted from an HSL representation.
+   * This method returns the lightness of a pixel that the filter is applied to, based on its
+   * own lightness and the lightness of the pixel at the same position of the background image.
    *
-   * @param hsl is the hsl component listed as double values corresponding to
-   *            the hue, saturation, and light values of a pixel.
-   * @param dhsl is the hsl component listed as double values representing the
-   *             hue, saturation, and light values of another pixel.
-   * @return a list of RGB component values listed as red, green, and blue
-   * components in integer form
+   * @param lightness of the pixel, between 0 and 1
+   * @param backgroundLightness of the pixel of the background image, between 0 and 1
+   * @return the new lightness of the pixel, between 0 and 1
    */
-  protected abstract ArrayList<Integer> getValues(ArrayList<Double> hsl, ArrayList<Double> dhsl);
+  protected abstract double getLightness(double lightness, double backgroundLightness);
 
   /**
    * Represents the String representation of an {@code AbstractBlendFilters} filter.
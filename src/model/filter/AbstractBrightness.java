@@ -3,14 +3,22 @@ package model.filter;
 import model.ColorPixel;
 import model.IImage;
 import model.IPixel;
+import model.PackedPixel;
 
 /**
  * This is an abstract class that implements the {@code IFilter} interface. It provides a common
  * implementation for the brightness filters that adjust the brightness of each pixel in an image.
  */
 public abstract class AbstractBrightness implements IFilter {
+  private static final int[] CLIP = new int[255 + 256 + 255];
   private final LightType type;
 
+  static {
+    for (int i = 0; i < CLIP.length; i++) {
+      CLIP[i] = Math.min(Math.max(i - 255, 0), 255);
+    }
+  }
+
   /**
    * This is the constructor of the {@code AbstractBrightness} class, which creates a
    * new AbstractBrightness object with the specified light type.
@@ -27,53 +35,83 @@ public abstract class AbstractBrightness implements IFilter {
     if (pixel.getAlpha() == 0) {
       return;
     }
-    IPixel newPixel = getNewColor(pixel);
-    newPixel.setFilter(factory(type));
-    image.setPixel(row, col, newPixel);
+    int argb = getNewColor(PackedPixel.pack(pixel));
+    image.setPixel(row, col, new ColorPixel(PackedPixel.red(argb), PackedPixel.green(argb),
+            PackedPixel.blue(argb), PackedPixel.alpha(argb), this));
+  }
+
+  @Override
+  public void applyRow(int row, int col, int[] argb, int length) {
+    int direction = this.getDirection();
+    if (direction != 0) {
+      FilterKernels.getDefault().adjustBrightness(argb, 0, length, this.type, direction);
+      return;
+    }
+    for (int k = 0; k < length; k++) {
+      if (PackedPixel.alpha(argb[k]) != 0) {
+        argb[k] = getNewColor(argb[k]);
+      }
+    }
   }
 
   /**
    * This method is used to retrieve a new pixel with the brightness adjusted based
    * on the type of brightness filter.
    *
-   * @param pixel the original pixel to adjust
-   * @return the new pixel with the adjusted brightness
+   * @param argb is the packed ARGB value of the original pixel to adjust
+   * @return the packed ARGB value of the new pixel with the adjusted brightness
    */
-  private IPixel getNewColor(IPixel pixel) {
+  private int getNewColor(int argb) {
+    int red = PackedPixel.red(argb);
+    int green = PackedPixel.green(argb);
+    int blue = PackedPixel.blue(argb);
     int b;
     switch (type) {
       case VALUE:
-        b = getValue(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+        b = getValue(red, green, blue);
         break;
       case INTENSITY:
-        b = getIntensity(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+        b = getIntensity(red, green, blue);
         break;
       case LUMA:
-        b = getLuma(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+        b = getLuma(red, green, blue);
         break;
       default:
         throw new IllegalArgumentException();
     }
-    int newRed = pixel.getRed() + b;
-    int newGreen = pixel.getGreen() + b;
-    int newBlue = pixel.getBlue() + b;
-    int a = pixel.getAlpha();
-    return new ColorPixel(getInt(newRed), getInt(newGreen), getInt(newBlue), a);
+    return PackedPixel.pack(clip(red + b), clip(green + b), clip(blue + b),
+            PackedPixel.alpha(argb));
   }
 
   /**
-   * This method is used to clip the specified value to the range [0, 255].
+   * This method is used to clip the specified value to the range [0, 255] with a lookup table.
    *
-   * @param value of the clip
+   * @param value of the clip, in the range [-255, 510]
    * @return the clipped value
    */
-  private int getInt(int value) {
-    if (value <= 0) {
-      return 0;
-    } else if (value >= 255) {
-      return 255;
+  static int clip(int value) {
+    return CLIP[value + 255];
+  }
+
+  /**
+   * This method is used to calculate the luma of the specified RGB color, which is the integer
+   * part of 0.2126r + 0.7152g + 0.0722b, in fixed point with the coefficients scaled by 10000.
+   * Note: When the scaled sum is a multiple of 10000 the formula is evaluated in double
+   * precision instead, since the rounding of the double formula can land just below the integer
+   * and the result must stay the same as that of the double formula.
+   *
+   * @param r is the red component of the color
+   * @param g is the green component of the color
+   * @param b is the blue component of the color
+   * @return the luma of the color
+   */
+  protected static int luma(int r, int g, int b) {
+    int scaled = 2126 * r + 7152 * g + 722 * b;
+    int luma = scaled / 10000;
+    if (luma * 10000 == scaled) {
+      return (int) ((0.2126 * r) + (0.7152 * g) + (0.0722 * b));
     }
-    return value;
+    return luma;
   }
 
   /**
@@ -110,11 +148,15 @@ public abstract class AbstractBrightness implements IFilter {
   abstract protected int getLuma(int r, int g, int b);
 
   /**
-   * This method follows the factory design pattern and returns the appropriate
-   * type of {@code AbstractBrightness}.
+   * This method is used to retrieve the direction of the brightness adjustment, when the
+   * adjustment is the value, intensity, or luma of the color (as returned by the
+   * {@code AbstractBrightness} helpers) multiplied by the direction. Filters with a direction
+   * are applied to rows with the {@code FilterKernels}.
    *
-   * @param type is the light type of the {@code AbstractBrightness}
-   * @return a type of {@code AbstractBrightness}
+   * @return 1 if the filter adds the adjustment, -1 if it subtracts the adjustment, or 0 if the
+   *         adjustment is computed in another way
    */
-  abstract protected AbstractBrightness factory(LightType type);
-}
\ No newline at end of file
+  protected int getDirection() {
+    return 0;
+  }
+}
@@ -1,7 +1,7 @@
 package model.filter;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * This class extends the functionality of the {@code AbstractBrightness} abstract class.
@@ -9,7 +9,14 @@ import java.util.Collections;
  * of each pixel in an image.
  */
 public class BrightenFilter extends AbstractBrightness {
-  LightType type;
+  private static final Map<LightType, BrightenFilter> INSTANCES = new EnumMap<>(LightType.class);
+  private final LightType type;
+
+  static {
+    for (LightType type : LightType.values()) {
+      INSTANCES.put(type, new BrightenFilter(type));
+    }
+  }
 
   /**
    * This is the constructor of the {@code BrightenFilter} class, which creates a
@@ -28,6 +35,21 @@ public class BrightenFilter extends AbstractBrightness {
     }
   }
 
+  /**
+   * Returns the shared {@code BrightenFilter} for the given light type. Filters of this type have
+   * no state other than their light type, so a single instance per light type can be shared.
+   *
+   * @param type the light type of the filter
+   * @return the shared {@code BrightenFilter} for the given light type
+   * @throws IllegalArgumentException if type is null
+   */
+  public static BrightenFilter getInstance(LightType type) {
+    if (type == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    return INSTANCES.get(type);
+  }
+
   /**
    * This method takes in integer values of an RGB component and returns the value of
    * the component with the maximum integer value.
@@ -38,7 +60,7 @@ public class BrightenFilter extends AbstractBrightness {
    */
   @Override
   protected int getValue(int r, int g, int b) {
-    return Collections.max(Arrays.asList(r, g, b));
+    return Math.max(r, Math.max(g, b));
   }
 
   /**
@@ -64,18 +86,12 @@ public class BrightenFilter extends AbstractBrightness {
    */
   @Override
   protected int getLuma(int r, int g, int b) {
-    double lumaValue = (0.2126 * r) + (0.7152 * g) + (0.0722 * b);
-    return (int) lumaValue;
+    return luma(r, g, b);
   }
 
-  /**
-   * This method creates a new BrightenFilter object with the given type.
-   * @param type is the light type of the {@code AbstractBrightness}
-   * @return a new BrightenFilter with the given LightType
-   */
   @Override
-  protected AbstractBrightness factory(LightType type) {
-    return new BrightenFilter(type);
+  protected int getDirection() {
+    return 1;
   }
 
   /**
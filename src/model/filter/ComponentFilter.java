@@ -1,8 +1,12 @@
 package model.filter;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import model.ColorPixel;
 import model.IImage;
 import model.IPixel;
+import model.PackedPixel;
 
 /**
  * This is a class that implements the {@code IFilter} interface. It provides an
@@ -10,7 +14,16 @@ import model.IPixel;
  * each pixel in an image.
  */
 public class ComponentFilter implements IFilter {
+  private static final Map<Component, ComponentFilter> INSTANCES =
+          new EnumMap<>(Component.class);
   private final Component component;
+  private final int mask;
+
+  static {
+    for (Component component : Component.values()) {
+      INSTANCES.put(component, new ComponentFilter(component));
+    }
+  }
 
   /**
    * This is the constructor of the {@code ComponentFilter} class, which creates a
@@ -25,7 +38,22 @@ public class ComponentFilter implements IFilter {
     }
     else {
       this.component = component;
+      this.mask = getMask(component);
+    }
+  }
+
+  /**
+   * Returns the shared {@code ComponentFilter} for the given component type.
+   *
+   * @param component is the component type of the filter
+   * @return the shared {@code ComponentFilter} for the given component type
+   * @throws IllegalArgumentException if component is null
+   */
+  public static ComponentFilter getInstance(Component component) {
+    if (component == null) {
+      throw new IllegalArgumentException("invalid input");
     }
+    return INSTANCES.get(component);
   }
 
   @Override
@@ -34,24 +62,45 @@ public class ComponentFilter implements IFilter {
     if (pixel.getAlpha() == 0) {
       return;
     }
+    int argb = getNewColor(PackedPixel.pack(pixel));
+    image.setPixel(row, col, new ColorPixel(PackedPixel.red(argb), PackedPixel.green(argb),
+            PackedPixel.blue(argb), PackedPixel.alpha(argb), this));
+  }
+
+  @Override
+  public void applyRow(int row, int col, int[] argb, int length) {
+    FilterKernels.getDefault().keepComponent(argb, 0, length, this.component);
+  }
 
-    IPixel newPixel;
+  /**
+   * This method is used to retrieve the opaque pixel that only keeps the component of this
+   * filter from the given pixel.
+   *
+   * @param argb is the packed ARGB value of the original pixel
+   * @return the packed ARGB value of the new pixel
+   */
+  private int getNewColor(int argb) {
+    return (argb & this.mask) | 0xFF000000;
+  }
+
+  /**
+   * This method is used to retrieve the bits of a packed ARGB value that hold the given
+   * component.
+   *
+   * @param component is the component type
+   * @return the bits of a packed ARGB value that hold the component
+   */
+  static int getMask(Component component) {
     switch (component) {
       case RED:
-        newPixel = new ColorPixel(pixel.getRed(), 0, 0, 255);
-        break;
+        return PackedPixel.pack(255, 0, 0, 0);
       case GREEN:
-        newPixel = new ColorPixel(0, pixel.getGreen(), 0, 255);
-        break;
+        return PackedPixel.pack(0, 255, 0, 0);
       case BLUE:
-        newPixel = new ColorPixel(0, 0, pixel.getBlue(), 255);
-        break;
+        return PackedPixel.pack(0, 0, 255, 0);
       default:
         throw new IllegalArgumentException();
     }
-
-    newPixel.setFilter(new ComponentFilter(component));
-    image.setPixel(row, col, newPixel);
   }
 
   /**
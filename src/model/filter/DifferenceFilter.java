@@ -10,7 +10,7 @@ import model.IPixel;
  * each pixel in an image, this filter inverts the colors based on its background image.
  */
 public class DifferenceFilter implements IFilter {
-  private IImage prevIm;
+  private final IImage prevIm;
 
   /**
    * This is the constructor of the {@code ComponentFilter} class, which creates a
@@ -46,6 +46,18 @@ public class DifferenceFilter implements IFilter {
     im.setPixel(row, col, pix);
   }
 
+  @Override
+  public void applyRow(int row, int col, int[] argb, int length) {
+    // pixels outside of the background image are left as they are
+    int n = Math.min(length, this.prevIm.getWidth() - col);
+    if (row >= this.prevIm.getHeight() || n <= 0) {
+      return;
+    }
+    int[] prev = new int[n];
+    this.prevIm.readRegion(row, col, 1, n, prev);
+    FilterKernels.getDefault().difference(argb, prev, 0, n);
+  }
+
   /**
    * This method overrides the toString() method and returns the String representation
    * of a component type for a difference filter.
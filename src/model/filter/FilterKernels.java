@@ -0,0 +1,76 @@
+package model.filter;
+
+/**
+ * This interface represents the kernels that run the pointwise filters over runs of packed
+ * ARGB pixels (see {@code PackedPixel}). Every implementation produces the same pixels as the
+ * scalar kernels, which compute each pixel the same way as the {@code apply} method of the
+ * filters.
+ * Note: The default kernels use SIMD instructions through the {@code jdk.incubator.vector}
+ * module when the vector kernels are compiled (from the {@code src-vector} directory) and the
+ * module is available at runtime, unless the {@code collage.simd} system property is false.
+ * Otherwise the scalar kernels are used.
+ */
+public interface FilterKernels {
+  /**
+   * Adjusts the brightness of the non-transparent pixels in argb[offset, offset + length) by
+   * the value, intensity, or luma of each pixel, clipping every component to [0, 255].
+   *
+   * @param argb is the array of packed ARGB values of the pixels
+   * @param offset of the first pixel
+   * @param length is the number of pixels
+   * @param type is the light type of the adjustment
+   * @param direction is 1 to brighten the pixels or -1 to darken them
+   */
+  void adjustBrightness(int[] argb, int offset, int length, LightType type, int direction);
+
+  /**
+   * Replaces the non-transparent pixels in argb[offset, offset + length) by opaque pixels that
+   * only keep the given component.
+   *
+   * @param argb is the array of packed ARGB values of the pixels
+   * @param offset of the first pixel
+   * @param length is the number of pixels
+   * @param component to keep
+   */
+  void keepComponent(int[] argb, int offset, int length, Component component);
+
+  /**
+   * Replaces the color of the pixels in argb[offset, offset + length) by the absolute
+   * difference with the color of the pixels at the same index of the background, keeping their
+   * alpha values.
+   *
+   * @param argb is the array of packed ARGB values of the pixels
+   * @param background is the array of packed ARGB values of the background pixels
+   * @param offset of the first pixel
+   * @param length is the number of pixels
+   */
+  void difference(int[] argb, int[] background, int offset, int length);
+
+  /**
+   * Returns the kernels used by the filters.
+   *
+   * @return the kernels used by the filters
+   */
+  static FilterKernels getDefault() {
+    return Kernels.DEFAULT;
+  }
+
+  /**
+   * Returns the scalar kernels, which are always available.
+   *
+   * @return the scalar kernels
+   */
+  static FilterKernels scalar() {
+    return Kernels.SCALAR;
+  }
+
+  /**
+   * Returns the vector kernels, or null if they are not compiled or the
+   * {@code jdk.incubator.vector} module is not available.
+   *
+   * @return the vector kernels, or null if they are not available
+   */
+  static FilterKernels vector() {
+    return Kernels.VECTOR;
+  }
+}
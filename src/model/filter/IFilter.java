@@ -1,10 +1,14 @@
 package model.filter;
 
+import java.util.Arrays;
+
 import model.IImage;
+import model.PackedImage;
 
 /**
  * This interface represents a type of filter that can be applied to an {@code IImage}.
- * It provides a method to apply a specific filter to an image at a specified (row, col).
+ * It provides a method to apply a specific filter to an image at a specified (row, col), and
+ * a method to apply the filter to a run of packed ARGB pixels of a single row.
  */
 public interface IFilter {
   /**
@@ -17,4 +21,32 @@ public interface IFilter {
    * @param col of the pixel to apply the filter to
    */
   void apply(IImage image, int row, int col);
+
+  /**
+   * This method applies the filter, in place, to a run of packed ARGB pixels (see
+   * {@code PackedPixel}) that belong to the specified row of an image, where argb[k] is the
+   * pixel at (row, col + k).
+   * Note: The default implementation applies the filter one pixel at a time through
+   * {@code apply}, to a one-row image of the pixels where argb[k] is the pixel at (0, k), so
+   * filters that depend on the position of a pixel should override it. Filters should override
+   * it to work on the packed values directly.
+   *
+   * @param row of the pixels to apply the filter to
+   * @param col of the first pixel to apply the filter to
+   * @param argb is the array of packed ARGB values of the pixels
+   * @param length is the number of pixels to apply the filter to
+   */
+  default void applyRow(int row, int col, int[] argb, int length) {
+    if (length <= 0) {
+      return;
+    }
+    int[] pixels = argb.length == length ? argb : Arrays.copyOf(argb, length);
+    IImage rowImage = new PackedImage(1, length, 255, pixels);
+    for (int k = 0; k < length; k++) {
+      this.apply(rowImage, 0, k);
+    }
+    if (pixels != argb) {
+      System.arraycopy(pixels, 0, argb, 0, length);
+    }
+  }
 }
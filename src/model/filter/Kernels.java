@@ -0,0 +1,32 @@
+package model.filter;
+
+/**
+ * This class holds the {@code FilterKernels} implementations and selects the default one.
+ */
+final class Kernels {
+  static final FilterKernels SCALAR = new ScalarKernels();
+  static final FilterKernels VECTOR = loadVector();
+  static final FilterKernels DEFAULT = VECTOR != null
+          && !"false".equals(System.getProperty("collage.simd")) ? VECTOR : SCALAR;
+
+  /**
+   * This class only holds constants.
+   */
+  private Kernels() {
+  }
+
+  /**
+   * Loads the vector kernels, which are only compiled when the {@code jdk.incubator.vector}
+   * module is available and can only be used when it is also available at runtime.
+   *
+   * @return the vector kernels, or null if they cannot be loaded
+   */
+  private static FilterKernels loadVector() {
+    try {
+      return (FilterKernels) Class.forName("model.filter.VectorKernels")
+              .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+}
@@ -7,6 +7,18 @@ import model.IImage;
  * implementation for the normal filter that reverts an image to its original pixels.
  */
 public class NormalFilter implements IFilter {
+  private static final NormalFilter INSTANCE = new NormalFilter();
+
+  /**
+   * Returns the shared {@code NormalFilter}. The normal filter has no state, so a single
+   * instance can be shared by every layer and pixel.
+   *
+   * @return the shared {@code NormalFilter}
+   */
+  public static NormalFilter getInstance() {
+    return INSTANCE;
+  }
+
   /**
    * Applies the filter to the specified pixel of the specified image.
    * This implementation does nothing and leaves the image unchanged.
@@ -23,6 +35,11 @@ public class NormalFilter implements IFilter {
     // do nothing
   }
 
+  @Override
+  public void applyRow(int row, int col, int[] argb, int length) {
+    // do nothing
+  }
+
   /**
    * This method overrides the toString() method and returns the String representation
    * for a normal filter.
@@ -0,0 +1,63 @@
+package model.filter;
+
+import model.PackedPixel;
+
+/**
+ * This class implements the {@code FilterKernels} interface with plain loops over the pixels.
+ */
+class ScalarKernels implements FilterKernels {
+
+  @Override
+  public void adjustBrightness(int[] argb, int offset, int length, LightType type,
+                               int direction) {
+    for (int k = offset; k < offset + length; k++) {
+      int pixel = argb[k];
+      if (PackedPixel.alpha(pixel) == 0) {
+        continue;
+      }
+      int red = PackedPixel.red(pixel);
+      int green = PackedPixel.green(pixel);
+      int blue = PackedPixel.blue(pixel);
+      int b;
+      switch (type) {
+        case VALUE:
+          b = Math.max(red, Math.max(green, blue));
+          break;
+        case INTENSITY:
+          b = (red + green + blue) / 3;
+          break;
+        case LUMA:
+          b = AbstractBrightness.luma(red, green, blue);
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+      b *= direction;
+      argb[k] = PackedPixel.pack(AbstractBrightness.clip(red + b),
+              AbstractBrightness.clip(green + b), AbstractBrightness.clip(blue + b),
+              PackedPixel.alpha(pixel));
+    }
+  }
+
+  @Override
+  public void keepComponent(int[] argb, int offset, int length, Component component) {
+    int mask = ComponentFilter.getMask(component);
+    for (int k = offset; k < offset + length; k++) {
+      if (PackedPixel.alpha(argb[k]) != 0) {
+        argb[k] = (argb[k] & mask) | 0xFF000000;
+      }
+    }
+  }
+
+  @Override
+  public void difference(int[] argb, int[] background, int offset, int length) {
+    for (int k = offset; k < offset + length; k++) {
+      int pixel = argb[k];
+      int prev = background[k];
+      argb[k] = PackedPixel.pack(Math.abs(PackedPixel.red(pixel) - PackedPixel.red(prev)),
+              Math.abs(PackedPixel.green(pixel) - PackedPixel.green(prev)),
+              Math.abs(PackedPixel.blue(pixel) - PackedPixel.blue(prev)),
+              PackedPixel.alpha(pixel));
+    }
+  }
+}
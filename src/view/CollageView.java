@@ -4,13 +4,16 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.swing.JTextField;
@@ -25,10 +28,11 @@ import javax.swing.JLabel;
 import javax.swing.JScrollPane;
 import javax.swing.border.EmptyBorder;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import controller.Features;
-import model.IPixel;
+import model.ICanvas;
 
 /**
  * This class implements the {@code IView} interface, extends {@code JFrame}, and represents
@@ -36,6 +40,7 @@ import model.IPixel;
  * the collage project and updates the view when necessary.
  */
 public class CollageView extends JFrame implements IView, ActionListener {
+  private static final String TITLE = "Collage Creator";
   private Features controller;
   private final Appendable object;
   private BufferedImage image;
@@ -45,7 +50,7 @@ public class CollageView extends JFrame implements IView, ActionListener {
 
   // main panels
   private JPanel panel;
-  private JPanel imagePanel;
+  private Viewport viewport;
 
   private JButton loadProjectButton;
 
@@ -110,14 +115,13 @@ public class CollageView extends JFrame implements IView, ActionListener {
     int guiWidth = 1500;
     setSize(guiWidth, guiHeight);
     setResizable(false);
-    setTitle("Collage Creator");
+    setTitle(TITLE);
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
     // display collage project image
     this.panel = new JPanel();
     this.panel.setPreferredSize(new Dimension((guiWidth / 3) * 2, (guiHeight / 4) * 3));
     this.panel.setLayout(new BorderLayout());
-    this.imagePanel = new JPanel();
     JScrollPane scrollPane1 = new JScrollPane(this.panel);
     scrollPane1.setPreferredSize(new Dimension((guiWidth / 3) * 2, (guiHeight / 3) * 2));
     scrollPane1.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
@@ -311,51 +315,35 @@ public class CollageView extends JFrame implements IView, ActionListener {
     this.width = width;
     this.maxProjectValue = maxValue;
     if (gui) {
-      this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
-      this.imagePanel = new JPanel() {
-        @Override
-        protected void paintComponent(Graphics g) {
-          super.paintComponent(g);
-          g.drawImage(image, 0, 0, null);
-        }
-      };
-      this.imagePanel.setPreferredSize(new Dimension(width, height));
-      this.panel.setPreferredSize(new Dimension(width, height));
-      this.panel.add(this.imagePanel, BorderLayout.WEST);
-      this.panel.validate();
+      // only the visible tiles of the canvas are rendered, so the canvas can be of any size
+      this.viewport = new Viewport(this.controller, width, height);
+      this.panel.removeAll();
+      this.panel.setPreferredSize(null);
+      this.panel.add(this.viewport, BorderLayout.WEST);
+      this.panel.revalidate();
       this.updateView();
     }
   }
 
   @Override
   public void updateView() {
-    Graphics graphics = image.getGraphics();
-    graphics.setColor(Color.WHITE);
-    graphics.fillRect(0, 0, width, height);
-    graphics.dispose();
-
-    this.controller.getModel().updatePixels();
-    double factor = 255.0 / this.maxProjectValue;
-    for (int y = 0; y < this.height; y++) {
-      for (int x = 0; x < this.width; x++) {
-        int argb = 0;
-        IPixel pixel = this.controller.getModel().getImage().getPixel(y, x);
-        int alpha = (int) Math.round((double) pixel.getAlpha() / factor);
-        argb |= ((int) (((double) alpha / this.maxProjectValue) * 255) << 24);
-
-        int red = (int) Math.round((double) pixel.getRed() / factor);
-        argb |= ((int) (((double) red / this.maxProjectValue) * 255) << 16);
-
-        int green = (int) Math.round((double) pixel.getGreen() / factor);
-        argb |= ((int) (((double) green / this.maxProjectValue) * 255) << 8);
-
-        int blue = (int) Math.round((double) pixel.getBlue() / factor);
-        argb |= (int) (((double) blue / this.maxProjectValue) * 255);
-
-        this.image.setRGB(x, y, argb);
-      }
+    ICanvas model = this.controller.getModel();
+    model.updatePixels();
+    List<Rectangle> regions = model.takeDirtyRegions();
+    if (this.viewport != null) {
+      // the tiles of the changed regions are rendered again once they are painted
+      this.viewport.discard(regions);
+      this.viewport.repaint();
+    }
+  }
+
+  @Override
+  public void renderTiles(int level, Map<Point, BufferedImage> tiles, List<Rectangle> changed,
+                          String structure) {
+    this.projectStructure.setText(structure);
+    if (this.viewport != null) {
+      this.viewport.update(level, tiles, changed);
     }
-    this.imagePanel.repaint();
   }
 
   @Override
@@ -430,6 +418,15 @@ public class CollageView extends JFrame implements IView, ActionListener {
     JOptionPane.showMessageDialog(panel, message, title, type);
   }
 
+  @Override
+  public void renderProgress(String task, int percent) {
+    if (this.object != null) {
+      return;
+    }
+    String title = percent < 100 ? TITLE + " - " + task + " (" + percent + "%)" : TITLE;
+    SwingUtilities.invokeLater(() -> setTitle(title));
+  }
+
   @Override
   public void exit() {
     this.dispose();
@@ -448,7 +445,6 @@ public class CollageView extends JFrame implements IView, ActionListener {
 
   @Override
   public void actionPerformed(ActionEvent e) {
-    boolean flag = false;
     if (e.getSource() == newProjectConfirm) {
       try {
         String projectName = newProjectNameTF.getText().trim();
@@ -477,7 +473,6 @@ public class CollageView extends JFrame implements IView, ActionListener {
         this.renderGUIMessage("Failed to transmit message to the view.", "I/O Error", 0);
         return;
       }
-      flag = true;
 
     } else if (e.getSource() == addLayerConfirm) {
       String layerName = addLayerNameTF.getText().trim();
@@ -487,7 +482,6 @@ public class CollageView extends JFrame implements IView, ActionListener {
         this.renderGUIMessage("Failed to transmit message to the view.", "I/O Error", 0);
         return;
       }
-      flag = true;
 
     } else if (e.getSource() == addImageToLayerConfirm) {
       String layerName = Objects.requireNonNull(addImageToLayerNameCB.getSelectedItem()).toString();
@@ -510,7 +504,6 @@ public class CollageView extends JFrame implements IView, ActionListener {
         this.renderGUIMessage("Failed to transmit message to the view.", "I/O Error", 0);
         return;
       }
-      flag = true;
 
     } else if (e.getSource() == setFilterConfirm) {
       String layerName = Objects.requireNonNull(setFilterLayerNameCB.getSelectedItem()).toString();
@@ -521,7 +514,6 @@ public class CollageView extends JFrame implements IView, ActionListener {
         this.renderGUIMessage("Failed to transmit message to the view.", "I/O Error", 0);
         return;
       }
-      flag = true;
 
     } else if (e.getSource() == loadProjectButton) {
       JFileChooser fileChooser = new JFileChooser();
@@ -542,11 +534,8 @@ public class CollageView extends JFrame implements IView, ActionListener {
       }
       return;
     }
-
-    this.projectStructure.setText(this.controller.getModel().getProjectStructure());
-    if (flag) {
-      updateView();
-    }
+    // the controller applies the command in the background, and the tiles and project structure
+    // it leads to are shown by renderTiles once they are rendered
   }
 
   @Override
@@ -603,6 +592,9 @@ public class CollageView extends JFrame implements IView, ActionListener {
 
   @Override
   public BufferedImage getBuffImage() {
+    if (this.viewport != null) {
+      return this.viewport.shown();
+    }
     return this.image;
   }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package view;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.function.BooleanSupplier;
+
+import model.IImage;
+import model.PackedPixel;
+
+/**
+ * This class paints the image of a collage canvas into a frame that the GUI view displays, a
+ * {@code BufferedImage} of type TYPE_INT_RGB, with the color components scaled to the colors the
+ * project can hold. It may be used on any thread, such as a thread that renders frames in the
+ * background while the view keeps displaying the last one.
+ * The GUI view shows the canvas at a zoom level, where level 0 shows each pixel of the canvas as
+ * one pixel on the screen, a positive level n as 2^n by 2^n pixels, and a negative level -n every
+ * 2^n-th pixel of every 2^n-th row. At each level, the displayed canvas is split into square tiles
+ * of {@code TILE_SIZE} pixels, so that only the tiles that are visible need to be painted.
+ */
+public class FramePainter {
+  /**
+   * The width and height of a tile of the displayed canvas, in pixels on the screen.
+   */
+  public static final int TILE_SIZE = 256;
+  /**
+   * The lowest zoom level, which shows every 32nd pixel of the canvas.
+   */
+  public static final int MIN_LEVEL = -5;
+  /**
+   * The highest zoom level, which shows each pixel of the canvas as 8 by 8 pixels.
+   */
+  public static final int MAX_LEVEL = 3;
+  private final int[] scale;
+
+  /**
+   * This is the constructor for the {@code FramePainter} class, which creates a new
+   * {@code FramePainter} for a project with the given maximum value.
+   *
+   * @param maxValue is the maximum value of the project
+   * @throws IllegalArgumentException if maxValue is less than 1
+   */
+  public FramePainter(int maxValue) throws IllegalArgumentException {
+    if (maxValue < 1) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.scale = displayTable(maxValue);
+  }
+
+  /**
+   * This method is used to paint a region of the canvas into the frame, one row at a time,
+   * stopping early if it is cancelled.
+   * Note: Only the part of the region that is within the frame is painted.
+   *
+   * @param canvas is the image of the canvas
+   * @param region is the region to be painted, where x is the column and y is the row of its
+   *               top left pixel
+   * @param frame is the frame, of type TYPE_INT_RGB and the size of the canvas
+   * @param cancelled is checked before each row, and stops the painting once it is true
+   * @return the part of the region that was painted, or null if the painting was cancelled
+   */
+  public Rectangle paint(IImage canvas, Rectangle region, BufferedImage frame,
+                         BooleanSupplier cancelled) {
+    int width = frame.getWidth();
+    Rectangle area = region.intersection(new Rectangle(0, 0, width, frame.getHeight()));
+    if (area.isEmpty()) {
+      return area;
+    }
+    // the pixels are written straight into the buffer of the frame
+    int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+    int[] row = new int[area.width];
+    for (int y = area.y; y < area.y + area.height; y++) {
+      if (cancelled.getAsBoolean()) {
+        return null;
+      }
+      canvas.readRegion(y, area.x, 1, area.width, row);
+      int offset = y * width + area.x;
+      for (int x = 0; x < area.width; x++) {
+        pixels[offset + x] = this.display(row[x]);
+      }
+    }
+    return area;
+  }
+
+  /**
+   * This method is used to paint a tile of the canvas at a zoom level into a new image, one row
+   * at a time, stopping early if it is cancelled. The image only covers the part of the tile
+   * that is within the canvas, so tiles at the right and bottom edges may be smaller.
+   *
+   * @param canvas is the image of the canvas
+   * @param level is the zoom level
+   * @param column is the column of the tile
+   * @param row is the row of the tile
+   * @param cancelled is checked before each row, and stops the painting once it is true
+   * @return the image of the tile, or null if the painting was cancelled
+   * @throws IllegalArgumentException if the level is out of range or if the tile is not within
+   *                                  the canvas
+   */
+  public BufferedImage paintTile(IImage canvas, int level, int column, int row,
+                                 BooleanSupplier cancelled) throws IllegalArgumentException {
+    Rectangle region = tileRegion(level, column, row, canvas.getWidth(), canvas.getHeight());
+    if (region.isEmpty()) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    int[] line = new int[region.width];
+    if (level >= 0) {
+      // each pixel of the canvas is repeated across a square of the tile
+      int size = 1 << level;
+      int width = region.width * size;
+      BufferedImage tile = new BufferedImage(width, region.height * size,
+              BufferedImage.TYPE_INT_RGB);
+      int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+      for (int y = 0; y < region.height; y++) {
+        if (cancelled.getAsBoolean()) {
+          return null;
+        }
+        canvas.readRegion(region.y + y, region.x, 1, region.width, line);
+        int offset = y * size * width;
+        for (int x = 0; x < region.width; x++) {
+          int color = this.display(line[x]);
+          for (int i = 0; i < size; i++) {
+            pixels[offset + x * size + i] = color;
+          }
+        }
+        for (int i = 1; i < size; i++) {
+          System.arraycopy(pixels, offset, pixels, offset + i * width, width);
+        }
+      }
+      return tile;
+    }
+    // every step-th pixel of every step-th row of the canvas is shown
+    int shift = -level;
+    int step = 1 << shift;
+    int width = (region.width + step - 1) >> shift;
+    int height = (region.height + step - 1) >> shift;
+    BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+    for (int y = 0; y < height; y++) {
+      if (cancelled.getAsBoolean()) {
+        return null;
+      }
+      canvas.readRegion(region.y + (y << shift), region.x, 1, region.width, line);
+      for (int x = 0; x < width; x++) {
+        pixels[y * width + x] = this.display(line[x << shift]);
+      }
+    }
+    return tile;
+  }
+
+  /**
+   * This method is used to paint the whole canvas into a new frame, such as an image of the
+   * project to be exported as it is displayed.
+   *
+   * @param canvas is the image of the canvas
+   * @return the new frame
+   */
+  public BufferedImage paint(IImage canvas) {
+    BufferedImage frame = new BufferedImage(canvas.getWidth(), canvas.getHeight(),
+            BufferedImage.TYPE_INT_RGB);
+    this.paint(canvas, new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()), frame,
+        () -> false);
+    return frame;
+  }
+
+  /**
+   * Returns the RGB color that is displayed for a pixel of the canvas.
+   *
+   * @param pixel is the pixel of the canvas, packed as ARGB
+   * @return the displayed color of the pixel, packed as RGB
+   */
+  private int display(int pixel) {
+    return this.scale[PackedPixel.red(pixel)] << 16
+            | this.scale[PackedPixel.green(pixel)] << 8
+            | this.scale[PackedPixel.blue(pixel)];
+  }
+
+  /**
+   * Returns the width and height, in pixels of the canvas, of the part of the canvas a tile
+   * shows at the given zoom level.
+   *
+   * @param level is the zoom level
+   * @return the span of a tile at the level
+   * @throws IllegalArgumentException if the level is out of range
+   */
+  public static int tileSpan(int level) throws IllegalArgumentException {
+    if (level < MIN_LEVEL || level > MAX_LEVEL) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    return level >= 0 ? TILE_SIZE >> level : TILE_SIZE << -level;
+  }
+
+  /**
+   * Returns the size of a canvas as it is displayed at the given zoom level.
+   *
+   * @param width is the width of the canvas
+   * @param height is the height of the canvas
+   * @param level is the zoom level
+   * @return the displayed size of the canvas
+   * @throws IllegalArgumentException if the level is out of range
+   */
+  public static Dimension scaledSize(int width, int height, int level)
+          throws IllegalArgumentException {
+    tileSpan(level);
+    if (level >= 0) {
+      return new Dimension(width << level, height << level);
+    }
+    int step = 1 << -level;
+    return new Dimension((width + step - 1) >> -level, (height + step - 1) >> -level);
+  }
+
+  /**
+   * Returns the region of a canvas that a tile shows at the given zoom level, where x is the
+   * column and y is the row of its top left pixel, which is empty if the tile is not within the
+   * canvas.
+   *
+   * @param level is the zoom level
+   * @param column is the column of the tile
+   * @param row is the row of the tile
+   * @param width is the width of the canvas
+   * @param height is the height of the canvas
+   * @return the region of the canvas the tile shows
+   * @throws IllegalArgumentException if the level is out of range
+   */
+  public static Rectangle tileRegion(int level, int column, int row, int width, int height)
+          throws IllegalArgumentException {
+    int span = tileSpan(level);
+    return new Rectangle(column * span, row * span, span, span)
+            .intersection(new Rectangle(0, 0, width, height));
+  }
+
+  /**
+   * Returns the tiles that show any part of a region of the canvas at the given zoom level, as
+   * a rectangle where x is the first column and y is the first row of the tiles.
+   *
+   * @param region is the region of the canvas, where x is the column and y is the row of its
+   *               top left pixel
+   * @param level is the zoom level
+   * @return the tiles that show the region, which is empty if the region is empty
+   * @throws IllegalArgumentException if the level is out of range
+   */
+  public static Rectangle tilesOf(Rectangle region, int level) throws IllegalArgumentException {
+    int span = tileSpan(level);
+    if (region.isEmpty()) {
+      return new Rectangle();
+    }
+    int column = Math.floorDiv(region.x, span);
+    int row = Math.floorDiv(region.y, span);
+    return new Rectangle(column, row,
+            Math.floorDiv(region.x + region.width - 1, span) - column + 1,
+            Math.floorDiv(region.y + region.height - 1, span) - row + 1);
+  }
+
+  /**
+   * Returns a table that maps each color component of the canvas in [0, 255] to the component
+   * that is displayed for it, which is first scaled down to [0, maxValue] and then back up to
+   * [0, 255], so that the view shows the colors the project can hold.
+   *
+   * @param maxValue is the maximum value of the project
+   * @return the table of displayed components
+   */
+  private static int[] displayTable(int maxValue) {
+    double factor = 255.0 / maxValue;
+    int[] table = new int[256];
+    for (int i = 0; i < table.length; i++) {
+      int scaled = (int) Math.round((double) i / factor);
+      table[i] = (int) (((double) scaled / maxValue) * 255);
+    }
+    return table;
+  }
+}
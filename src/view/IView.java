@@ -1,7 +1,11 @@
 package view;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.JComboBox;
 import javax.swing.JTextField;
@@ -56,6 +60,38 @@ public interface IView {
    */
   void renderMessage(String message) throws IOException;
 
+  /**
+   * This method is used to report the progress of a task that runs in the background, such as
+   * saving the project or an image of it while the project is still being edited.
+   * Note: This method may be called from a thread other than the one that drives the view. The
+   * default implementation does nothing.
+   *
+   * @param task    is a short description of the task
+   * @param percent is the percentage of the task that is done, from 0 to 100, where 100 means
+   *                that the task is over
+   */
+  default void renderProgress(String task, int percent) {
+    // do nothing
+  }
+
+  /**
+   * This method is used to display the tiles of the collage project that were rendered in the
+   * background at a zoom level, after dropping the tiles it shows of the regions of the canvas
+   * that changed, along with the project structure they show.
+   * Note: This method is called on the thread that drives the view. The tiles are split and
+   * numbered as described by {@code FramePainter}. The default implementation does nothing.
+   *
+   * @param level     is the zoom level of the tiles
+   * @param tiles     are the rendered tiles, by column and row
+   * @param changed   are the regions of the canvas that changed since the last tiles, where x is
+   *                  the column and y is the row of the top left pixel of each region
+   * @param structure is the project structure of the collage project
+   */
+  default void renderTiles(int level, Map<Point, BufferedImage> tiles, List<Rectangle> changed,
+                           String structure) {
+    // do nothing
+  }
+
   /**
    * This method is used to dispose/exit the GUI view.
    */
@@ -167,6 +203,7 @@ public interface IView {
 
   /**
    * Returns the current rendered buffered image of the collage project.
+   * Note: The GUI view returns the part of the collage project that is visible, as displayed.
    *
    * @return the current rendered buffered image
    */
@@ -0,0 +1,350 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+
+import controller.Features;
+
+/**
+ * This class represents the panel of the GUI view that displays the collage canvas at a zoom
+ * level. Only the tiles of the canvas that are visible are asked for, from the controller, and
+ * the most recently used tiles are kept, so the memory and the cost of painting the panel depend
+ * on the size of the window rather than the size of the canvas. Tiles that have not been
+ * rendered yet are shown in gray.
+ * Note: The canvas is zoomed with the mouse wheel while the control key is held, around the
+ * pointer, and panned by dragging it or with the scroll bars.
+ */
+class Viewport extends JPanel {
+  private static final int CAPACITY = 64;
+  private static final Color PENDING = Color.LIGHT_GRAY;
+  private final Features controller;
+  private final int width;
+  private final int height;
+  private final Map<Long, BufferedImage> tiles;
+  private Set<Long> requested;
+  private Rectangle visibleTiles;
+  private int level;
+  private Point dragStart;
+  private Point dragView;
+
+  /**
+   * This is the constructor for the {@code Viewport} class, which creates a new
+   * {@code Viewport} that displays a canvas of the given size at zoom level 0.
+   *
+   * @param controller is the controller the tiles are asked for from
+   * @param width is the width of the canvas
+   * @param height is the height of the canvas
+   */
+  Viewport(Features controller, int width, int height) {
+    this.controller = controller;
+    this.width = width;
+    this.height = height;
+    // the least recently used tile is dropped once there are too many, but never one that is
+    // visible, as there is room for twice as many tiles as are visible
+    this.tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+        return this.size() > Math.max(CAPACITY, 2 * visibleTiles.width * visibleTiles.height);
+      }
+    };
+    this.requested = new HashSet<>();
+    this.visibleTiles = new Rectangle();
+    this.level = 0;
+    MouseAdapter mouse = new MouseAdapter() {
+      @Override
+      public void mousePressed(MouseEvent e) {
+        JViewport port = port();
+        dragStart = e.getLocationOnScreen();
+        dragView = port == null ? null : port.getViewPosition();
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        if (dragView != null) {
+          Point at = e.getLocationOnScreen();
+          scrollTo(dragView.x - (at.x - dragStart.x), dragView.y - (at.y - dragStart.y));
+        }
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        if (e.isControlDown()) {
+          zoom(level - e.getWheelRotation(), e.getPoint());
+        } else {
+          // the scroll pane scrolls as usual
+          Component scroll = SwingUtilities.getAncestorOfClass(JScrollPane.class, Viewport.this);
+          if (scroll != null) {
+            scroll.dispatchEvent(SwingUtilities.convertMouseEvent(Viewport.this, e, scroll));
+          }
+        }
+      }
+    };
+    this.addMouseListener(mouse);
+    this.addMouseMotionListener(mouse);
+    this.addMouseWheelListener(mouse);
+  }
+
+  @Override
+  public Dimension getPreferredSize() {
+    return FramePainter.scaledSize(this.width, this.height, this.level);
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    Rectangle clip = g.getClipBounds();
+    this.paintTiles(g, clip == null ? this.getVisibleRect() : clip);
+    this.requestTiles();
+  }
+
+  /**
+   * This method is used to show the tiles rendered for a zoom level, after dropping the tiles
+   * that show any of the regions of the canvas that changed.
+   *
+   * @param level is the zoom level of the tiles
+   * @param rendered are the rendered tiles, by column and row
+   * @param changed are the regions of the canvas that changed, where x is the column and y is
+   *                the row of the top left pixel of each region
+   */
+  void update(int level, Map<Point, BufferedImage> rendered, List<Rectangle> changed) {
+    this.discard(changed);
+    for (Map.Entry<Point, BufferedImage> entry : rendered.entrySet()) {
+      long key = key(level, entry.getKey().x, entry.getKey().y);
+      this.tiles.put(key, entry.getValue());
+      this.requested.remove(key);
+    }
+    this.repaint();
+  }
+
+  /**
+   * This method is used to drop the tiles that show any of the regions of the canvas that
+   * changed, at every zoom level, so that they are asked for again once they are visible.
+   *
+   * @param changed are the regions of the canvas that changed, where x is the column and y is
+   *                the row of the top left pixel of each region
+   */
+  void discard(List<Rectangle> changed) {
+    if (changed.isEmpty()) {
+      return;
+    }
+    Iterator<Long> keys = this.tiles.keySet().iterator();
+    while (keys.hasNext()) {
+      long key = keys.next();
+      Rectangle region = FramePainter.tileRegion(level(key), column(key), row(key), this.width,
+              this.height);
+      for (Rectangle area : changed) {
+        if (region.intersects(area)) {
+          keys.remove();
+          break;
+        }
+      }
+    }
+    this.requested.clear();
+  }
+
+  /**
+   * Returns an image of the part of the canvas that is visible, as it is displayed.
+   *
+   * @return the displayed image of the visible part of the canvas
+   */
+  BufferedImage shown() {
+    Rectangle visible = this.getVisibleRect();
+    if (visible.isEmpty()) {
+      return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    }
+    BufferedImage image = new BufferedImage(visible.width, visible.height,
+            BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.translate(-visible.x, -visible.y);
+    this.paintTiles(g, visible);
+    g.dispose();
+    return image;
+  }
+
+  /**
+   * This method is used to paint the tiles that show an area of the panel, or gray where a
+   * tile has not been rendered yet.
+   *
+   * @param g is the graphics the tiles are painted with
+   * @param area is the area of the panel to be painted
+   */
+  private void paintTiles(Graphics g, Rectangle area) {
+    Rectangle range = this.tileRange(area);
+    for (int row = range.y; row < range.y + range.height; row++) {
+      for (int column = range.x; column < range.x + range.width; column++) {
+        BufferedImage tile = this.tiles.get(key(this.level, column, row));
+        int x = column * FramePainter.TILE_SIZE;
+        int y = row * FramePainter.TILE_SIZE;
+        if (tile != null) {
+          g.drawImage(tile, x, y, null);
+        } else {
+          Dimension size = this.getPreferredSize();
+          g.setColor(PENDING);
+          g.fillRect(x, y, Math.min(FramePainter.TILE_SIZE, size.width - x),
+                  Math.min(FramePainter.TILE_SIZE, size.height - y));
+        }
+      }
+    }
+  }
+
+  /**
+   * This method is used to ask the controller for the visible tiles that have not been
+   * rendered, unless it has already been asked for all of them, or to tell it which tiles are
+   * visible when that changes.
+   */
+  private void requestTiles() {
+    Rectangle range = this.tileRange(this.getVisibleRect());
+    List<Point> missing = new ArrayList<>();
+    Set<Long> keys = new HashSet<>();
+    for (int row = range.y; row < range.y + range.height; row++) {
+      for (int column = range.x; column < range.x + range.width; column++) {
+        long key = key(this.level, column, row);
+        if (!this.tiles.containsKey(key)) {
+          missing.add(new Point(column, row));
+          keys.add(key);
+        }
+      }
+    }
+    if (range.equals(this.visibleTiles) && this.requested.containsAll(keys)) {
+      return;
+    }
+    this.visibleTiles = range;
+    this.requested = keys;
+    this.controller.renderTilesCommand(this.level, range, missing);
+  }
+
+  /**
+   * Returns the tiles of the current zoom level that show any part of an area of the panel, as a
+   * rectangle where x is the first column and y is the first row of the tiles.
+   *
+   * @param area is the area of the panel
+   * @return the tiles that show the area
+   */
+  private Rectangle tileRange(Rectangle area) {
+    Dimension size = this.getPreferredSize();
+    Rectangle shown = area.intersection(new Rectangle(0, 0, size.width, size.height));
+    if (shown.isEmpty()) {
+      return new Rectangle();
+    }
+    int column = shown.x / FramePainter.TILE_SIZE;
+    int row = shown.y / FramePainter.TILE_SIZE;
+    return new Rectangle(column, row,
+            (shown.x + shown.width - 1) / FramePainter.TILE_SIZE - column + 1,
+            (shown.y + shown.height - 1) / FramePainter.TILE_SIZE - row + 1);
+  }
+
+  /**
+   * This method is used to change the zoom level, keeping the pixel of the canvas under the
+   * given point of the panel in the same place on the screen.
+   *
+   * @param level is the new zoom level, which is kept within range
+   * @param anchor is the point of the panel that stays in place
+   */
+  private void zoom(int level, Point anchor) {
+    level = Math.max(FramePainter.MIN_LEVEL, Math.min(FramePainter.MAX_LEVEL, level));
+    if (level == this.level) {
+      return;
+    }
+    JViewport port = this.port();
+    Point view = port == null ? new Point() : port.getViewPosition();
+    double factor = Math.scalb(1.0, level - this.level);
+    this.level = level;
+    this.revalidate();
+    if (port != null) {
+      port.getParent().validate();
+      this.scrollTo((int) (anchor.x * factor) - (anchor.x - view.x),
+              (int) (anchor.y * factor) - (anchor.y - view.y));
+    }
+    this.repaint();
+  }
+
+  /**
+   * This method is used to scroll the panel so that the given point of it is at the top left
+   * corner of the scroll pane, as far as the panel allows.
+   *
+   * @param x is the x coordinate of the point
+   * @param y is the y coordinate of the point
+   */
+  private void scrollTo(int x, int y) {
+    JViewport port = this.port();
+    if (port == null) {
+      return;
+    }
+    Dimension view = port.getViewSize();
+    Dimension extent = port.getExtentSize();
+    port.setViewPosition(new Point(Math.max(0, Math.min(x, view.width - extent.width)),
+            Math.max(0, Math.min(y, view.height - extent.height))));
+  }
+
+  /**
+   * Returns the viewport of the scroll pane the panel is in.
+   *
+   * @return the viewport of the scroll pane, or null if the panel is not in one
+   */
+  private JViewport port() {
+    return (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+  }
+
+  /**
+   * Returns the key of a tile in the cache, made up of its zoom level, column, and row.
+   *
+   * @param level is the zoom level
+   * @param column is the column of the tile
+   * @param row is the row of the tile
+   * @return the key of the tile
+   */
+  private static long key(int level, int column, int row) {
+    return (long) (level - FramePainter.MIN_LEVEL) << 56 | (long) row << 28 | column;
+  }
+
+  /**
+   * Returns the zoom level of the tile with the given key in the cache.
+   *
+   * @param key is the key of the tile
+   * @return the zoom level of the tile
+   */
+  private static int level(long key) {
+    return (int) (key >>> 56) + FramePainter.MIN_LEVEL;
+  }
+
+  /**
+   * Returns the row of the tile with the given key in the cache.
+   *
+   * @param key is the key of the tile
+   * @return the row of the tile
+   */
+  private static int row(long key) {
+    return (int) (key >>> 28) & 0xFFFFFFF;
+  }
+
+  /**
+   * Returns the column of the tile with the given key in the cache.
+   *
+   * @param key is the key of the tile
+   * @return the column of the tile
+   */
+  private static int column(long key) {
+    return (int) key & 0xFFFFFFF;
+  }
+}
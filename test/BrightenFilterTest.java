@@ -5,8 +5,11 @@ import java.io.IOException;
 import model.ColorImage;
 import model.IImage;
 import model.ImageUtil;
+import model.PackedImage;
+import model.PackedPixel;
 import model.filter.AbstractBrightness;
 import model.filter.BrightenFilter;
+import model.filter.IFilter;
 import model.filter.LightType;
 
 import static org.junit.Assert.assertEquals;
@@ -104,4 +107,48 @@ public class BrightenFilterTest {
     assertEquals(255, im2.getPixel(50, 210).getGreen());
     assertEquals(255, im2.getPixel(50, 210).getBlue());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testApplyRow() throws IOException {
+    IImage im = ImageUtil.readPPM("res/example1.ppm");
+    int[] row = new int[im.getWidth()];
+    im.readRow(40, row);
+    for (LightType type : LightType.values()) {
+      IFilter bf = BrightenFilter.getInstance(type);
+      IImage copy = new PackedImage(im);
+      int[] filtered = row.clone();
+      bf.applyRow(40, 0, filtered, filtered.length);
+      for (int j = 0; j < im.getWidth(); j++) {
+        bf.apply(copy, 40, j);
+        assertEquals(PackedPixel.pack(copy.getPixel(40, j)), filtered[j]);
+      }
+    }
+  }
+
+  @Test
+  public void testGetInstance() {
+    assertEquals(BrightenFilter.getInstance(LightType.LUMA),
+            BrightenFilter.getInstance(LightType.LUMA));
+    assertEquals("brighten-intensity",
+            BrightenFilter.getInstance(LightType.INTENSITY).toString());
+  }
+
+  @Test
+  public void testLumaTable() {
+    IFilter bf = BrightenFilter.getInstance(LightType.LUMA);
+    int[] row = new int[256];
+    for (int r = 0; r < 256; r++) {
+      for (int g = 0; g < 256; g++) {
+        for (int b = 0; b < 256; b++) {
+          row[b] = PackedPixel.pack(r, g, b, 255);
+        }
+        bf.applyRow(0, 0, row, 256);
+        for (int b = 0; b < 256; b++) {
+          int luma = (int) ((0.2126 * r) + (0.7152 * g) + (0.0722 * b));
+          assertEquals(PackedPixel.pack(Math.min(r + luma, 255), Math.min(g + luma, 255),
+                  Math.min(b + luma, 255), 255), row[b]);
+        }
+      }
+    }
+  }
+}
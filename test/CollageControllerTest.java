@@ -1164,6 +1164,21 @@ public class CollageControllerTest {
     assertEquals(3, cc1.getModel().getImage().getWidth());
   }
 
+  @Test
+  public void testLoadProjectCompositesOnce() throws IOException {
+    StringBuilder out = new StringBuilder();
+    Features cc1 = new CollageControllerImpl(new CollageModel(), new CollageView(out),
+            new StringReader(""));
+    cc1.loadProjectCommand("res/proj2.collage");
+    ICanvas model = cc1.getModel();
+    assertEquals(255, model.getImage().getPixel(1, 1).getGreen());
+    assertEquals(119, model.getImage().getPixel(2, 2).getBlue());
+    // the canvas was composited by the load, so there is nothing left to composite
+    model.takeDirtyRegions();
+    model.updatePixels();
+    assertEquals(0, model.takeDirtyRegions().size());
+  }
+
   @Test
   public void testHelpCommand() throws IOException {
     Reader in = new StringReader(" ");
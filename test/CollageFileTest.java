@@ -0,0 +1,500 @@
+import org.junit.Test;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.CollageFile;
+import model.CollageModel;
+import model.ICanvas;
+import model.IImage;
+import model.ILayer;
+import model.IPixel;
+import model.ImageUtil;
+import model.PackedImage;
+import model.filter.BrightenFilter;
+import model.filter.Component;
+import model.filter.ComponentFilter;
+import model.filter.LightType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the functions and behavior of the CollageFile class.
+ */
+public class CollageFileTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWriteInvalidMaxValue() throws IOException {
+    CollageFile.write(new CollageModel(2, 2, "proj"), 0, "invalid.collage");
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    ICanvas m = new CollageModel(1, 2, "proj");
+    m.addLayerToCanvas(1, 2, "l1");
+    IImage im = new PackedImage(1, 2, 255, 255);
+    im.writeRow(0, new int[] {0xFF80FF00, 0x7F0A141E});
+    m.addImageToLayer("l1", im, 0, 0);
+    m.addFilter(ComponentFilter.getInstance(Component.RED), "l1");
+    Path path = this.temp();
+    CollageFile.write(m, 100, path.toString());
+    assertEquals("proj\n2 1\n100\n"
+                    + "l1 red-component\n50 100 0 100\n4 8 12 50\n",
+            new String(Files.readAllBytes(path), StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testReadText() throws IOException {
+    CollageFile file = CollageFile.read("res/proj2.collage");
+    assertEquals(CollageFile.TEXT, file.getVersion());
+    assertEquals("proj", file.getName());
+    assertEquals(3, file.getHeight());
+    assertEquals(3, file.getWidth());
+    assertEquals(255, file.getMaxValue());
+    List<CollageFile.Layer> layers = file.readLayers();
+    assertEquals(1, layers.size());
+    assertEquals("l1", layers.get(0).getName());
+    assertEquals("normal", layers.get(0).getFilter());
+    assertEquals(255, layers.get(0).getImage().getPixel(1, 1).getGreen());
+    assertEquals(119, layers.get(0).getImage().getPixel(1, 1).getBlue());
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    ICanvas m = this.project();
+    for (boolean compress : new boolean[] {false, true}) {
+      Path path = this.temp();
+      CollageFile.writeBinary(m, 100, path.toString(), compress);
+      CollageFile file = CollageFile.read(path.toString());
+      assertEquals(CollageFile.BINARY, file.getVersion());
+      assertEquals("binary", file.getName());
+      assertEquals(120, file.getHeight());
+      assertEquals(90, file.getWidth());
+      assertEquals(100, file.getMaxValue());
+      List<CollageFile.Layer> layers = file.readLayers();
+      assertEquals(2, layers.size());
+      assertEquals("l1", layers.get(0).getName());
+      assertEquals("brighten-luma", layers.get(0).getFilter());
+      assertEquals("l2", layers.get(1).getName());
+      assertEquals("green-component", layers.get(1).getFilter());
+      for (int k = 0; k < 2; k++) {
+        IImage expected = m.getLayers().get(k).getPreviousImage();
+        IImage actual = layers.get(k).getImage();
+        int[] expectedRow = new int[90];
+        int[] actualRow = new int[90];
+        for (int i = 0; i < 120; i++) {
+          expected.readRow(i, expectedRow);
+          actual.readRow(i, actualRow);
+          assertArrayEquals(expectedRow, actualRow);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompressedIsSmaller() throws IOException {
+    ICanvas m = this.project();
+    Path raw = this.temp();
+    Path compressed = this.temp();
+    CollageFile.writeBinary(m, 255, raw.toString(), false);
+    CollageFile.writeBinary(m, 255, compressed.toString(), true);
+    assertTrue(Files.size(compressed) < Files.size(raw));
+    assertTrue(Files.size(raw) > 2L * 120 * 90 * 4);
+  }
+
+  @Test
+  public void testReadBinaryTruncated() throws IOException {
+    Path path = this.temp();
+    CollageFile.writeBinary(this.project(), 255, path.toString(), false);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+    CollageFile file = CollageFile.read(path.toString());
+    try {
+      file.readLayers();
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("invalid entry for layer 'l2'"));
+    }
+  }
+
+  @Test
+  public void testWriteOverLoadedFile() throws IOException {
+    Path path = this.temp();
+    CollageFile.writeBinary(this.project(), 255, path.toString(), true);
+    ICanvas m = new CollageModel(120, 90, "binary");
+    for (CollageFile.Layer saved : CollageFile.read(path.toString()).readLayers()) {
+      m.addLayerToCanvas(120, 90, saved.getName(), saved.getImages().get(0));
+    }
+    CollageFile.writeBinary(m, 255, path.toString(), true);
+    List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+    int[] expectedRow = new int[90];
+    int[] actualRow = new int[90];
+    for (int k = 0; k < 2; k++) {
+      IImage expected = this.project().getLayers().get(k).getPreviousImage();
+      IImage actual = layers.get(k).getImage();
+      for (int i = 0; i < 120; i++) {
+        expected.readRow(i, expectedRow);
+        actual.readRow(i, actualRow);
+        assertArrayEquals(expectedRow, actualRow);
+      }
+    }
+  }
+
+  @Test
+  public void testSaveFilterChangeKeepsLayers() throws IOException {
+    Path dir = Files.createTempDirectory("collage-file");
+    dir.toFile().deleteOnExit();
+    String path = dir.resolve("binary.collage").toString();
+    ICanvas m = this.project();
+    System.setProperty("collage.projectFormat", "2");
+    try {
+      CollageFile saved = CollageFile.write(m, 255, path, null);
+      byte[] before = Files.readAllBytes(Paths.get(path));
+      m.addFilter(BrightenFilter.getInstance(LightType.VALUE), "l2");
+      CollageFile.write(m, 255, path, saved);
+      byte[] after = Files.readAllBytes(Paths.get(path));
+      assertEquals(before.length, after.length);
+      // only the header and layer table are written again, the stored layers are kept as
+      // they are from the offset of the first layer
+      int start = this.firstLayerOffset(after);
+      assertEquals(this.firstLayerOffset(before), start);
+      assertArrayEquals(Arrays.copyOfRange(before, start, before.length),
+              Arrays.copyOfRange(after, start, after.length));
+    } finally {
+      System.clearProperty("collage.projectFormat");
+    }
+    assertEquals("brighten-value", CollageFile.read(path).readLayers().get(1).getFilter());
+    assertEquals(1, dir.toFile().list().length);
+    Files.delete(Paths.get(path));
+  }
+
+  @Test
+  public void testSaveOnlyWritesChangedLayers() throws IOException {
+    Path path = this.temp();
+    System.setProperty("collage.projectFormat", "2");
+    try {
+      CollageFile.write(this.project(), 255, path.toString(), null);
+      CollageFile file = CollageFile.read(path.toString());
+      ICanvas m = new CollageModel(120, 90, "binary");
+      List<CountingSource> sources = new ArrayList<>();
+      for (CollageFile.Layer saved : file.readLayers()) {
+        sources.add(new CountingSource(saved.getImages().get(0)));
+        m.addLayerToCanvas(120, 90, saved.getName(), sources.get(sources.size() - 1));
+        m.getLayers().get(sources.size() - 1).applyFilter(
+                m.getFilterFromString(saved.getFilter(), saved.getName()));
+      }
+      file.track(m.getLayers());
+      // the layer is changed without compositing the canvas, which would load every layer
+      m.getLayers().get(1).addImageToLayer(new PackedImage(5, 5, 255, 255), 0, 0);
+      CollageFile.write(m, 255, path.toString(), file);
+      assertEquals(0, sources.get(0).getLoads());
+      assertEquals(1, sources.get(1).getLoads());
+
+      List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+      this.assertSameImage(this.project().getLayers().get(0).getPreviousImage(),
+              layers.get(0).getImage());
+      this.assertSameImage(m.getLayers().get(1).getPreviousImage(), layers.get(1).getImage());
+      assertEquals(0, sources.get(0).getLoads());
+    } finally {
+      System.clearProperty("collage.projectFormat");
+    }
+  }
+
+  @Test
+  public void testSaveAfterFileChangedWritesWholeFile() throws IOException {
+    Path path = this.temp();
+    ICanvas m = this.project();
+    System.setProperty("collage.projectFormat", "2");
+    System.setProperty("collage.projectCompression", "raw");
+    try {
+      CollageFile saved = CollageFile.write(m, 255, path.toString(), null);
+      long size = Files.size(path);
+      FileTime modified = Files.getLastModifiedTime(path);
+
+      // another project with the same layers is written over the file, with the same length
+      // and time, so only its content tells that it is not the saved file
+      ICanvas other = this.project();
+      other.addImageToLayer("l2", new PackedImage(5, 5, 255, 255), 0, 0);
+      other.addFilter(ComponentFilter.getInstance(Component.RED), "l2");
+      CollageFile.writeBinary(other, 255, path.toString(), false);
+      Files.setLastModifiedTime(path, modified);
+      assertEquals(size, Files.size(path));
+
+      m.addImageToLayer("l1", new PackedImage(5, 5, 255, 255), 0, 0);
+      CollageFile.write(m, 255, path.toString(), saved);
+    } finally {
+      System.clearProperty("collage.projectFormat");
+      System.clearProperty("collage.projectCompression");
+    }
+    List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+    for (int k = 0; k < 2; k++) {
+      this.assertSameImage(m.getLayers().get(k).getPreviousImage(), layers.get(k).getImage());
+    }
+  }
+
+  @Test
+  public void testSaveSnapshot() throws IOException {
+    Path path = this.temp();
+    Path whole = this.temp();
+    ICanvas m = this.project();
+    System.setProperty("collage.projectFormat", "2");
+    System.setProperty("collage.projectCompression", "raw");
+    try {
+      ICanvas snapshot = m.snapshot();
+      m.addImageToLayer("l1", new PackedImage(5, 5, 255, 255), 0, 0);
+      m.addFilter(BrightenFilter.getInstance(LightType.VALUE), "l2");
+      CollageFile saved = CollageFile.write(snapshot, 255, path.toString(), null);
+      List<CollageFile.Layer> layers = saved.readLayers();
+      this.assertSameImage(this.project().getLayers().get(0).getPreviousImage(),
+              layers.get(0).getImage());
+      assertEquals("green-component", layers.get(1).getFilter());
+
+      // the layers of a new snapshot are matched to the saved layers by name, so the unchanged
+      // layer is kept and the changed layer is appended after it
+      List<Integer> percents = new ArrayList<>();
+      CollageFile.write(m.snapshot(), 255, path.toString(), saved, percents::add);
+      CollageFile.writeBinary(m, 255, whole.toString(), false);
+      assertTrue(Files.size(path) > Files.size(whole));
+      assertEquals(Integer.valueOf(100), percents.get(percents.size() - 1));
+    } finally {
+      System.clearProperty("collage.projectFormat");
+      System.clearProperty("collage.projectCompression");
+    }
+    List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+    for (int k = 0; k < 2; k++) {
+      this.assertSameImage(m.getLayers().get(k).getPreviousImage(), layers.get(k).getImage());
+    }
+    assertEquals("brighten-value", layers.get(1).getFilter());
+  }
+
+  @Test
+  public void testRecipeRoundTrip() throws IOException {
+    Path image = this.image();
+    ICanvas m = this.recipe(image);
+    Path path = this.temp();
+    CollageFile.writeRecipe(m, 255, path.toString(), false, true);
+    CollageFile file = CollageFile.read(path.toString());
+    assertEquals(CollageFile.RECIPE, file.getVersion());
+    assertEquals("recipe", file.getName());
+    List<CollageFile.Layer> layers = file.readLayers();
+    assertEquals(2, layers.size());
+    assertEquals("screen", layers.get(1).getFilter());
+    assertEquals(2, layers.get(0).getImages().size());
+    assertEquals(image.toString(), layers.get(0).getImages().get(0).getFilename());
+    assertEquals(new Point(3, 2), layers.get(0).getPositions().get(0));
+    assertEquals(new Point(0, 5), layers.get(0).getPositions().get(1));
+
+    ICanvas loaded = new CollageModel(10, 12, "recipe");
+    ArrayList<ILayer> rebuilt = new ArrayList<>();
+    for (CollageFile.Layer saved : layers) {
+      ILayer layer = loaded.createLayer(10, 12, saved.getName(), saved.getImages(),
+              saved.getPositions());
+      layer.applyFilter(loaded.getFilterFromString(saved.getFilter(), saved.getName()));
+      rebuilt.add(layer);
+    }
+    loaded.addLayersToCanvas(rebuilt);
+    assertEquals(m.getProjectStructure(), loaded.getProjectStructure());
+    this.assertSameImage(m.getImage(), loaded.getImage());
+    for (int k = 0; k < 2; k++) {
+      this.assertSameImage(m.getLayers().get(k).getPreviousImage(), layers.get(k).getImage());
+    }
+  }
+
+  @Test
+  public void testRecipeEmbedsEachImageOnce() throws IOException {
+    Path image = this.image();
+    ICanvas m = this.recipe(image);
+    Path referenced = this.temp();
+    Path embedded = this.temp();
+    CollageFile.writeRecipe(m, 255, referenced.toString(), false, true);
+    CollageFile.writeRecipe(m, 255, embedded.toString(), true, true);
+    assertEquals(Files.size(referenced) + Files.size(image), Files.size(embedded));
+
+    Files.delete(image);
+    List<CollageFile.Layer> layers = CollageFile.read(embedded.toString()).readLayers();
+    for (int k = 0; k < 2; k++) {
+      this.assertSameImage(m.getLayers().get(k).getPreviousImage(), layers.get(k).getImage());
+    }
+  }
+
+  @Test
+  public void testResaveRecipeLoadsOnlyStoredImages() throws IOException {
+    Path image = this.image();
+    ICanvas m = this.recipe(image);
+    Path path = this.temp();
+    CollageFile.writeRecipe(m, 255, path.toString(), false, true);
+    ArrayList<ILayer> rebuilt = new ArrayList<>();
+    for (CollageFile.Layer saved : CollageFile.read(path.toString()).readLayers()) {
+      rebuilt.add(m.createLayer(10, 12, saved.getName(), saved.getImages(),
+              saved.getPositions()));
+    }
+    // the canvas is not composited, so the layers have not been loaded yet
+    ICanvas loaded = new CollageModel(10, 12, new IPixel[10][12], rebuilt);
+    CollageFile.writeRecipe(loaded, 255, path.toString(), false, true);
+
+    // the planes of the second layer were loaded before the file was replaced, while the
+    // image file of the first layer is still only referenced, so it is read when it is needed
+    this.assertSameImage(m.getLayers().get(1).getPreviousImage(),
+            loaded.getLayers().get(1).getPreviousImage());
+    Files.delete(image);
+    try {
+      loaded.getLayers().get(0).getPreviousImage();
+      fail("expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("not found"));
+    }
+  }
+
+  @Test
+  public void testRecipeChangedImage() throws IOException {
+    Path image = this.image();
+    Path path = this.temp();
+    CollageFile.writeRecipe(this.recipe(image), 255, path.toString(), false, true);
+    Files.write(image, Files.readString(image, StandardCharsets.US_ASCII)
+            .replace("15  0 15", " 0 15 15").getBytes(StandardCharsets.US_ASCII));
+    List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+    try {
+      layers.get(0).getImage();
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("has changed since the project was saved"));
+    }
+  }
+
+  @Test
+  public void testRecipeEmbedsImageChangedSinceAdded() throws IOException {
+    Path image = this.image();
+    ICanvas m = this.recipe(image);
+    Files.write(image, Files.readString(image, StandardCharsets.US_ASCII)
+            .replace("15  0 15", " 0 15 15").getBytes(StandardCharsets.US_ASCII));
+    Path path = this.temp();
+    CollageFile.writeRecipe(m, 255, path.toString(), false, true);
+
+    // the file no longer holds the image that was added, so the planes of the image are stored
+    List<CollageFile.Layer> layers = CollageFile.read(path.toString()).readLayers();
+    assertNull(layers.get(0).getImages().get(0).getFilename());
+    this.assertSameImage(m.getLayers().get(0).getPreviousImage(), layers.get(0).getImage());
+  }
+
+  /**
+   * Creates a project with a filtered layer under a partly transparent layer.
+   *
+   * @return the project
+   * @throws IOException if an image cannot be read
+   */
+  private ICanvas project() throws IOException {
+    ICanvas m = new CollageModel(120, 90, "binary");
+    m.addLayerToCanvas(120, 90, "l1");
+    m.addLayerToCanvas(120, 90, "l2");
+    m.addImageToLayer("l1", new PackedImage(ImageUtil.readPPM("res/example1.ppm")), 0, 0);
+    m.addFilter(BrightenFilter.getInstance(LightType.LUMA), "l1");
+    IImage part = new PackedImage(30, 40, 255, 255);
+    part.writeRow(3, new int[40]);
+    m.addImageToLayer("l2", part, 20, 10);
+    m.addFilter(ComponentFilter.getInstance(Component.GREEN), "l2");
+    return m;
+  }
+
+  /**
+   * Creates a project with an image file added twice to a layer, under a layer with an image
+   * that was not read from a file.
+   *
+   * @param image is the path of the image file
+   * @return the project
+   * @throws IOException if the image cannot be read
+   */
+  private ICanvas recipe(Path image) throws IOException {
+    ICanvas m = new CollageModel(10, 12, "recipe");
+    m.addLayerToCanvas(10, 12, "l1");
+    m.addLayerToCanvas(10, 12, "l2");
+    for (int[] position : new int[][] {{2, 3}, {5, 0}}) {
+      IImage im = m.createImage(image.toString());
+      im.updateWithMaxValue();
+      m.addImageToLayer("l1", im, position[0], position[1]);
+    }
+    IImage part = new PackedImage(3, 4, 255, 255);
+    part.writeRow(1, new int[] {0xFF102030, 0x80FFFFFF, 0, 0xFF00FF00});
+    m.addImageToLayer("l2", part, 6, 7);
+    m.addFilter(m.getFilterFromString("screen", "l2"), "l2");
+    return m;
+  }
+
+  /**
+   * Copies an example image to a temporary .ppm file that is deleted on exit.
+   *
+   * @return the path of the image file
+   * @throws IOException if the file cannot be created
+   */
+  private Path image() throws IOException {
+    Path path = Files.createTempFile("collage-file", ".ppm");
+    path.toFile().deleteOnExit();
+    Files.copy(Paths.get("res/example2.ppm"), path, StandardCopyOption.REPLACE_EXISTING);
+    return path;
+  }
+
+  /**
+   * Returns the offset of the stored pixels of the first layer of a version 2 file, as it is
+   * given in the layer table of the file.
+   *
+   * @param file holds the bytes of the file
+   * @return the offset of the first layer
+   * @throws IOException if the layer table cannot be read
+   */
+  private int firstLayerOffset(byte[] file) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(file));
+    // the magic number, version, size and maximum value, then the name of the project
+    in.readFully(new byte[8 + 4 * 4]);
+    in.readUTF();
+    assertTrue(in.readInt() > 0);
+    // the name, filter and encoding of the first layer come before its offset
+    in.readUTF();
+    in.readUTF();
+    in.readByte();
+    return Math.toIntExact(in.readLong());
+  }
+
+  /**
+   * Asserts that two images have the same size and pixels.
+   *
+   * @param expected is the expected image
+   * @param actual is the actual image
+   */
+  private void assertSameImage(IImage expected, IImage actual) {
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.getWidth(), actual.getWidth());
+    int[] expectedRow = new int[expected.getWidth()];
+    int[] actualRow = new int[actual.getWidth()];
+    for (int i = 0; i < expected.getHeight(); i++) {
+      expected.readRow(i, expectedRow);
+      actual.readRow(i, actualRow);
+      assertArrayEquals(expectedRow, actualRow);
+    }
+  }
+
+  /**
+   * Creates an empty temporary file that is deleted on exit.
+   *
+   * @return the path of the file
+   * @throws IOException if the file cannot be created
+   */
+  private Path temp() throws IOException {
+    Path path = Files.createTempFile("collage-file", ".collage");
+    path.toFile().deleteOnExit();
+    return path;
+  }
+}
@@ -1,7 +1,10 @@
 import org.junit.Test;
 
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import model.CollageModel;
 import model.ColorImage;
@@ -11,6 +14,8 @@ import model.IImage;
 import model.ILayer;
 import model.IPixel;
 import model.ImageLayer;
+import model.PackedImage;
+import model.PackedPixel;
 import model.ImageUtil;
 import model.filter.BrightenFilter;
 import model.filter.Component;
@@ -342,6 +347,70 @@ public class CollageModelTest {
     m.getFilterFromString("multiplyfilter", "l1").toString();
   }
 
+  @Test
+  public void testGetPrevImCache() throws IOException {
+    ICanvas m = new CollageModel(4, 4, "test");
+    m.addLayerToCanvas(4, 4, "l1");
+    m.addLayerToCanvas(4, 4, "l2");
+    m.addLayerToCanvas(4, 4, "l3");
+    IImage below2 = m.getPrevIm("l2");
+    IImage below3 = m.getPrevIm("l3");
+    assertEquals(below2, m.getPrevIm("l2"));
+    assertEquals(below3, m.getPrevIm("l3"));
+    m.getLayers().get(0).addImageToLayer(
+            new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()), 0, 0);
+    assertEquals(255, below3.getPixel(3, 0).getGreen());
+    assertEquals(15, m.getPrevIm("l3").getPixel(3, 0).getRed());
+    assertEquals(0, m.getPrevIm("l3").getPixel(3, 0).getGreen());
+    below2 = m.getPrevIm("l2");
+    m.getLayers().get(1).applyFilter(ComponentFilter.getInstance(Component.RED));
+    assertEquals(below2, m.getPrevIm("l2"));
+    assertEquals(15, m.getPrevIm("l3").getPixel(3, 0).getRed());
+  }
+
+  @Test
+  public void testTakeDirtyRegions() throws IOException {
+    ICanvas m = new CollageModel(100, 100, "test");
+    assertEquals(new Rectangle(0, 0, 100, 100), m.takeDirtyRegions().get(0));
+    m.addLayerToCanvas(100, 100, "l1");
+    m.addLayerToCanvas(100, 100, "l2");
+    assertEquals(0, m.takeDirtyRegions().size());
+    m.addImageToLayer("l2", new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            20, 10);
+    List<Rectangle> regions = m.takeDirtyRegions();
+    assertEquals(1, regions.size());
+    assertEquals(new Rectangle(10, 20, 4, 4), regions.get(0));
+    assertEquals(15, m.getImage().getPixel(23, 10).getRed());
+    assertEquals(255, m.getImage().getPixel(24, 10).getRed());
+    m.updatePixels();
+    assertEquals(0, m.takeDirtyRegions().size());
+    m.addFilter(ComponentFilter.getInstance(Component.GREEN), "l1");
+    assertEquals(new Rectangle(0, 0, 100, 100), m.takeDirtyRegions().get(0));
+    assertEquals(15, m.getImage().getPixel(23, 10).getRed());
+  }
+
+  @Test
+  public void testTopDownComposite() {
+    ICanvas m = new CollageModel(4, 6, "test");
+    m.addLayerToCanvas(4, 6, "bottom");
+    m.addLayerToCanvas(2, 3, "small");
+    m.addLayerToCanvas(4, 6, "top");
+    m.addImageToLayer("bottom", new ColorImage(4, 6, 255, 255), 0, 0);
+    m.getLayers().get(0).applyFilter(ComponentFilter.getInstance(Component.RED));
+    m.addImageToLayer("small", new ColorImage(2, 3, 255, 255), 0, 0);
+    m.getLayers().get(1).applyFilter(ComponentFilter.getInstance(Component.GREEN));
+    m.addImageToLayer("top", new ColorImage(2, 6, 255, 255), 2, 0);
+    m.getLayers().get(2).applyFilter(ComponentFilter.getInstance(Component.BLUE));
+    m.updatePixels();
+    assertEquals(255, m.getImage().getPixel(0, 0).getGreen());
+    assertEquals(0, m.getImage().getPixel(0, 0).getRed());
+    assertEquals(255, m.getImage().getPixel(1, 3).getRed());
+    assertEquals(255, m.getImage().getPixel(1, 5).getRed());
+    assertEquals(255, m.getImage().getPixel(2, 0).getBlue());
+    assertEquals(0, m.getImage().getPixel(2, 0).getRed());
+    assertEquals(255, m.getImage().getPixel(3, 5).getBlue());
+  }
+
   @Test
   public void testProjStruct() throws IOException {
     ICanvas m = new CollageModel(4, 4, "test");
@@ -423,4 +492,121 @@ public class CollageModelTest {
     m.addFilter(filter, "test layer");
     assertEquals("blue-component", m.getLayers().get(0).getFilter().toString());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testHiddenLayerNotLoaded() throws IOException {
+    ICanvas m = new CollageModel(2, 2, "proj");
+    CountingSource bottom = CountingSource.filled(0xFF0000FF);
+    CountingSource top = CountingSource.filled(0xFFFF0000);
+    m.addLayerToCanvas(2, 2, "bottom", bottom);
+    m.addLayerToCanvas(2, 2, "top", top);
+    assertEquals(0, top.getLoads());
+    m.updatePixels();
+    assertEquals(255, m.getImage().getPixel(1, 1).getRed());
+    assertEquals(0, m.getImage().getPixel(1, 1).getBlue());
+    assertEquals(1, top.getLoads());
+    assertEquals(0, bottom.getLoads());
+  }
+
+  @Test
+  public void testAddLayersToCanvas() throws IOException {
+    ICanvas expected = new CollageModel(2, 2, "proj");
+    expected.addLayerToCanvas(2, 2, "bottom");
+    expected.addImageToLayer("bottom", CountingSource.filled(0xFF3060F0).load(), 0, 0);
+    expected.addLayerToCanvas(2, 2, "top");
+    expected.addImageToLayer("top", CountingSource.filled(0xFF102030).load(), 0, 0);
+    expected.addFilter(expected.getFilterFromString("difference", "top"), "top");
+
+    ICanvas m = new CollageModel(2, 2, "proj");
+    List<ILayer> layers = new ArrayList<>();
+    layers.add(m.createLayer(2, 2, "bottom", CountingSource.filled(0xFF3060F0)));
+    layers.add(m.createLayer(2, 2, "top", CountingSource.filled(0xFF102030)));
+    layers.get(1).applyFilter(m.getFilterFromString("difference", "top"));
+    m.addLayersToCanvas(layers);
+    assertEquals(2, m.getLayers().size());
+    assertEquals("difference", m.getLayers().get(1).getFilter().toString());
+    assertEquals(expected.getImage().getPixel(1, 1).getRed(), m.getImage().getPixel(1, 1).getRed());
+    assertEquals(0x20, m.getImage().getPixel(1, 1).getRed());
+    assertEquals(0x40, m.getImage().getPixel(1, 1).getGreen());
+    assertEquals(0xC0, m.getImage().getPixel(1, 1).getBlue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddLayersToCanvasSameName() {
+    ICanvas m = new CollageModel(2, 2, "proj");
+    m.addLayerToCanvas(2, 2, "l1");
+    List<ILayer> layers = new ArrayList<>();
+    layers.add(m.createLayer(2, 2, "l1", CountingSource.filled(0xFF102030)));
+    m.addLayersToCanvas(layers);
+  }
+
+  /**
+   * Creates a model of the given size with one layer holding an image whose red component is
+   * 10 times its column and whose green component is 10 times its row.
+   */
+  private static ICanvas gradientModel(int height, int width) {
+    int[] argb = new int[height * width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        argb[i * width + j] = PackedPixel.pack(j * 10, i * 10, 50, 255);
+      }
+    }
+    ICanvas model = new CollageModel(height, width, "preview");
+    model.addLayerToCanvas(height, width, "l1");
+    model.addImageToLayer("l1", new PackedImage(height, width, 255, argb), 0, 0);
+    model.updatePixels();
+    return model;
+  }
+
+  @Test
+  public void testGetPreview() {
+    ICanvas model = gradientModel(5, 5);
+    assertEquals(model.getImage(), model.getPreview(0));
+    IImage half = model.getPreview(1);
+    assertEquals(3, half.getHeight());
+    assertEquals(3, half.getWidth());
+    // the block at row 2 and column 4 is cut off by the right edge, so red is 40 and green is
+    // the average of 20 and 30
+    IPixel pixel = half.getPixel(1, 2);
+    assertEquals(40, pixel.getRed());
+    assertEquals(25, pixel.getGreen());
+    assertEquals(50, pixel.getBlue());
+    // the bottom right pixel of the canvas has no block around it
+    assertEquals(40, half.getPixel(2, 2).getRed());
+    assertEquals(40, half.getPixel(2, 2).getGreen());
+    IImage eighth = model.getPreview(3);
+    assertEquals(1, eighth.getHeight());
+    assertEquals(1, eighth.getWidth());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPreviewLevel() {
+    gradientModel(5, 5).getPreview(4);
+  }
+
+  @Test
+  public void testPreviewFollowsUpdates() {
+    ICanvas model = gradientModel(37, 45);
+    // the previews are built first, and then only the changed region is made again
+    model.getPreview(3);
+    int[] argb = new int[42];
+    Arrays.fill(argb, PackedPixel.pack(200, 0, 0, 255));
+    IImage image = new PackedImage(6, 7, 255, argb);
+    model.addImageToLayer("l1", image, 9, 13);
+    model.updatePixels();
+    assertEquals(200, model.getPreview(1).getPixel(5, 7).getRed());
+    ICanvas fresh = gradientModel(37, 45);
+    fresh.addImageToLayer("l1", image, 9, 13);
+    fresh.updatePixels();
+    for (int level = 1; level <= 3; level++) {
+      IImage kept = model.getPreview(level);
+      IImage built = fresh.getPreview(level);
+      for (int i = 0; i < built.getHeight(); i++) {
+        for (int j = 0; j < built.getWidth(); j++) {
+          assertEquals(PackedPixel.pack(built.getPixel(i, j)),
+                  PackedPixel.pack(kept.getPixel(i, j)));
+        }
+      }
+    }
+  }
+}
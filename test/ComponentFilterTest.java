@@ -5,6 +5,7 @@ import java.io.IOException;
 import model.ColorImage;
 import model.IImage;
 import model.ImageUtil;
+import model.PackedPixel;
 import model.filter.Component;
 import model.filter.ComponentFilter;
 import model.filter.IFilter;
@@ -90,4 +91,14 @@ public class ComponentFilterTest {
     IFilter cf3 = new ComponentFilter(Component.BLUE);
     assertEquals("blue-component", cf3.toString());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testApplyRow() {
+    int[] row = new int[] {PackedPixel.pack(10, 20, 30, 255), PackedPixel.pack(40, 50, 60, 0),
+        PackedPixel.pack(70, 80, 90, 100)};
+    ComponentFilter.getInstance(Component.BLUE).applyRow(3, 5, row, 3);
+    assertEquals(PackedPixel.pack(0, 0, 30, 255), row[0]);
+    assertEquals(PackedPixel.pack(40, 50, 60, 0), row[1]);
+    assertEquals(PackedPixel.pack(0, 0, 90, 255), row[2]);
+  }
+}
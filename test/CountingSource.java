@@ -0,0 +1,98 @@
+import java.io.IOException;
+
+import model.IImage;
+import model.ImageSource;
+import model.ImageUtil;
+import model.PackedImage;
+
+/**
+ * This class represents a source of an image for tests, which loads the image of another source
+ * and counts how many times it is loaded.
+ */
+class CountingSource implements ImageSource {
+  private final ImageSource source;
+  private int loads;
+
+  /**
+   * Constructs a source that loads the image of the given source.
+   *
+   * @param source of the image
+   */
+  CountingSource(ImageSource source) {
+    this.source = source;
+  }
+
+  /**
+   * Creates a source of the 3 by 3 image res/example2.ppm.
+   *
+   * @return the source of the image
+   */
+  static CountingSource example() {
+    return new CountingSource(new ImageSource() {
+      @Override
+      public int getHeight() {
+        return 3;
+      }
+
+      @Override
+      public int getWidth() {
+        return 3;
+      }
+
+      @Override
+      public IImage load() throws IOException {
+        return ImageUtil.readPPM("res/example2.ppm");
+      }
+    });
+  }
+
+  /**
+   * Creates a source of a 2 by 2 image whose pixels are all the given color.
+   *
+   * @param argb is the packed ARGB value of the pixels
+   * @return the source of the image
+   */
+  static CountingSource filled(int argb) {
+    return new CountingSource(new ImageSource() {
+      @Override
+      public int getHeight() {
+        return 2;
+      }
+
+      @Override
+      public int getWidth() {
+        return 2;
+      }
+
+      @Override
+      public IImage load() {
+        return new PackedImage(2, 2, 255, new int[] {argb, argb, argb, argb});
+      }
+    });
+  }
+
+  /**
+   * Returns how many times the image has been loaded from this source.
+   *
+   * @return the number of loads
+   */
+  int getLoads() {
+    return this.loads;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.source.getHeight();
+  }
+
+  @Override
+  public int getWidth() {
+    return this.source.getWidth();
+  }
+
+  @Override
+  public IImage load() throws IOException {
+    this.loads++;
+    return this.source.load();
+  }
+}
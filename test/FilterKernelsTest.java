@@ -0,0 +1,83 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.PackedPixel;
+import model.filter.Component;
+import model.filter.FilterKernels;
+import model.filter.LightType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the functions and behavior of the FilterKernels implementations.
+ */
+public class FilterKernelsTest {
+
+  @Test
+  public void testScalarBrightness() {
+    int[] row = new int[] {PackedPixel.pack(10, 100, 200, 255), PackedPixel.pack(1, 2, 3, 0)};
+    FilterKernels.scalar().adjustBrightness(row, 0, 2, LightType.VALUE, -1);
+    assertEquals(PackedPixel.pack(0, 0, 0, 255), row[0]);
+    assertEquals(PackedPixel.pack(1, 2, 3, 0), row[1]);
+  }
+
+  @Test
+  public void testScalarDifference() {
+    int[] row = new int[] {PackedPixel.pack(10, 100, 200, 0)};
+    FilterKernels.scalar().difference(row, new int[] {PackedPixel.pack(30, 100, 0, 255)}, 0, 1);
+    assertEquals(PackedPixel.pack(20, 0, 200, 0), row[0]);
+  }
+
+  @Test
+  public void testDefaultMatchesScalar() {
+    Random random = new Random(42);
+    int[] pixels = new int[1003];
+    int[] background = new int[pixels.length];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt();
+      background[i] = random.nextInt();
+    }
+    pixels[5] &= 0x00FFFFFF;
+    FilterKernels kernels = FilterKernels.getDefault();
+    for (LightType type : LightType.values()) {
+      for (int direction = -1; direction <= 1; direction += 2) {
+        int[] expected = pixels.clone();
+        int[] actual = pixels.clone();
+        FilterKernels.scalar().adjustBrightness(expected, 3, 997, type, direction);
+        kernels.adjustBrightness(actual, 3, 997, type, direction);
+        assertArrayEquals(expected, actual);
+      }
+    }
+    for (Component component : Component.values()) {
+      int[] expected = pixels.clone();
+      int[] actual = pixels.clone();
+      FilterKernels.scalar().keepComponent(expected, 1, 1000, component);
+      kernels.keepComponent(actual, 1, 1000, component);
+      assertArrayEquals(expected, actual);
+    }
+    int[] expected = pixels.clone();
+    int[] actual = pixels.clone();
+    FilterKernels.scalar().difference(expected, background, 0, pixels.length);
+    kernels.difference(actual, background, 0, pixels.length);
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void testDefaultLumaMatchesScalar() {
+    int[] expected = new int[256];
+    int[] actual = new int[256];
+    for (int r = 0; r < 256; r++) {
+      for (int g = 0; g < 256; g++) {
+        for (int b = 0; b < 256; b++) {
+          expected[b] = PackedPixel.pack(r, g, b, 255);
+        }
+        System.arraycopy(expected, 0, actual, 0, 256);
+        FilterKernels.scalar().adjustBrightness(expected, 0, 256, LightType.LUMA, -1);
+        FilterKernels.getDefault().adjustBrightness(actual, 0, 256, LightType.LUMA, -1);
+        assertArrayEquals(expected, actual);
+      }
+    }
+  }
+}
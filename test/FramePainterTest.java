@@ -0,0 +1,103 @@
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import model.IImage;
+import model.PackedImage;
+import model.PackedPixel;
+import view.FramePainter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the functions and behavior of the FramePainter class.
+ */
+public class FramePainterTest {
+
+  private IImage canvas() {
+    int[] argb = new int[4 * 6];
+    for (int i = 0; i < argb.length; i++) {
+      argb[i] = PackedPixel.pack(i * 10, 255 - i * 10, 100, 255);
+    }
+    return new PackedImage(4, 6, 255, argb);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor() {
+    new FramePainter(0);
+  }
+
+  @Test
+  public void testPaintWhole() {
+    BufferedImage frame = new FramePainter(255).paint(this.canvas());
+    assertEquals(6, frame.getWidth());
+    assertEquals(4, frame.getHeight());
+    // row 2, column 3 is pixel 15
+    assertEquals(150 << 16 | 105 << 8 | 100, frame.getRGB(3, 2) & 0xFFFFFF);
+  }
+
+  @Test
+  public void testPaintRegionScaled() {
+    BufferedImage frame = new BufferedImage(6, 4, BufferedImage.TYPE_INT_RGB);
+    Rectangle area = new FramePainter(1).paint(this.canvas(), new Rectangle(4, 1, 5, 5), frame,
+        () -> false);
+    assertEquals(new Rectangle(4, 1, 2, 3), area);
+    // with a max value of 1, each component is shown as either 0 or 255
+    assertEquals(0x00FF00, frame.getRGB(4, 1) & 0xFFFFFF);
+    assertEquals(0xFF0000, frame.getRGB(5, 3) & 0xFFFFFF);
+    assertEquals(0, frame.getRGB(3, 1) & 0xFFFFFF);
+  }
+
+  @Test
+  public void testPaintCancelled() {
+    BufferedImage frame = new BufferedImage(6, 4, BufferedImage.TYPE_INT_RGB);
+    int[] rows = new int[1];
+    Rectangle area = new FramePainter(255).paint(this.canvas(), new Rectangle(0, 0, 6, 4), frame,
+        () -> rows[0]++ == 2);
+    assertNull(area);
+    assertEquals(0, frame.getRGB(0, 2) & 0xFFFFFF);
+    assertEquals(10 << 16 | 245 << 8 | 100, frame.getRGB(1, 0) & 0xFFFFFF);
+  }
+
+  @Test
+  public void testTileGeometry() {
+    assertEquals(256, FramePainter.tileSpan(0));
+    assertEquals(32, FramePainter.tileSpan(3));
+    assertEquals(8192, FramePainter.tileSpan(-5));
+    assertEquals(new Dimension(2500, 1251), FramePainter.scaledSize(10000, 5001, -2));
+    assertEquals(new Dimension(400, 200), FramePainter.scaledSize(100, 50, 2));
+    assertEquals(new Rectangle(512, 0, 88, 256), FramePainter.tileRegion(0, 2, 0, 600, 300));
+    assertEquals(new Rectangle(2, 0, 3, 2),
+        FramePainter.tilesOf(new Rectangle(600, 10, 500, 300), 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTileLevelOutOfRange() {
+    FramePainter.tileSpan(FramePainter.MAX_LEVEL + 1);
+  }
+
+  @Test
+  public void testPaintTile() {
+    FramePainter painter = new FramePainter(255);
+    BufferedImage whole = painter.paint(this.canvas());
+    // zoomed in, each pixel of the canvas is shown as 4 by 4 pixels
+    BufferedImage in = painter.paintTile(this.canvas(), 2, 0, 0, () -> false);
+    assertEquals(24, in.getWidth());
+    assertEquals(16, in.getHeight());
+    assertEquals(whole.getRGB(3, 2), in.getRGB(13, 11));
+    // zoomed out, every other pixel of every other row is shown
+    BufferedImage out = painter.paintTile(this.canvas(), -1, 0, 0, () -> false);
+    assertEquals(3, out.getWidth());
+    assertEquals(2, out.getHeight());
+    assertEquals(whole.getRGB(4, 2), out.getRGB(2, 1));
+    assertNull(painter.paintTile(this.canvas(), 0, 0, 0, () -> true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPaintTileOutside() {
+    new FramePainter(255).paintTile(this.canvas(), 0, 1, 0, () -> false);
+  }
+}
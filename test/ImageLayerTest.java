@@ -1,5 +1,6 @@
 import org.junit.Test;
 
+import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.List;
 
@@ -10,10 +11,12 @@ import model.ILayer;
 import model.IPixel;
 import model.ImageLayer;
 import model.ImageUtil;
+import model.TiledImage;
 import model.filter.BrightenFilter;
 import model.filter.Component;
 import model.filter.ComponentFilter;
 import model.filter.DarkenFilter;
+import model.filter.IFilter;
 import model.filter.LightType;
 import model.filter.NormalFilter;
 
@@ -290,4 +293,111 @@ public class ImageLayerTest {
     assertEquals(7, il1.getImage().getPixel(1,1).getBlue());
     assertEquals(15, il1.getImage().getPixel(1,1).getGreen());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testAddImageAfterFilter() throws IOException {
+    ImageLayer layer = new ImageLayer(3, 3, "layer");
+    layer.applyFilter(ComponentFilter.getInstance(Component.GREEN));
+    layer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            0, 0);
+    assertEquals(0, layer.getImage().getPixel(1, 1).getRed());
+    assertEquals(0, layer.getImage().getPixel(1, 1).getBlue());
+    assertEquals(15, layer.getImage().getPixel(1, 1).getGreen());
+    assertEquals(7, layer.getPreviousPixels()[1][1].getBlue());
+    layer.applyFilter(new NormalFilter());
+    assertEquals(7, layer.getImage().getPixel(1, 1).getBlue());
+  }
+
+  @Test
+  public void testTakeDirtyRegions() throws IOException {
+    ImageLayer layer = new ImageLayer(3, 5, "layer");
+    assertEquals(0, layer.takeDirtyRegions().size());
+    layer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            1, 2);
+    assertEquals(new Rectangle(2, 1, 3, 2), layer.takeDirtyRegions().get(0));
+    assertEquals(0, layer.takeDirtyRegions().size());
+    layer.applyFilter(new NormalFilter());
+    assertEquals(new Rectangle(0, 0, 5, 3), layer.takeDirtyRegions().get(0));
+  }
+
+  @Test
+  public void testLazyLayer() {
+    CountingSource source = CountingSource.example();
+    ImageLayer layer = new ImageLayer(3, 3, "layer", source);
+    assertEquals(new Rectangle(0, 0, 3, 3), layer.takeDirtyRegions().get(0));
+    layer.applyFilter(ComponentFilter.getInstance(Component.GREEN));
+    assertEquals(1, layer.getImages().size());
+    assertEquals(3, layer.getHeight());
+    assertEquals(0, source.getLoads());
+    assertEquals(0, layer.getImage().getPixel(1, 1).getBlue());
+    assertEquals(15, layer.getImage().getPixel(1, 1).getGreen());
+    assertEquals(7, layer.getPreviousImage().getPixel(1, 1).getBlue());
+    assertEquals(1, source.getLoads());
+  }
+
+  @Test
+  public void testSnapshot() throws IOException {
+    ImageLayer layer = new ImageLayer(3, 3, "layer");
+    layer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            0, 0);
+    ILayer snapshot = layer.snapshot();
+    assertEquals(7, snapshot.getPreviousImage().getPixel(1, 1).getBlue());
+    layer.applyFilter(ComponentFilter.getInstance(Component.GREEN));
+    layer.addImageToLayer(new ColorImage(3, 3, 255, 255), 0, 0);
+    assertEquals(0, layer.getImage().getPixel(1, 1).getBlue());
+    assertEquals(255, layer.getPreviousImage().getPixel(1, 1).getBlue());
+    assertEquals(7, snapshot.getPreviousImage().getPixel(1, 1).getBlue());
+    assertEquals(7, snapshot.getImage().getPixel(1, 1).getBlue());
+    assertEquals("normal", snapshot.getFilter().toString());
+    assertEquals(1, snapshot.getImages().size());
+    assertEquals(1, snapshot.getContentGeneration());
+  }
+
+  @Test
+  public void testLazySnapshotLoadsOnce() {
+    CountingSource source = CountingSource.example();
+    ImageLayer layer = new ImageLayer(3, 3, "layer", source);
+    ILayer snapshot = layer.snapshot();
+    assertEquals(0, source.getLoads());
+    assertEquals(7, snapshot.getPreviousImage().getPixel(1, 1).getBlue());
+    layer.addImageToLayer(new ColorImage(3, 3, 255, 255), 0, 0);
+    assertEquals(255, layer.getPreviousImage().getPixel(1, 1).getBlue());
+    assertEquals(7, snapshot.getPreviousImage().getPixel(1, 1).getBlue());
+    assertEquals(1, source.getLoads());
+  }
+
+  @Test
+  public void testFilterWithOnlyApply() throws IOException {
+    ImageLayer layer = new ImageLayer(3, 3, "layer");
+    layer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            0, 0);
+    // a filter that swaps the red and blue components of a pixel, through the pixels of the
+    // image, and is applied to rows of the layer by the default applyRow
+    layer.applyFilter(new IFilter() {
+      @Override
+      public void apply(IImage image, int row, int col) {
+        IPixel pixel = image.getPixels()[row][col];
+        image.setPixel(row, col, new ColorPixel(pixel.getBlue(), pixel.getGreen(),
+                pixel.getRed(), pixel.getAlpha()));
+      }
+    });
+    assertEquals(7, layer.getImage().getPixel(1, 1).getRed());
+    assertEquals(15, layer.getImage().getPixel(1, 1).getGreen());
+    assertEquals(0, layer.getImage().getPixel(1, 1).getBlue());
+  }
+
+  @Test
+  public void testFilterOnlyOccupiedTiles() throws IOException {
+    ImageLayer layer = new ImageLayer(300, 300, "layer");
+    layer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example2.ppm").getPixels()),
+            200, 140);
+    layer.applyFilter(ComponentFilter.getInstance(Component.GREEN));
+    assertEquals(1, ((TiledImage) layer.getImage()).countOccupiedTiles());
+    assertEquals(15, layer.getImage().getPixel(201, 141).getGreen());
+    assertEquals(0, layer.getImage().getPixel(201, 141).getBlue());
+    assertEquals(0, layer.getImage().getPixel(10, 10).getAlpha());
+    layer.revertToOriginal();
+    assertEquals(7, layer.getImage().getPixel(201, 141).getBlue());
+    assertEquals(1, ((TiledImage) layer.getPreviousImage()).countOccupiedTiles());
+  }
+}
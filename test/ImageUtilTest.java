@@ -1,8 +1,19 @@
 import org.junit.Test;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.imageio.ImageIO;
 
 import model.IImage;
+import model.ImageUtil;
+import model.PackedImage;
 
 import static model.ImageUtil.readImage;
 import static model.ImageUtil.readJPG;
@@ -26,6 +37,19 @@ public class ImageUtilTest {
     assertEquals("res/example1.ppm", im.getFilename());
   }
 
+  @Test
+  public void testReadImageKeepsFileDigest() throws IOException, NoSuchAlgorithmException {
+    for (String filename : new String[] {"res/img.png", "res/example-jpg.jpg",
+        "res/example1.ppm"}) {
+      byte[] expected = MessageDigest.getInstance("SHA-256")
+              .digest(Files.readAllBytes(Paths.get(filename)));
+      IImage im = readImage(filename);
+      assertArrayEquals(expected, im.getFileDigest());
+      assertArrayEquals(expected, new PackedImage(im).getFileDigest());
+    }
+    assertNull(readPNG("res/img.png").getFileDigest());
+  }
+
   @Test
   public void testReadImPPM2() throws IOException {
     IImage im = readPPM("res/example1.ppm");
@@ -36,6 +60,96 @@ public class ImageUtilTest {
     assertEquals("res/example1.ppm", im.getFilename());
   }
 
+  @Test
+  public void testReadPPMCommentsAndWhitespace() throws IOException {
+    IImage im = readPPM(this.write("P3 # comment after the magic number\n2\t1\n"
+            + "# comment line\n255\r\n10 20 30# comment after a sample\n\n  40\n50   60"));
+    assertEquals(1, im.getHeight());
+    assertEquals(2, im.getWidth());
+    assertEquals(10, im.getPixel(0, 0).getRed());
+    assertEquals(20, im.getPixel(0, 0).getGreen());
+    assertEquals(30, im.getPixel(0, 0).getBlue());
+    assertEquals(40, im.getPixel(0, 1).getRed());
+    assertEquals(50, im.getPixel(0, 1).getGreen());
+    assertEquals(60, im.getPixel(0, 1).getBlue());
+    assertEquals(255, im.getPixel(0, 1).getAlpha());
+  }
+
+  @Test
+  public void testReadPPMTruncated() throws IOException {
+    try {
+      readPPM(this.write("P3\n2 2\n255\n1 2 3 4 5 6 7 8 9 10"));
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("unexpected end of file while reading green sample"));
+    }
+  }
+
+  @Test
+  public void testReadPPMNotANumber() throws IOException {
+    try {
+      readPPM(this.write("P3\n1 1\n255\n1 2x 3"));
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("expected a number for green sample but found 'x' "
+              + "at byte 14"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadPPMNotFound() throws IOException {
+    readPPM("res/missing.ppm");
+  }
+
+  @Test
+  public void testWriteAndReadP6() throws IOException {
+    IImage im = readPPM("res/example1.ppm");
+    String path = this.write("");
+    ImageUtil.writePPM(im, 255, path, true);
+    byte[] header = "P6\n300 300\n255\n".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(header.length + 300 * 300 * 3, Files.size(Path.of(path)));
+    IImage binary = readPPM(path);
+    assertEquals(300, binary.getHeight());
+    assertEquals(300, binary.getWidth());
+    int[] expected = new int[300];
+    int[] actual = new int[300];
+    for (int i = 0; i < 300; i++) {
+      im.readRow(i, expected);
+      binary.readRow(i, actual);
+      assertArrayEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testWritePPMScaled() throws IOException {
+    IImage im = new PackedImage(1, 2, 255, 255);
+    im.writeRow(0, new int[] {0xFF80FF00, 0xFF0A141E});
+    String plain = this.write("");
+    String binary = this.write("");
+    ImageUtil.writePPM(im, 100, plain, false);
+    ImageUtil.writePPM(im, 100, binary, true);
+    assertEquals("P3\n2 1\n100\n50 100 0 4 8 12 \n",
+            new String(Files.readAllBytes(Path.of(plain)), StandardCharsets.US_ASCII));
+    IImage p3 = readPPM(plain);
+    IImage p6 = readPPM(binary);
+    assertEquals(100, p6.getMaxValue());
+    for (int j = 0; j < 2; j++) {
+      assertEquals(p3.getPixel(0, j).getRed(), p6.getPixel(0, j).getRed());
+      assertEquals(p3.getPixel(0, j).getGreen(), p6.getPixel(0, j).getGreen());
+      assertEquals(p3.getPixel(0, j).getBlue(), p6.getPixel(0, j).getBlue());
+    }
+  }
+
+  @Test
+  public void testReadP6Truncated() throws IOException {
+    try {
+      readPPM(this.write("P6\n2 1\n255\n\u0001\u0002\u0003\u0004"));
+      fail("expected an IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("unexpected end of file while reading row 0"));
+    }
+  }
+
   @Test
   public void testReadImJPEG() throws IOException {
     IImage im = readImage("res/example-jpeg.jpeg");
@@ -96,8 +210,48 @@ public class ImageUtilTest {
     assertEquals("res/img.png", im.getFilename());
   }
 
+  @Test
+  public void testReadPNGMatchesGetRGB() throws IOException {
+    int[] types = {BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_3BYTE_BGR,
+                   BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+    for (int type : types) {
+      BufferedImage img = new BufferedImage(13, 7, type);
+      for (int i = 0; i < 7; i++) {
+        for (int j = 0; j < 13; j++) {
+          img.setRGB(j, i, (i * 37 + j) << 24 | (i * 29) << 16 | (j * 19) << 8 | (i * j));
+        }
+      }
+      Path path = Files.createTempFile("image-util", ".png");
+      path.toFile().deleteOnExit();
+      ImageIO.write(img, "png", path.toFile());
+      BufferedImage decoded = ImageIO.read(path.toFile());
+      IImage im = readPNG(path.toString());
+      int[] row = new int[13];
+      for (int i = 0; i < 7; i++) {
+        im.readRow(i, row);
+        for (int j = 0; j < 13; j++) {
+          assertEquals(decoded.getRGB(j, i), row[j]);
+        }
+      }
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testReadImEx() throws IOException {
     IImage im = readImage("image.image");
   }
-}
\ No newline at end of file
+
+  /**
+   * Writes the given contents to a temporary file that is deleted on exit.
+   *
+   * @param contents of the file
+   * @return the path of the file
+   * @throws IOException if the file cannot be written
+   */
+  private String write(String contents) throws IOException {
+    Path path = Files.createTempFile("image-util", ".ppm");
+    path.toFile().deleteOnExit();
+    Files.write(path, contents.getBytes(StandardCharsets.US_ASCII));
+    return path.toString();
+  }
+}
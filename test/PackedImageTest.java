@@ -0,0 +1,261 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.ColorImage;
+import model.ColorPixel;
+import model.IImage;
+import model.ILayer;
+import model.IPixel;
+import model.ImageLayer;
+import model.ImageUtil;
+import model.PackedImage;
+import model.PackedPixel;
+import model.filter.BrightenFilter;
+import model.filter.Component;
+import model.filter.ComponentFilter;
+import model.filter.DarkenFilter;
+import model.filter.DifferenceFilter;
+import model.filter.IFilter;
+import model.filter.LightType;
+import model.filter.MultiplyFilter;
+import model.filter.ScreenFilter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the functions and behavior of the PackedImage and PackedPixel classes.
+ */
+public class PackedImageTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor1() {
+    IImage im = new PackedImage(0, 400, 200, new int[400], "new image");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor2() {
+    IImage im = new PackedImage(10, 40, 255, new int[399], "new image");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor3() {
+    IImage im = new PackedImage(10, 40, 256, new int[400], "new image");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor4() {
+    IImage im = new PackedImage(10, 40, 255, new int[400], null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor5() {
+    IImage im = new PackedImage(100, 400, -1, 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor6() {
+    IImage im = new PackedImage(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPixelConstructor() {
+    IPixel pix = new PackedPixel(0, null);
+  }
+
+  @Test
+  public void testPack() {
+    int argb = PackedPixel.pack(200, 40, 30, 128);
+    assertEquals(200, PackedPixel.red(argb));
+    assertEquals(40, PackedPixel.green(argb));
+    assertEquals(30, PackedPixel.blue(argb));
+    assertEquals(128, PackedPixel.alpha(argb));
+    assertEquals(argb, PackedPixel.pack(new ColorPixel(200, 40, 30, 128)));
+  }
+
+  @Test
+  public void testGetSize() {
+    IImage im = new PackedImage(100, 200, 200, 255);
+    assertEquals(100, im.getHeight());
+    assertEquals(200, im.getWidth());
+    assertEquals(255, im.getMaxValue());
+    assertEquals(255, im.getPixel(99, 199).getRed());
+    assertEquals(200, im.getPixel(99, 199).getAlpha());
+    assertEquals("normal", im.getPixel(99, 199).getFilter().toString());
+  }
+
+  @Test
+  public void testCopy() throws IOException {
+    IImage ci = ImageUtil.readPPM("res/example1.ppm");
+    IImage pi = new PackedImage(ci);
+    assertEquals(ci.getHeight(), pi.getHeight());
+    assertEquals(ci.getWidth(), pi.getWidth());
+    assertEquals("res/example1.ppm", pi.getFilename());
+    for (int i = 0; i < ci.getHeight(); i++) {
+      for (int j = 0; j < ci.getWidth(); j++) {
+        assertEquals(ci.getPixel(i, j).getRed(), pi.getPixel(i, j).getRed());
+        assertEquals(ci.getPixel(i, j).getGreen(), pi.getPixel(i, j).getGreen());
+        assertEquals(ci.getPixel(i, j).getBlue(), pi.getPixel(i, j).getBlue());
+        assertEquals(ci.getPixel(i, j).getAlpha(), pi.getPixel(i, j).getAlpha());
+      }
+    }
+  }
+
+  @Test
+  public void testSetPixel() {
+    IImage im = new PackedImage(2, 3, 255, 255);
+    IPixel snapshot = im.getPixel(1, 1);
+    im.setPixel(1, 1, new ColorPixel(10, 20, 30, 40, new ComponentFilter(Component.RED)));
+    assertEquals(10, im.getPixel(1, 1).getRed());
+    assertEquals(20, im.getPixel(1, 1).getGreen());
+    assertEquals(30, im.getPixel(1, 1).getBlue());
+    assertEquals(40, im.getPixel(1, 1).getAlpha());
+    assertEquals("red-component", im.getPixel(1, 1).getFilter().toString());
+    assertEquals("normal", im.getPixel(1, 2).getFilter().toString());
+    assertEquals(255, snapshot.getRed());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetPixelOutOfBounds() {
+    IImage im = new PackedImage(2, 3, 255, 255);
+    im.getPixel(0, 3);
+  }
+
+  @Test
+  public void testGetPixels() {
+    IImage im = new PackedImage(2, 3, 255, 255);
+    IPixel[][] pixs = im.getPixels();
+    assertEquals(2, pixs.length);
+    assertEquals(3, pixs[0].length);
+    im.setPixel(0, 2, new ColorPixel(1, 2, 3, 4));
+    assertEquals(1, pixs[0][2].getRed());
+    assertEquals(4, pixs[0][2].getAlpha());
+    pixs[0][2].setFilter(new BrightenFilter(LightType.LUMA));
+    assertEquals("brighten-luma", im.getPixel(0, 2).getFilter().toString());
+  }
+
+  @Test
+  public void testUpdateWithMaxValue() {
+    IImage im = new PackedImage(1, 2, 255, new int[] {PackedPixel.pack(50, 100, 0, 100),
+        PackedPixel.pack(100, 0, 25, 100)}, "image");
+    IImage max = new PackedImage(1, 2, 100, new int[] {PackedPixel.pack(50, 100, 0, 100),
+        PackedPixel.pack(100, 0, 25, 100)}, "image");
+    im.updateWithMaxValue();
+    max.updateWithMaxValue();
+    assertEquals(50, im.getPixel(0, 0).getRed());
+    assertEquals(127, max.getPixel(0, 0).getRed());
+    assertEquals(255, max.getPixel(0, 0).getGreen());
+    assertEquals(64, max.getPixel(0, 1).getBlue());
+    assertEquals(255, max.getPixel(0, 1).getAlpha());
+  }
+
+  @Test
+  public void testFilterOnPackedImage() throws IOException {
+    IImage ci = ImageUtil.readPPM("res/example1.ppm");
+    IImage pi = new PackedImage(ci);
+    new BrightenFilter(LightType.VALUE).apply(ci, 50, 70);
+    new BrightenFilter(LightType.VALUE).apply(pi, 50, 70);
+    assertEquals(ci.getPixel(50, 70).getRed(), pi.getPixel(50, 70).getRed());
+    assertEquals(ci.getPixel(50, 70).getGreen(), pi.getPixel(50, 70).getGreen());
+    assertEquals(ci.getPixel(50, 70).getBlue(), pi.getPixel(50, 70).getBlue());
+    assertEquals("brighten-value", pi.getPixel(50, 70).getFilter().toString());
+  }
+
+  @Test
+  public void testLayerWithPackedImage() throws IOException {
+    ILayer colorLayer = new ImageLayer(250, 300, "color");
+    ILayer packedLayer = new ImageLayer(250, 300, "packed");
+    colorLayer.addImageToLayer(new ColorImage(ImageUtil.readPPM("res/example1.ppm")
+            .getPixels()), 10, 20);
+    packedLayer.addImageToLayer(new PackedImage(ImageUtil.readPPM("res/example1.ppm")), 10, 20);
+    colorLayer.applyFilter(new ComponentFilter(Component.GREEN));
+    packedLayer.applyFilter(new ComponentFilter(Component.GREEN));
+    for (int i = 0; i < 250; i += 7) {
+      for (int j = 0; j < 300; j += 11) {
+        assertEquals(colorLayer.getImage().getPixel(i, j).getGreen(),
+                packedLayer.getImage().getPixel(i, j).getGreen());
+        assertEquals(colorLayer.getImage().getPixel(i, j).getRed(),
+                packedLayer.getImage().getPixel(i, j).getRed());
+      }
+    }
+  }
+
+  @Test
+  public void testEveryFilterMatchesColorImage() throws IOException {
+    IPixel[][] pixels = ImageUtil.readPPM("res/example1.ppm").getPixels();
+    IImage backdrop = new ColorImage(pixels);
+    backdrop.updateWithMaxValue();
+    List<IFilter> filters = new ArrayList<>();
+    for (Component component : Component.values()) {
+      filters.add(ComponentFilter.getInstance(component));
+    }
+    for (LightType type : LightType.values()) {
+      filters.add(BrightenFilter.getInstance(type));
+      filters.add(DarkenFilter.getInstance(type));
+    }
+    filters.add(new DifferenceFilter(backdrop));
+    filters.add(new MultiplyFilter(backdrop));
+    filters.add(new ScreenFilter(backdrop));
+    for (IFilter filter : filters) {
+      IImage ci = new ColorImage(pixels);
+      IImage pi = new PackedImage(ci);
+      for (int i = 0; i < ci.getHeight(); i += 3) {
+        for (int j = 0; j < ci.getWidth(); j += 5) {
+          filter.apply(ci, i, j);
+          filter.apply(pi, i, j);
+        }
+      }
+      int[] expected = new int[ci.getWidth()];
+      int[] actual = new int[pi.getWidth()];
+      for (int i = 0; i < ci.getHeight(); i++) {
+        ci.readRow(i, expected);
+        pi.readRow(i, actual);
+        assertArrayEquals(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testReadWriteRegion() {
+    IImage im = new PackedImage(3, 4, 255, 255);
+    im.setPixel(1, 2, new ColorPixel(1, 2, 3, 4, new ComponentFilter(Component.RED)));
+    int[] region = new int[4];
+    im.readRegion(1, 1, 2, 2, region);
+    assertEquals(PackedPixel.pack(255, 255, 255, 255), region[0]);
+    assertEquals(PackedPixel.pack(1, 2, 3, 4), region[1]);
+    region[1] = PackedPixel.pack(10, 20, 30, 40);
+    im.writeRegion(1, 1, 2, 2, region);
+    assertEquals(10, im.getPixel(1, 2).getRed());
+    assertEquals(40, im.getPixel(1, 2).getAlpha());
+    assertEquals("normal", im.getPixel(1, 2).getFilter().toString());
+    int[] row = new int[4];
+    im.readRow(1, row);
+    assertEquals(PackedPixel.pack(10, 20, 30, 40), row[2]);
+    row[3] = PackedPixel.pack(0, 0, 0, 0);
+    im.writeRow(1, row);
+    assertEquals(0, im.getPixel(1, 3).getAlpha());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testReadRegionOutOfBounds() {
+    IImage im = new PackedImage(3, 4, 255, 255);
+    im.readRegion(2, 2, 2, 2, new int[4]);
+  }
+
+  @Test
+  public void testDefaultRegionOnColorImage() {
+    IImage ci = new ColorImage(3, 4, 255, 255);
+    int[] region = new int[] {PackedPixel.pack(10, 20, 30, 40), PackedPixel.pack(1, 2, 3, 4)};
+    ci.writeRegion(2, 1, 1, 2, region);
+    assertEquals(20, ci.getPixel(2, 1).getGreen());
+    assertEquals(4, ci.getPixel(2, 2).getAlpha());
+    int[] row = new int[4];
+    ci.readRow(2, row);
+    assertEquals(PackedPixel.pack(255, 255, 255, 255), row[0]);
+    assertEquals(region[0], row[1]);
+    assertEquals(region[1], row[2]);
+  }
+}
@@ -2,6 +2,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 
+import static model.RepresentationConverter.convertHSLtoPackedRGB;
 import static model.RepresentationConverter.convertHSLtoRGB;
 import static model.RepresentationConverter.convertRGBtoHSL;
 import static org.junit.Assert.assertEquals;
@@ -33,4 +34,31 @@ public class RepresentationConverterTest {
     assertEquals(0.25, testb, 0.01);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testRGBtoHSLArray() {
+    double[] test = new double[3];
+    convertRGBtoHSL(0.5, 0.1, 0.25, test);
+    assertEquals(337.5000, test[0], 0.0001);
+    assertEquals(0.6667, test[1], 0.0001);
+    assertEquals(0.3000, test[2], 0.0001);
+  }
+
+  @Test
+  public void testHSLtoPackedRGB() {
+    // each HSL value and the RGB value the original list-based conversion gave for it
+    double[][] hsl = {{337.5, 0.6667, 0.3}, {0, 0, 0}, {0, 0, 1}, {120, 1, 0.5},
+        {210, 0.5, 0.25}, {45.5, 0.33, 0.81}, {300, 0.9, 0.05}, {359.9, 0.2, 0.6}};
+    int[][] rgb = {{127, 25, 63}, {0, 0, 0}, {255, 255, 255}, {0, 255, 0}, {31, 63, 95},
+        {222, 214, 190}, {24, 1, 24}, {173, 132, 132}};
+    for (int k = 0; k < hsl.length; k++) {
+      int packed = convertHSLtoPackedRGB(hsl[k][0], hsl[k][1], hsl[k][2]);
+      assertEquals(rgb[k][0], (packed >> 16) & 0xFF);
+      assertEquals(rgb[k][1], (packed >> 8) & 0xFF);
+      assertEquals(rgb[k][2], packed & 0xFF);
+      ArrayList<Integer> list = convertHSLtoRGB(hsl[k][0], hsl[k][1], hsl[k][2]);
+      assertEquals(rgb[k][0], (int) list.get(0));
+      assertEquals(rgb[k][1], (int) list.get(1));
+      assertEquals(rgb[k][2], (int) list.get(2));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+import org.junit.Test;
+
+import java.io.IOException;
+
+import model.CollageModel;
+import model.ColorImage;
+import model.ICanvas;
+import model.IImage;
+import model.ImageUtil;
+import model.PackedPixel;
+import model.RowExecutor;
+import model.filter.BrightenFilter;
+import model.filter.LightType;
+import model.filter.ScreenFilter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the functions and behavior of the RowExecutor class.
+ */
+public class RowExecutorTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor1() {
+    RowExecutor re = new RowExecutor(0, 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor2() {
+    RowExecutor re = new RowExecutor(2, -1);
+  }
+
+  @Test
+  public void testForEachRow() {
+    RowExecutor re = new RowExecutor(3, 0);
+    int[] counts = new int[50];
+    re.forEachRow(5, 45, 10, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        counts[i]++;
+      }
+    });
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i >= 5 && i < 45 ? 1 : 0, counts[i]);
+    }
+    re.shutdown();
+  }
+
+  @Test
+  public void testParallelMatchesSequential() throws IOException {
+    RowExecutor previous = RowExecutor.getDefault();
+    RowExecutor.setDefault(new RowExecutor(1, 0));
+    IImage sequential = this.render();
+    RowExecutor.setDefault(new RowExecutor(4, 0));
+    IImage parallel = this.render();
+    RowExecutor.setDefault(new RowExecutor(previous.getThreads(), previous.getThreshold()));
+    for (int i = 0; i < sequential.getHeight(); i++) {
+      for (int j = 0; j < sequential.getWidth(); j++) {
+        assertEquals(PackedPixel.pack(sequential.getPixel(i, j)),
+                PackedPixel.pack(parallel.getPixel(i, j)));
+      }
+    }
+  }
+
+  /**
+   * Renders a canvas with a brightened layer under a screen layer.
+   *
+   * @return the image of the canvas
+   * @throws IOException if an image cannot be read
+   */
+  private IImage render() throws IOException {
+    ICanvas m = new CollageModel(300, 350, "parallel");
+    m.addLayerToCanvas(300, 350, "l1");
+    m.addLayerToCanvas(300, 350, "l2");
+    m.addImageToLayer("l1", new ColorImage(ImageUtil.readPPM("res/example1.ppm").getPixels()),
+            10, 20);
+    m.addFilter(BrightenFilter.getInstance(LightType.LUMA), "l1");
+    m.addImageToLayer("l2", new ColorImage(ImageUtil.readPPM("res/example1.ppm").getPixels()),
+            60, 5);
+    m.addFilter(new ScreenFilter(m.getPrevIm("l2")), "l2");
+    return m.getImage();
+  }
+}
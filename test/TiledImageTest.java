@@ -0,0 +1,121 @@
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import model.ColorPixel;
+import model.IImage;
+import model.IPixel;
+import model.PackedPixel;
+import model.TiledImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the functions and behavior of the TiledImage class.
+ */
+public class TiledImageTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor1() {
+    IImage im = new TiledImage(0, 400, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor2() {
+    IImage im = new TiledImage(10, 40, 256);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor3() {
+    IImage im = new TiledImage(null);
+  }
+
+  @Test
+  public void testBlank() {
+    TiledImage im = new TiledImage(300, 200, 255);
+    assertEquals(3, im.getTileRows());
+    assertEquals(2, im.getTileColumns());
+    assertEquals(new Rectangle(128, 256, 72, 44), im.getTileRegion(2, 1));
+    assertEquals(0, im.countOccupiedTiles());
+    IPixel pixel = im.getPixel(299, 199);
+    assertEquals(255, pixel.getRed());
+    assertEquals(255, pixel.getBlue());
+    assertEquals(0, pixel.getAlpha());
+    assertEquals("normal", pixel.getFilter().toString());
+  }
+
+  @Test
+  public void testWriteRegionAcrossTiles() {
+    TiledImage im = new TiledImage(300, 200, 255);
+    int[] src = new int[4 * 10];
+    for (int i = 0; i < src.length; i++) {
+      src[i] = PackedPixel.pack(i, 2 * i, 3, 255);
+    }
+    // the region covers the corner of four tiles
+    im.writeRegion(126, 123, 4, 10, src);
+    assertEquals(4, im.countOccupiedTiles());
+    assertTrue(im.isBlank(2, 0));
+    assertFalse(im.isBlank(1, 1));
+    int[] dst = new int[src.length];
+    im.readRegion(126, 123, 4, 10, dst);
+    for (int i = 0; i < src.length; i++) {
+      assertEquals(src[i], dst[i]);
+    }
+    // the pixel at row 3, column 7 of the region is in the bottom right tile
+    assertEquals(37, im.getPixel(129, 130).getRed());
+    assertEquals(0, im.getPixel(129, 133).getAlpha());
+  }
+
+  @Test
+  public void testCopyOnWrite() {
+    TiledImage im = new TiledImage(200, 200, 255);
+    im.setPixel(10, 10, new ColorPixel(1, 2, 3, 255));
+    IPixel view = im.getPixels()[10][10];
+    TiledImage copy = new TiledImage(im);
+    assertEquals(1, copy.getPixel(10, 10).getRed());
+    im.setPixel(10, 10, new ColorPixel(9, 2, 3, 255));
+    copy.setPixel(150, 150, new ColorPixel(4, 5, 6, 255));
+    assertEquals(9, view.getRed());
+    assertEquals(1, copy.getPixel(10, 10).getRed());
+    assertEquals(0, im.getPixel(150, 150).getAlpha());
+    assertEquals(1, im.countOccupiedTiles());
+    assertEquals(2, copy.countOccupiedTiles());
+  }
+
+  @Test
+  public void testMakeWritable() {
+    TiledImage im = new TiledImage(300, 200, 255);
+    im.setPixel(10, 10, new ColorPixel(1, 2, 3, 255));
+    TiledImage copy = new TiledImage(im);
+    // the region covers the corner of four tiles, one of them shared with the copy
+    copy.makeWritable(100, 100, 60, 60);
+    assertEquals(4, copy.countOccupiedTiles());
+    assertEquals(0, copy.getPixel(150, 150).getAlpha());
+    copy.writeRegion(10, 10, 1, 1, new int[] {PackedPixel.pack(9, 2, 3, 255)});
+    assertEquals(1, im.getPixel(10, 10).getRed());
+    assertEquals(1, im.countOccupiedTiles());
+  }
+
+  @Test
+  public void testUpdateWithMaxValue() {
+    TiledImage im = new TiledImage(3, 3, 100);
+    assertEquals(100, im.getPixel(1, 1).getGreen());
+    im.setPixel(0, 0, new ColorPixel(50, 0, 100, 255));
+    im.updateWithMaxValue();
+    assertEquals(127, im.getPixel(0, 0).getRed());
+    assertEquals(255, im.getPixel(0, 0).getBlue());
+    assertEquals(255, im.getPixel(2, 2).getAlpha());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testReadOutside() {
+    new TiledImage(10, 10, 255).readRegion(5, 5, 2, 6, new int[12]);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testTileOutside() {
+    new TiledImage(10, 10, 255).isBlank(0, 1);
+  }
+}